@@ -0,0 +1,486 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmarks of the hot paths of the simulation and drawing.
+ *
+ * Each benchmark is run for a number of warmup iterations, whose results are thrown away so the
+ * JIT compiler can settle, and then for a number of measurement iterations of fixed length. The
+ * score is the average time per operation over the measurement iterations, with the error given as
+ * a 99.9% confidence interval. Results are written as JSON in the same layout as JMH uses, so runs
+ * of different versions can be compared with the usual JMH tools.
+ *
+ * Compile together with the game sources and run from the project directory (images are loaded
+ * from files/):
+ *   javac -d out src/*.java bench/*.java
+ *   java -Djava.awt.headless=true -cp out SimulationBenchmark [options]
+ *
+ * Options:
+ *   -json file        write results to file instead of standard output
+ *   -wi n             number of warmup iterations (default 3)
+ *   -i n              number of measurement iterations (default 5)
+ *   -time ms          length of each iteration in milliseconds (default 1000)
+ *   -filter text      only run benchmarks whose name contains text
+ *   -enemies n,...    enemies of each kind for roomAdvance (default 1,10)
+ *   -projectiles n,...  projectile counts for roomAdvance (default 10,200)
+ *   -boulders n,...   boulder counts for roomAdvance (default 3)
+ */
+public class SimulationBenchmark {
+
+    /* Value for t-distribution with many degrees of freedom at 99.9% confidence */
+    private static final double T_999 = 3.291;
+
+    private int warmupIterations = 3;
+    private int measurementIterations = 5;
+    private long iterationNanos = 1000000000L;
+    private String filter = "";
+    private int[] enemyCounts = {1, 10};
+    private int[] projectileCounts = {10, 200};
+    private int[] boulderCounts = {3};
+
+    /* Results of every benchmark run, already formatted as JSON objects */
+    private final List<String> results = new LinkedList<>();
+
+    /* Written to by benchmarks so that the JIT compiler cannot remove their work */
+    private static volatile long sink;
+
+    /**
+     * A single benchmark. Setup is done in the constructor of the implementing class.
+     */
+    private abstract static class Benchmark {
+        /**
+         * Runs the benchmarked operation the given number of times
+         *
+         * @return Any value derived from the work done, to be consumed
+         */
+        abstract long run(int ops);
+    }
+
+    /*** BENCHMARKS *******************************************************************************/
+
+    /**
+     * GameObj.intersects() over pairs of objects spread across the court
+     */
+    private static class IntersectsBenchmark extends Benchmark {
+        private final GameObj[] objs = spreadObjects(64);
+
+        long run(int ops) {
+            long hits = 0;
+            int n = objs.length;
+            for (int k = 0; k < ops; k++) {
+                if (objs[k & (n - 1)].intersects(objs[(k * 7 + 3) & (n - 1)])) {
+                    hits++;
+                }
+            }
+            return hits;
+        }
+    }
+
+    /**
+     * GameObj.willIntersect() over pairs of moving objects spread across the court
+     */
+    private static class WillIntersectBenchmark extends Benchmark {
+        private final GameObj[] objs = spreadObjects(64);
+
+        long run(int ops) {
+            long hits = 0;
+            int n = objs.length;
+            for (int k = 0; k < ops; k++) {
+                if (objs[k & (n - 1)].willIntersect(objs[(k * 7 + 3) & (n - 1)])) {
+                    hits++;
+                }
+            }
+            return hits;
+        }
+    }
+
+    /**
+     * Room.advance() of a room built by ScenarioGenerator with a given number of enemies of each
+     * kind, projectiles and boulders. Projectiles are topped up before every step so the count
+     * stays the same.
+     */
+    private static class RoomAdvanceBenchmark extends Benchmark {
+        private final ScenarioGenerator generator = new ScenarioGenerator(0);
+        private final Room room;
+        private final Blob blob;
+        private final int projectiles;
+
+        RoomAdvanceBenchmark(int enemiesPerKind, int projectiles, int boulders) {
+            this.room = generator.generate(enemiesPerKind, boulders, projectiles);
+            this.blob = generator.createBlob();
+            this.projectiles = projectiles;
+        }
+
+        long run(int ops) {
+            for (int k = 0; k < ops; k++) {
+                generator.topUpProjectiles(room, projectiles);
+                room.advance(blob);
+            }
+            return room.getNarrowPhaseTests();
+        }
+    }
+
+    /**
+     * RoomHandler.advance() where every step moves the main character through a door, back and
+     * forth between the start room and the room to its left
+     */
+    private static class RoomChangeBenchmark extends Benchmark {
+        private final RoomHandler roomHandler = new RoomHandler(new java.util.Random(0));
+        private final Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+        private Direction next = Direction.LEFT;
+
+        RoomChangeBenchmark() {
+            // walk into the room to the left and clear it so that its doors open
+            step();
+            Room left = roomHandler.getRoom();
+            while (!left.isOpen()) {
+                left.removeEnemy();
+            }
+        }
+
+        private void step() {
+            blob.moveToEdge(next);
+            blob.setVx(next == Direction.LEFT ? -GameCourt.BLOB_VELOCITY : GameCourt.BLOB_VELOCITY);
+            blob.setVy(0);
+            roomHandler.advance(blob);
+            next = (next == Direction.LEFT) ? Direction.RIGHT : Direction.LEFT;
+        }
+
+        long run(int ops) {
+            for (int k = 0; k < ops; k++) {
+                step();
+            }
+            return blob.getPx();
+        }
+    }
+
+    /**
+     * Room.draw() into an offscreen image, either all of it or only the area covered by moving
+     * objects, as GameCourt repaints it when it is not drawing actively
+     */
+    private static class RoomDrawBenchmark extends Benchmark {
+        private final RoomAdvanceBenchmark scene;
+        private final Rectangle clip;
+        private final BufferedImage image = new BufferedImage(GameCourt.ROOM_WIDTH,
+                                                              GameCourt.ROOM_HEIGHT,
+                                                              BufferedImage.TYPE_INT_RGB);
+
+        RoomDrawBenchmark(int enemiesPerKind, int projectiles, boolean dirtyOnly) {
+            scene = new RoomAdvanceBenchmark(enemiesPerKind, projectiles, 3);
+            scene.run(1);
+            if (dirtyOnly) {
+                clip = new Rectangle(0, 0, -1, -1);
+                scene.room.addMovingBounds(clip);
+                scene.blob.addMovingBoundsWithHealthBar(clip, GameCourt.COURT_WIDTH, GameCourt.BORDER);
+            } else {
+                clip = null;
+            }
+        }
+
+        long run(int ops) {
+            for (int k = 0; k < ops; k++) {
+                Graphics2D g = image.createGraphics();
+                if (clip != null) {
+                    g.setClip(clip);
+                }
+                scene.room.draw(g);
+                g.dispose();
+            }
+            return image.getRGB(GameCourt.ROOM_WIDTH / 2, GameCourt.ROOM_HEIGHT / 2);
+        }
+    }
+
+    /**
+     * Room.advance() of a room with only FollowingEnemies and boulders, while the main character
+     * walks around the court so that the enemies keep having to find a new way to it
+     */
+    private static class FollowersBenchmark extends Benchmark {
+        private final Room room = new Room("", "");
+        private final Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+        private final java.util.Random random = new java.util.Random(0);
+        private int tick;
+
+        FollowersBenchmark(int followers, int boulders) {
+            for (int k = 0; k < followers; k++) {
+                room.addEnemy(new FollowingEnemy(random.nextInt(GameCourt.COURT_WIDTH),
+                                                 random.nextInt(GameCourt.COURT_HEIGHT)));
+            }
+            for (int k = 0; k < boulders; k++) {
+                room.addBoulder(new Boulder(random.nextInt(GameCourt.COURT_WIDTH),
+                                            random.nextInt(GameCourt.COURT_HEIGHT)));
+            }
+            blob.moveToCenter();
+        }
+
+        long run(int ops) {
+            for (int k = 0; k < ops; k++) {
+                if (tick++ % 30 == 0) {
+                    blob.setVx(random.nextInt(3) - 1);
+                    blob.setVy(random.nextInt(3) - 1);
+                }
+                room.advance(blob);
+                blob.move();
+            }
+            return room.getEnemyCount();
+        }
+    }
+
+    /**
+     * Room.advance() of a room crowded with patrolling and following enemies, to see how the
+     * enemy updates scale to tens of thousands of entities. The projectiles the enemies fire are
+     * removed after every step so that only the enemies are measured.
+     */
+    private static class EntitiesBenchmark extends Benchmark {
+        private final Room room = new Room("", "");
+        private final Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+
+        EntitiesBenchmark(int entities) {
+            java.util.Random random = new java.util.Random(0);
+            Direction[] directions = Direction.values();
+            for (int k = 0; k < entities; k++) {
+                int x = random.nextInt(GameCourt.COURT_WIDTH - RegularEnemy.SIZE);
+                int y = random.nextInt(GameCourt.COURT_HEIGHT - RegularEnemy.SIZE);
+                if (k % 2 == 0) {
+                    room.addEnemy(new PatrollingEnemy(x, y, directions[random.nextInt(4)]));
+                } else {
+                    room.addEnemy(new FollowingEnemy(x, y));
+                }
+            }
+            // in a corner, for the following enemies to head for
+            blob.setPx(0);
+            blob.setPy(0);
+        }
+
+        long run(int ops) {
+            for (int k = 0; k < ops; k++) {
+                room.advance(blob);
+                room.clearProjectiles();
+            }
+            return room.getEnemyCount();
+        }
+    }
+
+    /**
+     * Filling the snapshot of a busy room that is handed to the render thread every frame
+     */
+    private static class SnapshotBenchmark extends Benchmark {
+        private final RoomAdvanceBenchmark scene = new RoomAdvanceBenchmark(2, 100, 3);
+        private final WorldSnapshot snapshot = new WorldSnapshot();
+
+        SnapshotBenchmark() {
+            scene.run(1);
+        }
+
+        long run(int ops) {
+            for (int k = 0; k < ops; k++) {
+                snapshot.clear(k, 0);
+                scene.room.addTo(snapshot);
+            }
+            return snapshot.getSpriteCount();
+        }
+    }
+
+    /**
+     * @param n number of objects, must be a power of two
+     * @return Boulders spread over the court, moving in different directions
+     */
+    private static GameObj[] spreadObjects(int n) {
+        GameObj[] objs = new GameObj[n];
+        for (int i = 0; i < n; i++) {
+            objs[i] = new Boulder((i * 131) % GameCourt.COURT_WIDTH,
+                                  (i * 71) % GameCourt.COURT_HEIGHT);
+            objs[i].setVx((i % 3) - 1);
+            objs[i].setVy((i % 5) - 2);
+        }
+        return objs;
+    }
+
+    /*** HARNESS **********************************************************************************/
+
+    /**
+     * Runs a benchmark if its name passes the filter and stores its result
+     *
+     * @param name name of the benchmark
+     *        params parameters of the benchmark as JSON object members, empty if none
+     *        benchmark benchmark to run
+     */
+    private void measure(String name, String params, Benchmark benchmark) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        // find a batch size that takes about a millisecond so timing overhead does not matter
+        int batch = 1;
+        while (true) {
+            long start = System.nanoTime();
+            sink += benchmark.run(batch);
+            if (System.nanoTime() - start > 1000000L || batch >= (1 << 30)) {
+                break;
+            }
+            batch *= 2;
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(benchmark, batch);
+        }
+        double[] scores = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            scores[i] = iteration(benchmark, batch);
+        }
+
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        variance = scores.length > 1 ? variance / (scores.length - 1) : 0;
+        double error = T_999 * Math.sqrt(variance / scores.length);
+
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < scores.length; i++) {
+            raw.append(i == 0 ? "" : ", ").append(format(scores[i]));
+        }
+        results.add("    {\n" +
+                    "        \"benchmark\" : \"SimulationBenchmark." + name + "\",\n" +
+                    "        \"mode\" : \"avgt\",\n" +
+                    "        \"warmupIterations\" : " + warmupIterations + ",\n" +
+                    "        \"measurementIterations\" : " + measurementIterations + ",\n" +
+                    "        \"params\" : {" + params + "},\n" +
+                    "        \"primaryMetric\" : {\n" +
+                    "            \"score\" : " + format(mean) + ",\n" +
+                    "            \"scoreError\" : " + format(error) + ",\n" +
+                    "            \"scoreUnit\" : \"ns/op\",\n" +
+                    "            \"rawData\" : [[" + raw + "]]\n" +
+                    "        }\n" +
+                    "    }");
+        System.err.printf(Locale.ROOT, "%-16s %-55s %12.1f +- %.1f ns/op%n", name, params, mean,
+                          error);
+    }
+
+    /**
+     * Runs batches of operations for one iteration
+     *
+     * @return Average time per operation in nanoseconds
+     */
+    private double iteration(Benchmark benchmark, int batch) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += benchmark.run(batch);
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return (double) elapsed / ops;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private void runAll() {
+        measure("intersects", "", new IntersectsBenchmark());
+        measure("willIntersect", "", new WillIntersectBenchmark());
+        for (int enemies : enemyCounts) {
+            for (int projectiles : projectileCounts) {
+                for (int boulders : boulderCounts) {
+                    String params = "\"enemiesPerKind\" : \"" + enemies + "\", " +
+                                    "\"projectiles\" : \"" + projectiles + "\", " +
+                                    "\"boulders\" : \"" + boulders + "\"";
+                    measure("roomAdvance", params,
+                            new RoomAdvanceBenchmark(enemies, projectiles, boulders));
+                }
+            }
+        }
+        measure("roomChange", "", new RoomChangeBenchmark());
+        measure("roomDraw", drawParams(2, 100, "full"), new RoomDrawBenchmark(2, 100, false));
+        measure("roomDraw", drawParams(1, 10, "full"), new RoomDrawBenchmark(1, 10, false));
+        measure("roomDraw", drawParams(1, 10, "dirty"), new RoomDrawBenchmark(1, 10, true));
+        measure("snapshot", "", new SnapshotBenchmark());
+        for (int followers : new int[] {10, 100, 500}) {
+            measure("followers", "\"followers\" : \"" + followers + "\", \"boulders\" : \"6\"",
+                    new FollowersBenchmark(followers, 6));
+        }
+        for (int entities : new int[] {1000, 10000, 30000}) {
+            measure("entities", "\"entities\" : \"" + entities + "\"",
+                    new EntitiesBenchmark(entities));
+        }
+    }
+
+    private static String drawParams(int enemiesPerKind, int projectiles, String region) {
+        return "\"enemiesPerKind\" : \"" + enemiesPerKind + "\", " +
+               "\"projectiles\" : \"" + projectiles + "\", " +
+               "\"region\" : \"" + region + "\"";
+    }
+
+    private String toJson() {
+        StringBuilder json = new StringBuilder("[\n");
+        for (String result : results) {
+            json.append(json.length() > 2 ? ",\n" : "").append(result);
+        }
+        return json.append("\n]\n").toString();
+    }
+
+    private static int[] parseCounts(String s) {
+        String[] parts = s.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SimulationBenchmark bench = new SimulationBenchmark();
+        String jsonFile = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "-json":
+                jsonFile = value;
+                break;
+            case "-wi":
+                bench.warmupIterations = Integer.parseInt(value);
+                break;
+            case "-i":
+                bench.measurementIterations = Math.max(1, Integer.parseInt(value));
+                break;
+            case "-time":
+                bench.iterationNanos = Long.parseLong(value) * 1000000L;
+                break;
+            case "-filter":
+                bench.filter = value;
+                break;
+            case "-enemies":
+                bench.enemyCounts = parseCounts(value);
+                break;
+            case "-projectiles":
+                bench.projectileCounts = parseCounts(value);
+                break;
+            case "-boulders":
+                bench.boulderCounts = parseCounts(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        bench.runAll();
+        String json = bench.toJson();
+        if (jsonFile == null) {
+            System.out.print(json);
+        } else {
+            try (Writer out = new FileWriter(jsonFile)) {
+                out.write(json);
+            }
+        }
+    }
+}
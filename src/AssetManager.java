@@ -0,0 +1,178 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * Loads the images of the game. preload() decodes every sprite at once on a pool of threads and
+ * builds the SpriteAtlas from them, so that no sprite has to be decoded on the event dispatch
+ * thread while the game runs. Decoded images are cached by file name. Room backgrounds are not
+ * preloaded but loaded when they are needed by the BackgroundCache, on the same threads.
+ *
+ * Images that are asked for with getImage() before they are loaded are waited for if they are
+ * being decoded, or decoded on the calling thread otherwise.
+ */
+public class AssetManager {
+
+    private static final AssetManager INSTANCE = new AssetManager();
+
+    /* Images being decoded or decoded, by file name */
+    private final Map<String, CompletableFuture<BufferedImage>> images = new ConcurrentHashMap<>();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "asset-loader");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private volatile CompletableFuture<Void> preloaded;
+    private final AtomicInteger loadedCount = new AtomicInteger();
+    private volatile int totalCount;
+    private volatile long loadNanos = -1;
+
+    private AssetManager() {
+    }
+
+    public static AssetManager get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return File names of every image that the game needs before it starts: the sprites
+     */
+    public static Set<String> getRequiredFiles() {
+        Set<String> files = new LinkedHashSet<>();
+        for (Sprite s : Sprite.values()) {
+            files.add(s.getFile());
+        }
+        return files;
+    }
+
+    /**
+     * Starts decoding every required image in the background and then builds the sprite atlas.
+     * Calling it again returns the same loading in progress.
+     *
+     * @return Completes when every image is loaded and the atlas is built
+     */
+    public synchronized CompletableFuture<Void> preload() {
+        if (preloaded != null) {
+            return preloaded;
+        }
+        long start = System.nanoTime();
+        Set<String> files = getRequiredFiles();
+        totalCount = files.size() + 1; // the atlas counts as one more step
+        CompletableFuture<?>[] loads = new CompletableFuture<?>[files.size()];
+        int i = 0;
+        for (String file : files) {
+            loads[i++] = load(file).whenComplete((img, e) -> loadedCount.incrementAndGet());
+        }
+        preloaded = CompletableFuture.allOf(loads)
+                .handle((ignored, e) -> null) // missing images are reported, not fatal
+                .thenRunAsync(() -> {
+                    SpriteAtlas.get();
+                    loadedCount.incrementAndGet();
+                    loadNanos = System.nanoTime() - start;
+                }, pool);
+        return preloaded;
+    }
+
+    /**
+     * @param file image file
+     * @return The decoded image, waiting for or doing the decoding if needed; null if the image
+     *         could not be read
+     */
+    public BufferedImage getImage(String file) {
+        CompletableFuture<BufferedImage> future = images.get(file);
+        if (future == null) {
+            // decode on this thread rather than waiting for a free loader thread
+            future = images.computeIfAbsent(file, f -> CompletableFuture.completedFuture(decode(f)));
+        }
+        return future.join();
+    }
+
+    /**
+     * Gets an image and removes it from the cache, for images that are only needed once, such as
+     * the full-size sprites that are copied into the SpriteAtlas
+     *
+     * @param file image file
+     * @return The decoded image, null if it could not be read
+     */
+    public BufferedImage takeImage(String file) {
+        CompletableFuture<BufferedImage> future = images.remove(file);
+        return (future != null) ? future.join() : decode(file);
+    }
+
+    /**
+     * Starts decoding an image on the pool if it is not already cached
+     */
+    private CompletableFuture<BufferedImage> load(String file) {
+        return images.computeIfAbsent(file,
+                f -> CompletableFuture.supplyAsync(() -> decode(f), pool));
+    }
+
+    /**
+     * Decodes an image on the pool without caching it, for images cached elsewhere
+     *
+     * @param file image file
+     * @return Completes with the image, or with null if it could not be read
+     */
+    public CompletableFuture<BufferedImage> decodeAsync(String file) {
+        return CompletableFuture.supplyAsync(() -> decode(file), pool);
+    }
+
+    /**
+     * Reads an image file, reporting an error the same way the rest of the game does
+     *
+     * @return The image, null if it could not be read
+     */
+    static BufferedImage decode(String file) {
+        try {
+            BufferedImage img = ImageIO.read(new File(file));
+            if (img == null) {
+                throw new IOException("Unsupported image " + file);
+            }
+            return img;
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether preloading has finished
+     */
+    public boolean isReady() {
+        return preloaded != null && preloaded.isDone();
+    }
+
+    /**
+     * @return Number of loading steps done so far, out of getTotalCount()
+     */
+    public int getLoadedCount() {
+        return loadedCount.get();
+    }
+
+    /**
+     * @return Number of loading steps in preloading: one per image plus building the atlas, 0 if
+     *         preloading has not been started
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return Time preloading took in nanoseconds, -1 if it has not finished
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+}
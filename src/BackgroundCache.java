@@ -0,0 +1,231 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The background images of the rooms, loaded the first time a room is drawn instead of when the
+ * rooms are made. The most recently used backgrounds are kept as long as their decoded pixels fit
+ * in a number of bytes (set with -Dblob.backgroundCacheMB, 8 MB by default, which holds the
+ * backgrounds of the current room and of the rooms next to it). Backgrounds pushed out of that
+ * budget are only softly referenced, so they are used again if the garbage collector has not
+ * needed their memory yet and decoded again otherwise.
+ * The memory the backgrounds take therefore stays the same however many rooms there are.
+ *
+ * Backgrounds of rooms that are likely to be drawn soon can be loaded ahead of time on the
+ * AssetManager's threads with prefetch(), so that entering a room does not wait for decoding.
+ */
+public class BackgroundCache {
+
+    private static final long DEFAULT_BUDGET_MB = 8;
+
+    private static final BackgroundCache INSTANCE = new BackgroundCache(
+            Long.getLong("blob.backgroundCacheMB", DEFAULT_BUDGET_MB) * 1024 * 1024);
+
+    private final long budgetBytes;
+
+    /* Backgrounds within the budget, least recently used first */
+    private final LinkedHashMap<String, BufferedImage> recent =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /* Backgrounds pushed out of the budget, until the garbage collector clears them */
+    private final Map<String, SoftReference<BufferedImage>> evicted = new HashMap<>();
+
+    /* Backgrounds being decoded */
+    private final Map<String, CompletableFuture<BufferedImage>> loading = new HashMap<>();
+
+    /* Where the backgrounds asked for with get() came from */
+    private int hits;
+    private int softHits;
+    private int misses;
+
+    /**
+     * Constructor
+     *
+     * @param budgetBytes number of bytes of decoded pixels to keep strongly referenced
+     */
+    BackgroundCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static BackgroundCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param file image file of a background
+     * @return The decoded background, waiting for it if it is being prefetched and decoding it on
+     *         the calling thread if it is not cached at all; null if it could not be read. If the
+     *         decoder failed with an exception other than an IOException, that exception is
+     *         thrown, wrapped in a CompletionException if it was thrown on another thread, and
+     *         the background is decoded again the next time it is asked for.
+     */
+    public BufferedImage get(String file) {
+        CompletableFuture<BufferedImage> future;
+        boolean decodeHere = false;
+        synchronized (this) {
+            BufferedImage img = lookup(file);
+            if (img != null) {
+                return img;
+            }
+            future = loading.get(file);
+            if (future == null) {
+                misses++;
+                future = new CompletableFuture<>();
+                loading.put(file, future);
+                decodeHere = true;
+            }
+        }
+        if (decodeHere) {
+            BufferedImage img;
+            try {
+                img = AssetManager.decode(file);
+            } catch (Throwable e) {
+                // a broken decoder must not leave everyone else waiting for the image forever
+                complete(file, future, null, e);
+                throw e;
+            }
+            complete(file, future, img, null);
+        }
+        return future.join();
+    }
+
+    /**
+     * Starts decoding a background on the AssetManager's threads if it is not cached or being
+     * decoded already
+     *
+     * @param file image file of a background
+     */
+    public void prefetch(String file) {
+        CompletableFuture<BufferedImage> future;
+        synchronized (this) {
+            if (recent.containsKey(file) || loading.containsKey(file)) {
+                return;
+            }
+            SoftReference<BufferedImage> ref = evicted.get(file);
+            if (ref != null && ref.get() != null) {
+                return;
+            }
+            future = new CompletableFuture<>();
+            loading.put(file, future);
+        }
+        AssetManager.get().decodeAsync(file).whenComplete(
+                (img, failure) -> complete(file, future, img, failure));
+    }
+
+    /**
+     * Finds a background that is already decoded and marks it as the most recently used one
+     */
+    private BufferedImage lookup(String file) {
+        BufferedImage img = recent.get(file);
+        if (img != null) {
+            hits++;
+            return img;
+        }
+        SoftReference<BufferedImage> ref = evicted.remove(file);
+        img = (ref != null) ? ref.get() : null;
+        if (img != null) {
+            softHits++;
+            insert(file, img);
+        }
+        return img;
+    }
+
+    /**
+     * Stores a decoded background and hands it to everyone waiting for it, or hands them the
+     * exception the decoder failed with if it is not null
+     */
+    private void complete(String file, CompletableFuture<BufferedImage> future, BufferedImage img,
+                          Throwable failure) {
+        synchronized (this) {
+            loading.remove(file);
+            if (img != null) {
+                insert(file, img);
+            }
+        }
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(img);
+        }
+    }
+
+    /**
+     * @return Whether a background is being decoded
+     */
+    synchronized boolean isLoading(String file) {
+        return loading.containsKey(file);
+    }
+
+    /**
+     * Adds a background as the most recently used one, moving the least recently used ones out of
+     * the budget. The background just added is always kept, even if it is larger than the budget.
+     */
+    private void insert(String file, BufferedImage img) {
+        BufferedImage old = recent.put(file, img);
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        evicted.remove(file);
+        bytes += sizeOf(img);
+        Iterator<Map.Entry<String, BufferedImage>> iter = recent.entrySet().iterator();
+        while (bytes > budgetBytes && recent.size() > 1) {
+            Map.Entry<String, BufferedImage> eldest = iter.next();
+            bytes -= sizeOf(eldest.getValue());
+            evicted.put(eldest.getKey(), new SoftReference<>(eldest.getValue()));
+            iter.remove();
+        }
+        evicted.values().removeIf(ref -> ref.get() == null);
+    }
+
+    /**
+     * @return Number of bytes the pixels of an image take
+     */
+    static long sizeOf(BufferedImage img) {
+        DataBuffer data = img.getRaster().getDataBuffer();
+        return (long) data.getSize() * data.getNumBanks()
+                * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+    }
+
+    /**
+     * @return Whether a background is kept within the budget
+     */
+    public synchronized boolean contains(String file) {
+        return recent.containsKey(file);
+    }
+
+    /**
+     * @return Number of bytes of the backgrounds kept within the budget
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of backgrounds asked for with get() that were kept within the budget
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of backgrounds asked for with get() that had been pushed out of the budget
+     *         but not yet cleared by the garbage collector
+     */
+    public synchronized int getSoftHits() {
+        return softHits;
+    }
+
+    /**
+     * @return Number of backgrounds asked for with get() that had to be decoded on the calling
+     *         thread
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+}
@@ -1,28 +1,11 @@
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 /**
  * Main character of game represented by a green blob on the screen
  */
+@SuppressWarnings("serial")
 public class Blob extends GameObj {
     
-    private static final String IMG_FILE_RIGHT = "files/BlobRight.png";
-    private static final String IMG_FILE_LEFT = "files/BlobLeft.png";
-    private static final String IMG_FILE_RIGHT_SQUISHED = "files/BlobRightSquished.png";
-    private static final String IMG_FILE_LEFT_SQUISHED = "files/BlobLeftSquished.png";
-    private static final String IMG_FILE_RIGHT_HIT = "files/BlobRightHit.png";
-    private static final String IMG_FILE_LEFT_HIT = "files/BlobLeftHit.png";
-    private static final String IMG_FILE_RIGHT_SQUISHED_HIT = "files/BlobRightSquishedHit.png";
-    private static final String IMG_FILE_LEFT_SQUISHED_HIT = "files/BlobLeftSquishedHit.png";
-    private static final String IMG_FILE_DEAD = "files/BloodSplatGreen.png";
-    private static final String IMG_FILE_90 = "files/Blob90.png";
-	private static final String IMG_FILE_180 = "files/Blob180.png";
-	private static final String IMG_FILE_270 = "files/Blob270.png";
-	private static final String IMG_FILE_PROJECTILE = "files/BlobProjectile.png";
-	
 	/* Constants specific to Blob */
     private static final int NUM_LIVES = 6;
     private static final int INIT_POS_X = 0;
@@ -41,22 +24,7 @@ public class Blob extends GameObj {
     private static final int RADIUS = 29;
     
 	/* Current image associated with Blob Object */
-    private BufferedImage img;
-	
-	/* Images associated with Blob Object */
-    private static BufferedImage imgRight;
-    private static BufferedImage imgLeft;
-    private static BufferedImage imgRightSquished;
-    private static BufferedImage imgLeftSquished;
-    private static BufferedImage imgRightHit;
-    private static BufferedImage imgLeftHit;
-    private static BufferedImage imgRightSquishedHit;
-    private static BufferedImage imgLeftSquishedHit;
-    private static BufferedImage imgDead;
-	private static BufferedImage img90;
-	private static BufferedImage img180;
-	private static BufferedImage img270;
-	private static BufferedImage imgProj;
+    private Sprite sprite = Sprite.BLOB_RIGHT;
     
 	/* Health Bar for Blob */
     private HealthBar healthBar;
@@ -81,26 +49,6 @@ public class Blob extends GameObj {
         this.healthBar = new HealthBar(NUM_LIVES);
         this.numHurtFrames = (int) (Math.round((double) GameCourt.FPS * HURT_INTERVAL));
         this.counterHurt = numHurtFrames;
-        try {
-            if (imgRight == null) {
-                imgRight = ImageIO.read(new File(IMG_FILE_RIGHT));
-                imgLeft = ImageIO.read(new File(IMG_FILE_LEFT));
-                imgRightSquished = ImageIO.read(new File(IMG_FILE_RIGHT_SQUISHED));
-                imgLeftSquished = ImageIO.read(new File(IMG_FILE_LEFT_SQUISHED));
-                imgRightHit = ImageIO.read(new File(IMG_FILE_RIGHT_HIT));
-                imgLeftHit = ImageIO.read(new File(IMG_FILE_LEFT_HIT));
-                imgRightSquishedHit = ImageIO.read(new File(IMG_FILE_RIGHT_SQUISHED_HIT));
-                imgLeftSquishedHit = ImageIO.read(new File(IMG_FILE_LEFT_SQUISHED_HIT));
-                imgDead = ImageIO.read(new File(IMG_FILE_DEAD));
-				img90 = ImageIO.read(new File(IMG_FILE_90));
-				img180 = ImageIO.read(new File(IMG_FILE_180));
-				img270 = ImageIO.read(new File(IMG_FILE_270));
-				imgProj = ImageIO.read(new File(IMG_FILE_PROJECTILE));
-            }
-            this.img = imgRight;
-        } catch (IOException e) {
-            System.out.println("IOException: " + e.getMessage());
-        }
     }
     
     public void toggleTransparency() {
@@ -112,9 +60,33 @@ public class Blob extends GameObj {
 		rotation = ((rotation + 1) % 4);
     }
 	
+    @Override
+    public int getLayer() {
+        return CollisionLayers.BLOB;
+    }
+    
     @Override
     public void draw(Graphics g) {
-        g.drawImage(img, this.getPx(), this.getPy(), SIZE, SIZE, null);
+        SpriteAtlas.get().draw(g, sprite, this.getDrawPx(), this.getDrawPy());
+    }
+    
+	/**
+     * Advances the counters used to animate Blob squishing and changing color after being hit.
+     * Must be called once per time step (not per frame drawn) for the animation to keep time.
+     * 
+     * @param moveKeyPressed whether the blob is currently being controlled to move
+     */
+    public void advanceAnimation(boolean moveKeyPressed) {
+        counterHurt++;
+        if (!moveKeyPressed) {
+            squishedState = false;
+            counterSquish = 0;
+        } else {
+            counterSquish++;
+            if ((counterSquish % squishFreq) == 0) {
+               squishedState = !squishedState;
+            }  
+        }
     }
     
 	/**
@@ -129,49 +101,84 @@ public class Blob extends GameObj {
      *        border size of border between room and court used to draw health bar
      */
     public void draw(Graphics g, boolean moveKeyPressed, Direction d, int courtWidth, int border) {
-
+		chooseSprite(moveKeyPressed, d);
+		if (!isTransparent) {
+			SpriteAtlas.get().draw(g, sprite, this.getDrawPx(), this.getDrawPy());
+		}
+			
+        // draw health bar
+        g.translate(courtWidth, -(int) Math.round((double) border / 2));
+        healthBar.draw(g);
+    }
+    
+	/**
+     * Adds Blob and its health bar to a snapshot as draw() would draw them
+     * 
+     * @param snapshot snapshot being filled
+     *        moveKeyPressed whether the blob is currently being controlled to move
+     *        d direction that blob is currently moving
+     *        courtWidth width of court used to place health bar
+     *        border size of border between room and court
+     */
+    public void addTo(WorldSnapshot snapshot, boolean moveKeyPressed, Direction d, int courtWidth,
+                      int border) {
+		chooseSprite(moveKeyPressed, d);
+		this.addTo(snapshot, border, border);
+		healthBar.addTo(snapshot, border + courtWidth,
+		                border - (int) Math.round((double) border / 2));
+    }
+    
+    @Override
+    protected Sprite getSprite() {
+        return isTransparent ? null : sprite;
+    }
+    
+	/**
+     * Chooses the image Blob is drawn with, animating it
+     * 
+     * @param moveKeyPressed whether the blob is currently being controlled to move
+     *        d direction that blob is currently moving
+     */
+    private void chooseSprite(boolean moveKeyPressed, Direction d) {
 		if (isDead) {
-            img = imgDead;
+            sprite = Sprite.BLOB_DEAD;
 		} else if (rotateMode) {
 			switch (rotation) {
 			case 0:
-				img = imgRight;
+				sprite = Sprite.BLOB_RIGHT;
 				break;  
 			case 1:
-				img = img90;
+				sprite = Sprite.BLOB_90;
 				break;
 			case 2:
-				img = img180;
+				sprite = Sprite.BLOB_180;
 				break;
 			case 3:
-				img = img270;
+				sprite = Sprite.BLOB_270;
 				break;
 			}
 		} else if (counterHurt < numHurtFrames) {
-            drawHitOrNot(imgLeftSquishedHit, imgRightSquishedHit, imgLeftHit, imgRightHit,
-                         moveKeyPressed, d);
-        } else {
-            drawHitOrNot(imgLeftSquished, imgRightSquished, imgLeft, imgRight,
-                         moveKeyPressed, d);
-        }
-		
-		if (!isTransparent) {
-			g.drawImage(img, this.getPx(), this.getPy(), SIZE, SIZE, null);
-		}
-			
-        counterHurt++;
-        if (!moveKeyPressed) {
-            squishedState = false;
-            counterSquish = 0;
+            drawHitOrNot(Sprite.BLOB_LEFT_SQUISHED_HIT, Sprite.BLOB_RIGHT_SQUISHED_HIT,
+                         Sprite.BLOB_LEFT_HIT, Sprite.BLOB_RIGHT_HIT, moveKeyPressed, d);
         } else {
-            counterSquish++;
-            if ((counterSquish % squishFreq) == 0) {
-               squishedState = !squishedState;
-            }  
+            drawHitOrNot(Sprite.BLOB_LEFT_SQUISHED, Sprite.BLOB_RIGHT_SQUISHED,
+                         Sprite.BLOB_LEFT, Sprite.BLOB_RIGHT, moveKeyPressed, d);
         }
-        // draw health bar
-        g.translate(courtWidth, -(int) Math.round((double) border / 2));
-        healthBar.draw(g);
+    }
+    
+	/**
+     * Grows a rectangle to cover the main character and its health bar until the next time step
+     * 
+     * @param bounds rectangle to grow, see GameObj.addMovingBounds()
+     *        courtWidth width of court used to draw health bar
+     *        border size of border between room and court
+     */
+    public void addMovingBoundsWithHealthBar(Rectangle bounds, int courtWidth, int border) {
+        this.addMovingBounds(bounds, border, border);
+        int barX = border + courtWidth;
+        int barY = border - (int) Math.round((double) border / 2);
+        bounds.add(barX - healthBar.getWidth(), barY);
+        bounds.add(barX, barY + HealthBar.HEART_SIZE);
     }
    
 	/**
@@ -184,8 +191,8 @@ public class Blob extends GameObj {
      *        moveKeyPressed whether the Blob is currently being controlled to move
      *        d direction that Blob is currently moving
      */
-    private void drawHitOrNot(BufferedImage leftSquishedImage, BufferedImage rightSquishedImage,
-                              BufferedImage leftImage, BufferedImage rightImage,
+    private void drawHitOrNot(Sprite leftSquishedImage, Sprite rightSquishedImage,
+                              Sprite leftImage, Sprite rightImage,
                               boolean moveKeyPressed, Direction d) {
         if (moveKeyPressed && squishedState) {
             drawLeftOrRight(leftSquishedImage, rightSquishedImage, d);
@@ -201,11 +208,11 @@ public class Blob extends GameObj {
      *        rightImage image of Blob facing right, either squished or not
      *        d direction that Blob is currently moving
      */
-    private void drawLeftOrRight(BufferedImage leftImage, BufferedImage rightImage, Direction d) {
+    private void drawLeftOrRight(Sprite leftImage, Sprite rightImage, Direction d) {
         if (d == Direction.LEFT) {
-            img = leftImage;
+            sprite = leftImage;
         } else if (d == Direction.RIGHT) {
-            img = rightImage;
+            sprite = rightImage;
         }
     }
     
@@ -243,30 +250,7 @@ public class Blob extends GameObj {
     public void fire(RoomHandler roomHandler, Direction d) {
         int x = this.getPxCenter();
         int y = this.getPyCenter();
-        roomHandler.addProjectile(new BlobProjectile(x, y, d));
+        roomHandler.spawnProjectile(ProjectileStore.BLOB, this, x, y, d, null);
     }
 	
-	/**
-	 * Projectile associated with Blob
-	 */
-	public class BlobProjectile extends Projectile {
-
-		/* Size of image and radius used for collisions */
-		public static final int SIZE = 16;
-		public static final int RADIUS = 8;
-
-		/**
-		 * Constructor
-		 */
-		public BlobProjectile(int x, int y, Direction d) {
-			super(x - RADIUS, y - RADIUS, SIZE, RADIUS, d, null);
-		}
-
-		@Override
-		public void draw(Graphics g) {
-			g.drawImage(imgProj, this.getPx(), this.getPy(), this.getWidth(), this.getHeight(), null);
-		}
-
-	}
-	
 }
\ No newline at end of file
@@ -1,39 +1,31 @@
 import java.util.Collections;
 import java.util.Arrays;
+import java.util.Random;
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 /**
  *  Represents the final enemy in the game. It pops up by surprise in the game.
  */
+@SuppressWarnings("serial")
 public class Boss extends Enemy {
 
-	private static final String IMG_FILE = "files/Boss.png";
-	private static final String IMG_FILE_HIT = "files/BossHit.png";
-	public static final String IMG_FILE_PROJECTILE = "files/BossProjectile.png";
-
 	private static final int NUM_LIVES = 20;
 	private static final double ATTACK_INTERVAL = 8;
 	private static final double FIRING_INTERVAL = 1.8;
-	private static final int[] ATTACK_ORDER = {0, 1, 2, 3};
 
 	public static final int SIZE = 120;
 	public static final int RADIUS = 52;
 
-	private static BufferedImage img;
-	private static BufferedImage imgNotHit;
-	private static BufferedImage imgHit;
-	private static BufferedImage imgProj;
-
 	private boolean activated = false;
 	private int counterAttackMode = 0;
 	private int attackModeFreq;
 	private AttackMode attack = AttackMode.CENTER;
 	private int attackIdx = 0;
 	
+	/* Order in which the edges of the court are attacked from, shuffled after every round */
+	private final Integer[] attackOrder = {0, 1, 2, 3};
+	private final Random random;
+	
 	private boolean firingMode = true;
 	private int counterFire = 1;
 	private int firingFreq; 
@@ -43,20 +35,20 @@ public class Boss extends Enemy {
     * By default is still until given a velocity
     */
     public Boss(int px, int py) {
+		this(px, py, new Random());
+    }
+    
+    /**
+    * Constructor
+    * 
+    * @param random source of randomness for the attack order, seeded for reproducible games
+    */
+    public Boss(int px, int py, Random random) {
 		super(0, px, py, SIZE, RADIUS, NUM_LIVES);
+		this.random = random;
 		this.attackModeFreq =  (int) (Math.round((double) GameCourt.FPS * ATTACK_INTERVAL));
 		this.firingFreq = (int) (Math.round((double) GameCourt.FPS * FIRING_INTERVAL));
 		this.fourthSecond = (int) (Math.round((double) GameCourt.FPS / 4));
-		try {
-			if (img == null) {
-				imgNotHit = ImageIO.read(new File(IMG_FILE));
-				imgHit = ImageIO.read(new File(IMG_FILE_HIT));
-				imgProj = ImageIO.read(new File(IMG_FILE_PROJECTILE));
-			}
-			img = imgHit;
-			} catch (IOException e) {
-				System.out.println("IOException: " + e.getMessage());
-		}
     }
     
     @Override
@@ -64,14 +56,17 @@ public class Boss extends Enemy {
 		if (!activated) {
 			return;
 		}
-		if (this.isHurt()) {
-            img = imgHit;
-        } else {
-            img = imgNotHit;
-        }
-        g.drawImage(img, this.getPx(), this.getPy(), SIZE, SIZE, null);
+        SpriteAtlas.get().draw(g, getSprite(), this.getDrawPx(), this.getDrawPy());
     }
     
+	@Override
+	protected Sprite getSprite() {
+		if (!activated) {
+			return null;
+		}
+		return this.isHurt() ? Sprite.BOSS_HIT : Sprite.BOSS;
+	}
+    
 	public void activate() {
 		activated = true;
 	}
@@ -90,16 +85,24 @@ public class Boss extends Enemy {
 		counterAttackMode++;
 		if ((counterAttackMode % attackModeFreq) == 0) {
 			if (attackModeFreq > 1) {
-				attackModeFreq -= fourthSecond;
+				attackModeFreq = Math.max(1, attackModeFreq - fourthSecond);
 			}
-			if (attackIdx == ATTACK_ORDER.length) {
+			if (attackIdx == attackOrder.length) {
 				attack = AttackMode.CENTER;
 				attackIdx = 0;
-				Collections.shuffle(Arrays.asList(ATTACK_ORDER));
+				Collections.shuffle(Arrays.asList(attackOrder), random);
 			} else {
-				attack = AttackMode.values()[attackIdx];
+				attack = AttackMode.values()[attackOrder[attackIdx]];
 				attackIdx++;
 			}
+			if (GameEvents.isRecorderRunning()) {
+				GameEvents.BossAttackSwitch event = new GameEvents.BossAttackSwitch();
+				if (event.shouldCommit()) {
+					event.attackMode = attack.name();
+					event.attackInterval = attackModeFreq;
+					event.commit();
+				}
+			}
 			switch (attack) {
 				case CENTER:
 					this.moveToCenter();
@@ -121,23 +124,19 @@ public class Boss extends Enemy {
 	}
 	
 	/**
-     * Fires projectiles from Boss
-     * 
-     * @param roomHandler the instance of the RoomHandler that controls the environment of the game
+     * Fires projectiles from Boss into its room
      */
 	private void fire() {
-		int x = this.getPxCenter();
-		int y = this.getPyCenter();
 		if (firingMode) {
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.UP, null));
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.DOWN, null));
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.RIGHT, null));
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.LEFT, null));
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.UP, null);
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.DOWN, null);
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.RIGHT, null);
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.LEFT, null);
 		} else {
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.UP, Direction.RIGHT));
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.UP, Direction.LEFT));
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.DOWN, Direction.RIGHT));
-			Room.addProjectile((Projectile) new BossProjectile(x, y, Direction.DOWN, Direction.LEFT));
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.UP, Direction.RIGHT);
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.UP, Direction.LEFT);
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.DOWN, Direction.RIGHT);
+			this.spawnProjectile(ProjectileStore.BOSS, Direction.DOWN, Direction.LEFT);
 		}
 		firingMode = !firingMode;
 	}
@@ -149,27 +148,4 @@ public class Boss extends Enemy {
 		UP, DOWN, LEFT, RIGHT, CENTER;
 	}
 
-	/**
-	 * Projectile associated with Boss
-	 */
-	public class BossProjectile extends Projectile {
-
-		public static final int SIZE = 20;
-		public static final int RADIUS = 10;
-
-		/**
-		 * Constructor
-		 */
-		public BossProjectile(int x, int y, Direction d1, Direction d2) {
-			super(x - RADIUS, y - RADIUS, SIZE, RADIUS, d1, d2);
-		}
-
-		@Override
-		public void draw(Graphics g) {
-			g.drawImage(imgProj, this.getPx(), this.getPy(), this.getWidth(), this.getHeight(),
-					null);
-		}
-
-	}
-
 }
\ No newline at end of file
@@ -1,39 +1,42 @@
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 /**
  * A basic game object starting in the upper left corner of the game court. It is displayed as a
  * square of a specified color.
  */
+@SuppressWarnings("serial")
 public class Boulder extends GameObj {
     
-    private static final String IMG_FILE = "files/Boulder.png";
-    
     public static final int SIZE = 90;
     public static final int RADIUS = 40;
 
-    private static BufferedImage img;
-    
     /**
     * By default is still until given a velocity
     */
     public Boulder(int x, int y) {
-        super(-0, 0, 0, x, y, SIZE, SIZE, RADIUS);
-        try {
-            if (img == null) {
-                img = ImageIO.read(new File(IMG_FILE));
-            }
-        } catch (IOException e) {
-            System.out.println("IOException: " + e.getMessage());
-        }
+        this(x, y, null);
+    }
+    
+    /**
+    * Constructor for a boulder kept in a store shared with other objects, see Room.addBoulder()
+    */
+    public Boulder(int x, int y, EntityStore store) {
+        super(store, -0, 0, 0, x, y, SIZE, SIZE, RADIUS);
+    }
+    
+    @Override
+    public int getLayer() {
+        return CollisionLayers.BOULDER;
     }
     
     @Override
     public void draw(Graphics g) {
-        g.drawImage(img, this.getPx(), this.getPy(), SIZE, SIZE, null);
+        SpriteAtlas.get().draw(g, Sprite.BOULDER, this.getPx(), this.getPy());
+    }
+    
+    @Override
+    public void addTo(WorldSnapshot snapshot, int dx, int dy) {
+        snapshot.addStatic(Sprite.BOULDER, this.getPx() + dx, this.getPy() + dy);
     }
     
 }
\ No newline at end of file
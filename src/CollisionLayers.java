@@ -0,0 +1,87 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Layers that game objects and projectiles collide on, and which layers interact with each other.
+ *
+ * Every game object and every projectile is on one layer, given by a single bit, and has a mask of
+ * the layers it interacts with. Two things are only tested for a collision if the layer of one is
+ * in the mask of the other, which is checked with a bitwise AND before any distance test, e.g. by
+ * SpatialGrid.query(). What a collision then does is up to the room:
+ *  - a projectile hurts the character it hits and disappears, but never hits the character that
+ *    fired it, so letting Blob's projectiles hit Blob or enemy projectiles hit enemies only hurts
+ *    the others
+ *  - two projectiles that hit each other both disappear
+ *  - Blob, and enemies, stop instead of walking into a boulder or a character
+ *
+ * The interactions are symmetric. A CollisionLayers cannot be changed, withInteraction() gives a
+ * changed copy, so each room can be given its own (see Room.setCollisionLayers()) and rooms
+ * advanced on different threads never see another room's layers change. DEFAULT is what the game
+ * is played with.
+ */
+@SuppressWarnings("serial")
+public final class CollisionLayers implements Serializable {
+
+    /* Layers, one bit each */
+    public static final int NONE = 0;
+    public static final int BOULDER = 1;
+    public static final int ENEMY = 2;
+    public static final int BLOB = 4;
+    public static final int BLOB_PROJECTILE = 8;
+    public static final int ENEMY_PROJECTILE = 16;
+
+    /* Every layer of projectiles */
+    public static final int PROJECTILES = BLOB_PROJECTILE | ENEMY_PROJECTILE;
+
+    private static final int LAYER_COUNT = 5;
+
+    public static final CollisionLayers DEFAULT = new CollisionLayers(new int[LAYER_COUNT])
+            .withInteraction(BLOB, BOULDER, true)
+            .withInteraction(BLOB, ENEMY, true)
+            .withInteraction(BLOB_PROJECTILE, BOULDER, true)
+            .withInteraction(BLOB_PROJECTILE, ENEMY, true)
+            .withInteraction(ENEMY_PROJECTILE, BOULDER, true)
+            .withInteraction(ENEMY_PROJECTILE, BLOB, true);
+
+    /* Mask of each layer, by the number of its bit */
+    private final int[] masks;
+
+    private CollisionLayers(int[] masks) {
+        this.masks = masks;
+    }
+
+    /**
+     * @param a a layer
+     *        b another layer, or the same one
+     *        interacts whether things on the two layers should collide
+     * @return Copy of these layers in which the two layers do or do not interact, both ways
+     */
+    public CollisionLayers withInteraction(int a, int b, boolean interacts) {
+        int[] changed = Arrays.copyOf(masks, LAYER_COUNT);
+        int i = Integer.numberOfTrailingZeros(a);
+        int j = Integer.numberOfTrailingZeros(b);
+        if (interacts) {
+            changed[i] |= b;
+            changed[j] |= a;
+        } else {
+            changed[i] &= ~b;
+            changed[j] &= ~a;
+        }
+        return new CollisionLayers(changed);
+    }
+
+    /**
+     * @param layer a layer, NONE for things that collide with nothing
+     * @return Bit mask of the layers that it interacts with
+     */
+    public int getMask(int layer) {
+        return (layer == NONE) ? NONE : masks[Integer.numberOfTrailingZeros(layer)];
+    }
+
+    /**
+     * @return Whether things on two layers collide
+     */
+    public boolean interacts(int a, int b) {
+        return (getMask(a) & b) != 0;
+    }
+}
@@ -3,60 +3,104 @@
  * by hitting with Blob's projectiles. Holds a counter that can be used to keep track
  * of how long ago Enemy has been h
  */
+@SuppressWarnings("serial")
 public abstract class Enemy extends GameObj {
     
 	/* Interval in seconds at which Enemy appears hurt after being hit by Blob's projectiles */
     private static final double HURT_INTERVAL = 1.0;
     
-	/* Number of frames associated with time Enemy Appears hurt and counter to keep track */
+	/* Number of frames associated with time Enemy Appears hurt; the number of frames since it was
+	 * last hurt and its current health are kept in its EntityStore */
     private int numHurtFrames;
-    private int counterHurt;
 	
-	/* Current health of the enemy */
-	private int health;
+	/* Room that the enemy is in and fires its projectiles into */
+	private Room room;
     
     /**
     * Constructor
     */
     public Enemy(int velocity, int px, int py, int size, int radius, int numLives) {
         super(velocity, 0, 0, px, py, size, size, radius);
-        this.health = numLives;
         this.numHurtFrames = (int) (Math.round((double) GameCourt.FPS * HURT_INTERVAL));
-        this.counterHurt = numHurtFrames;
+        this.getStore().setHealth(this.getIndex(), numLives);
+        this.getStore().setHurtCounter(this.getIndex(), numHurtFrames);
     }
 	
+	/**
+     * Sets the room that the enemy is in. Called by Room.addEnemy().
+     * 
+     * @param room room that the enemy has been added to
+     */
+	public void setRoom(Room room) {
+		this.room = room;
+	}
+	
+	/**
+     * @return Room that the enemy is in, null if it has not been added to a room
+     */
+	public Room getRoom() {
+		return room;
+	}
+	
+	/**
+     * Fires a projectile into the room that the enemy is in. Does nothing if the enemy has not
+     * been added to a room.
+     * 
+     * @param owner type of the enemy firing the projectile (see ProjectileStore)
+     *        d1 main direction that the projectile should be fired in
+     *        d2 secondary direction that the projectile should be fired in (can be null)
+     */
+	protected void spawnProjectile(int owner, Direction d1, Direction d2) {
+		if (room != null) {
+			room.spawnProjectile(owner, this, this.getPxCenter(), this.getPyCenter(), d1, d2);
+		}
+	}
+	
+	@Override
+	public int getLayer() {
+		return CollisionLayers.ENEMY;
+	}
+	
 	/**
      * Removes a unit of health from Enemy. Doesn't do anything if Enemy has been recently hit.
      * 
      * @return Whether Enemy is dead
      */
     public boolean removeHealth() {
-        if (counterHurt > numHurtFrames) { 
-			counterHurt = 0;
-			health -= 1;
+		EntityStore store = this.getStore();
+		int i = this.getIndex();
+        if (store.getHurtCounter(i) > numHurtFrames) { 
+			store.setHurtCounter(i, 0);
+			store.setHealth(i, store.getHealth(i) - 1);
 		}
-        return health <= 0;
+        return store.getHealth(i) <= 0;
     }
 	
 	/**
-     * Checks whether Enemy has been recently hit and increments the counter for the number of 
-     * frames since Enemy has been hit.
-     * 
-     * Must call this method once per a frame (perhaps within draw method) for it to work 
-     * accurately.
+     * Checks whether Enemy has been recently hit
      * 
      * @return Whether enemy has recently been hit
      */
     public boolean isHurt() {
-		counterHurt++;
-        return counterHurt < numHurtFrames;
+        return this.getStore().getHurtCounter(this.getIndex()) < numHurtFrames;
+    }
+	
+	/**
+     * Increments the counter for the number of frames since Enemy has been hit.
+     * 
+     * Must call this method once per time step (not per frame drawn) for it to work accurately.
+     * EntityStore.advanceHurtCounters() does the same for every enemy in a store at once.
+     */
+    public void advanceHurtCounter() {
+		EntityStore store = this.getStore();
+		store.setHurtCounter(this.getIndex(), store.getHurtCounter(this.getIndex()) + 1);
     }
     
 	/**
      * Default method to advance enemy. Changes the enemy's velocity and has the enemy shoot 
      * projectiles depending on the the timer of the game. 
      * 
-     * @param blob the main character of the game
+     * @param blob the main character of the game, null if it is not in the same room
      */
     public abstract void advance(Blob blob);
     
@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Holds the state that changes every time step of a group of game objects, such as the enemies
+ * of a room, as components in one array of ints: position, previous position, velocity, radius,
+ * bounds, health and the number of time steps since the object was hurt. The components of an
+ * object are next to each other, so that the AI of an object reading several of them touches one
+ * cache line, and the systems that update every object the same way, like movement, run as plain
+ * loops over the array instead of as a virtual call per object.
+ *
+ * A GameObj is a facade over one entry of a store, holding only the store and its index. What
+ * differs between kinds of objects, such as how an enemy decides where to move and when to fire,
+ * stays in the GameObj subclasses. Every GameObj starts out in a store of its own and is moved
+ * into a shared one with GameObj.moveTo(). The entries always fill indices 0 to size() - 1 in
+ * the order they were added: unlike in ProjectileStore, removing an entry moves all entries after
+ * it, since the order of the enemies in a room decides which one a projectile hits first. Enemies
+ * are removed rarely enough for this not to matter.
+ */
+@SuppressWarnings("serial")
+public class EntityStore implements Serializable {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /* Components of an entry, by their offset in its part of the data array */
+    private static final int PX = 0;
+    private static final int PY = 1;
+    private static final int PREV_PX = 2;
+    private static final int PREV_PY = 3;
+    private static final int VX = 4;
+    private static final int VY = 5;
+    private static final int RADIUS = 6;
+    private static final int MAX_X = 7;
+    private static final int MAX_Y = 8;
+    private static final int HEALTH = 9;
+    private static final int HURT_COUNTER = 10;
+    private static final int STRIDE = 11;
+
+    /*
+     * Game object of each entry, and the components of each entry next to each other so that
+     * reading the state of one object touches as few cache lines as possible; only the first size
+     * entries are saved (see writeObject())
+     */
+    private transient GameObj[] entities;
+    private transient int[] data;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param capacity number of entries that can be held before the arrays have to grow
+     */
+    public EntityStore(int capacity) {
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        capacity = Math.max(capacity, 1);
+        entities = new GameObj[capacity];
+        data = new int[capacity * STRIDE];
+    }
+
+    /**
+     * Saves the entries without the unused part of the arrays
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < size; i++) {
+            out.writeObject(entities[i]);
+        }
+        for (int k = 0; k < size * STRIDE; k++) {
+            out.writeInt(data[k]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        allocate(Math.max(size, DEFAULT_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            entities[i] = (GameObj) in.readObject();
+        }
+        for (int k = 0; k < size * STRIDE; k++) {
+            data[k] = in.readInt();
+        }
+    }
+
+    /**
+     * Adds an entry for a game object, with all its components 0. Called by GameObj.
+     *
+     * @param entity the game object that is the facade of the entry
+     * @return Index of the new entry
+     */
+    int add(GameObj entity) {
+        if (size == entities.length) {
+            grow();
+        }
+        int i = size++;
+        entities[i] = entity;
+        Arrays.fill(data, i * STRIDE, (i + 1) * STRIDE, 0);
+        return i;
+    }
+
+    /**
+     * Copies every component of an entry of another store into an entry of this one
+     *
+     * @param i index of the entry to copy into
+     *        from store to copy from
+     *        j index of the entry to copy from
+     */
+    void copy(int i, EntityStore from, int j) {
+        System.arraycopy(from.data, j * STRIDE, data, i * STRIDE, STRIDE);
+    }
+
+    private void grow() {
+        int capacity = entities.length * 2;
+        entities = Arrays.copyOf(entities, capacity);
+        data = Arrays.copyOf(data, capacity * STRIDE);
+    }
+
+    /**
+     * Removes an entry by moving the entries after it down by one and telling their game objects
+     * about their new index. Called by GameObj.
+     *
+     * @param i index of the entry to remove
+     */
+    void remove(int i) {
+        int moved = size - i - 1;
+        if (moved > 0) {
+            System.arraycopy(entities, i + 1, entities, i, moved);
+            System.arraycopy(data, (i + 1) * STRIDE, data, i * STRIDE, moved * STRIDE);
+            for (int k = i; k < size - 1; k++) {
+                entities[k].setEntityIndex(k);
+            }
+        }
+        size--;
+        entities[size] = null;
+    }
+
+    /*** SYSTEMS **********************************************************************************/
+
+    /**
+     * Moves every entry by its velocity, clipped to its bounds, as GameObj.move() does for one
+     */
+    public void moveAll() {
+        int end = size * STRIDE;
+        for (int k = 0; k < end; k += STRIDE) {
+            int px = data[k + PX];
+            int py = data[k + PY];
+            data[k + PREV_PX] = px;
+            data[k + PREV_PY] = py;
+            data[k + PX] = Math.min(Math.max(px + data[k + VX], 0), data[k + MAX_X]);
+            data[k + PY] = Math.min(Math.max(py + data[k + VY], 0), data[k + MAX_Y]);
+        }
+    }
+
+    /**
+     * Counts one more time step since every entry was last hurt, as
+     * Enemy.advanceHurtCounter() does for one
+     */
+    public void advanceHurtCounters() {
+        int end = size * STRIDE;
+        for (int k = HURT_COUNTER; k < end; k += STRIDE) {
+            data[k]++;
+        }
+    }
+
+    /**
+     * Determine whether an entry is currently intersecting a game object, in the same way as
+     * GameObj.intersects()
+     *
+     * @param i index of the entry
+     *        that the game object
+     * @return Whether the entry intersects the object
+     */
+    public boolean intersects(int i, GameObj that) {
+        int k = i * STRIDE;
+        long dx = (data[k + PX] + data[k + RADIUS]) - (that.getPx() + that.getRadius());
+        long dy = (data[k + PY] + data[k + RADIUS]) - (that.getPy() + that.getRadius());
+        long reach = Math.abs(data[k + RADIUS] + that.getRadius());
+        return dx * dx + dy * dy <= reach * reach;
+    }
+
+    /*** GETTERS AND SETTERS **********************************************************************/
+
+    public int size() {
+        return size;
+    }
+
+    public GameObj get(int i) {
+        return entities[i];
+    }
+
+    public int getPx(int i) {
+        return data[i * STRIDE + PX];
+    }
+
+    public int getPy(int i) {
+        return data[i * STRIDE + PY];
+    }
+
+    public int getPrevPx(int i) {
+        return data[i * STRIDE + PREV_PX];
+    }
+
+    public int getPrevPy(int i) {
+        return data[i * STRIDE + PREV_PY];
+    }
+
+    public int getVx(int i) {
+        return data[i * STRIDE + VX];
+    }
+
+    public int getVy(int i) {
+        return data[i * STRIDE + VY];
+    }
+
+    public int getRadius(int i) {
+        return data[i * STRIDE + RADIUS];
+    }
+
+    public int getMaxX(int i) {
+        return data[i * STRIDE + MAX_X];
+    }
+
+    public int getMaxY(int i) {
+        return data[i * STRIDE + MAX_Y];
+    }
+
+    public int getHealth(int i) {
+        return data[i * STRIDE + HEALTH];
+    }
+
+    public int getHurtCounter(int i) {
+        return data[i * STRIDE + HURT_COUNTER];
+    }
+
+    /**
+     * Sets the position of an entry, leaving its previous position as it was
+     */
+    public void setPosition(int i, int x, int y) {
+        data[i * STRIDE + PX] = x;
+        data[i * STRIDE + PY] = y;
+    }
+
+    /**
+     * Sets the previous position of an entry to its current position, so that it is not drawn
+     * sliding from where it was
+     */
+    public void snapPrevious(int i) {
+        data[i * STRIDE + PREV_PX] = data[i * STRIDE + PX];
+        data[i * STRIDE + PREV_PY] = data[i * STRIDE + PY];
+    }
+
+    public void setVx(int i, int v) {
+        data[i * STRIDE + VX] = v;
+    }
+
+    public void setVy(int i, int v) {
+        data[i * STRIDE + VY] = v;
+    }
+
+    /**
+     * Sets the radius of an entry and the bounds of its upper-left corner
+     */
+    public void setShape(int i, int r, int boundX, int boundY) {
+        data[i * STRIDE + RADIUS] = r;
+        data[i * STRIDE + MAX_X] = boundX;
+        data[i * STRIDE + MAX_Y] = boundY;
+    }
+
+    public void setHealth(int i, int h) {
+        data[i * STRIDE + HEALTH] = h;
+    }
+
+    public void setHurtCounter(int i, int counter) {
+        data[i * STRIDE + HURT_COUNTER] = counter;
+    }
+}
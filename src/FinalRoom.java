@@ -1,24 +1,27 @@
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
+import java.util.Random;
 
+@SuppressWarnings("serial")
 public class FinalRoom extends Room {
     
-	private static final String IMG_PORTAL = "files/Portal.png";
-	
-	private static BufferedImage imgPortal;
-	
     private Boss boss;
 	private Portal portal;
 	private boolean portalActivated = true;
     
     // draws itself but cannot advance anything or do anything with enemies
     public FinalRoom(String imgFileOpen, String imgFileClosed) {
+        this(imgFileOpen, imgFileClosed, new Random());
+    }
+	
+	/**
+     * Constructor
+     * 
+     * @param random source of randomness for the Boss, seeded for reproducible games
+     */
+    public FinalRoom(String imgFileOpen, String imgFileClosed, Random random) {
         super(imgFileOpen, imgFileClosed);		
 		portal = new Portal();
-		this.boss = new Boss(0, 0);
+		this.boss = new Boss(0, 0, random);
 		boss.moveToCenter();
 		this.addEnemy(boss);
     }   
@@ -49,6 +52,12 @@ public class FinalRoom extends Room {
         portal.draw(g);
     }
 	
+	@Override
+	public void addTo(WorldSnapshot snapshot) {
+		super.addTo(snapshot);
+		portal.addTo(snapshot, GameCourt.BORDER, GameCourt.BORDER);
+	}
+	
 	@Override
 	public boolean isOpen() {
 		return portalActivated;
@@ -59,6 +68,7 @@ public class FinalRoom extends Room {
 	 * The portal will disappear after colliding with it and reappear when the Boss is defeated
 	 * After the Boss is defeated, if the main character touches the portal, the game is won
 	 */
+	@SuppressWarnings("serial")
 	public class Portal extends GameObj {
 
 		public static final int SIZE = 200;
@@ -68,22 +78,20 @@ public class FinalRoom extends Room {
 		* Constructor
 		*/
 		public Portal() {
-			super(0, 0, 0, 0, 0, SIZE, SIZE, RADIUS);
-			try {
-				if (imgPortal == null) {
-					imgPortal = ImageIO.read(new File(IMG_PORTAL));
-				}
-			} catch (IOException e) {
-				System.out.println("IOException: " + e.getMessage());
-			}
+			super(getStaticStore(), 0, 0, 0, 0, 0, SIZE, SIZE, RADIUS);
 			this.moveToCenter();
 		}
 
 		@Override
 		public void draw(Graphics g) {
 			if (portalActivated) {
-				g.drawImage(imgPortal, this.getPx(), this.getPy(), SIZE, SIZE, null);
+				SpriteAtlas.get().draw(g, Sprite.PORTAL, this.getPx(), this.getPy());
 			}
 		}
+		
+		@Override
+		protected Sprite getSprite() {
+			return portalActivated ? Sprite.PORTAL : null;
+		}
 	}
 }
@@ -0,0 +1,238 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distances to the main character over a coarse grid of the positions an enemy can take in a room,
+ * going around the boulders, so that any number of enemies can find their way to it by looking
+ * up their own cell. One field serves every FollowingEnemy in a room.
+ *
+ * The grid is over the upper-left corners of an enemy, CELL_SIZE pixels per cell. A cell is
+ * blocked if an enemy anywhere in it would intersect a boulder, with the same circles as
+ * GameObj.intersects(). The distances are found with a breadth-first search from the cell of the
+ * target, moving to the 8 neighbouring cells but never diagonally past a blocked cell. This counts
+ * steps the way enemies move, by up to their velocity on both axes at once. The search is only
+ * run again when the target moves to another cell or a boulder is added.
+ */
+public class FlowField {
+
+    public static final int CELL_SIZE = 20;
+
+    /* Offsets of the 8 neighbouring cells, the ones sharing a side first */
+    private static final int[] NEIGHBOUR_DX = {0, -1, 1, 0, -1, 1, -1, 1};
+    private static final int[] NEIGHBOUR_DY = {-1, 0, 0, 1, -1, -1, 1, 1};
+
+    private static final int UNREACHABLE = -1;
+
+    private final int radius;
+    private final int cols;
+    private final int rows;
+
+    private final boolean[] blocked;
+    private final int[] distance;
+    private final int[] queue;
+
+    /* Cell the distances are to, -1 before the first search */
+    private int target = -1;
+
+    /* Number of boulders the blocked cells were found for */
+    private int boulderCount = -1;
+
+    private int searchCount;
+    private long searchNanos;
+
+    /**
+     * Constructor
+     *
+     * @param width width of the court
+     *        height height of the court
+     *        size width and height of the enemies that follow the field
+     *        radius radius of the enemies used for collisions
+     */
+    public FlowField(int width, int height, int size, int radius) {
+        this.radius = radius;
+        this.cols = (width - size) / CELL_SIZE + 1;
+        this.rows = (height - size) / CELL_SIZE + 1;
+        this.blocked = new boolean[cols * rows];
+        this.distance = new int[cols * rows];
+        this.queue = new int[cols * rows];
+    }
+
+    /**
+     * Makes the field lead to a target. Does nothing if the target is in the same cell as last
+     * time and no boulder was added since.
+     *
+     * @param x x coordinate of the upper-left corner an enemy should move to
+     *        y y coordinate of the upper-left corner an enemy should move to
+     *        boulders boulders in the room, which are only ever added to
+     */
+    public void update(int x, int y, List<Boulder> boulders) {
+        boolean bouldersChanged = boulders.size() != boulderCount;
+        int cell = cellAt(x, y);
+        if (cell == target && !bouldersChanged) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (bouldersChanged) {
+            findBlockedCells(boulders);
+        }
+        target = cell;
+        search();
+        searchCount++;
+        searchNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Marks every cell in which an enemy would intersect a boulder
+     */
+    private void findBlockedCells(List<Boulder> boulders) {
+        Arrays.fill(blocked, false);
+        for (Boulder b : boulders) {
+            // an enemy at (px, py) intersects the boulder when its center is within reach
+            int reach = radius + b.getRadius();
+            int cx = b.getPx() + b.getRadius() - radius;
+            int cy = b.getPy() + b.getRadius() - radius;
+            int minCol = Math.max(0, (cx - reach) / CELL_SIZE);
+            int maxCol = Math.min(cols - 1, (cx + reach) / CELL_SIZE);
+            int minRow = Math.max(0, (cy - reach) / CELL_SIZE);
+            int maxRow = Math.min(rows - 1, (cy + reach) / CELL_SIZE);
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int col = minCol; col <= maxCol; col++) {
+                    // distance from the center to the nearest position in the cell
+                    int dx = Math.max(0, Math.max(col * CELL_SIZE - cx,
+                                                  cx - (col * CELL_SIZE + CELL_SIZE - 1)));
+                    int dy = Math.max(0, Math.max(row * CELL_SIZE - cy,
+                                                  cy - (row * CELL_SIZE + CELL_SIZE - 1)));
+                    if (dx * dx + dy * dy <= reach * reach) {
+                        blocked[row * cols + col] = true;
+                    }
+                }
+            }
+        }
+        boulderCount = boulders.size();
+    }
+
+    /**
+     * Finds the number of steps from every cell to the target
+     */
+    private void search() {
+        Arrays.fill(distance, UNREACHABLE);
+        distance[target] = 0;
+        queue[0] = target;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int cell = queue[head++];
+            int col = cell % cols;
+            int row = cell / cols;
+            for (int k = 0; k < NEIGHBOUR_DX.length; k++) {
+                int next = neighbour(col, row, NEIGHBOUR_DX[k], NEIGHBOUR_DY[k]);
+                if (next >= 0 && distance[next] == UNREACHABLE) {
+                    distance[next] = distance[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The neighbouring cell that can be stepped to from a cell, -1 if it is outside the
+     *         grid, blocked, or diagonal past a blocked cell
+     */
+    private int neighbour(int col, int row, int dx, int dy) {
+        int c = col + dx;
+        int r = row + dy;
+        if (c < 0 || c >= cols || r < 0 || r >= rows || blocked[r * cols + c]) {
+            return -1;
+        }
+        if (dx != 0 && dy != 0 && (blocked[row * cols + c] || blocked[r * cols + col])) {
+            return -1;
+        }
+        return r * cols + c;
+    }
+
+    /**
+     * @return Cell of an upper-left corner, clamped to the grid
+     */
+    private int cellAt(int x, int y) {
+        int col = Math.max(0, Math.min(cols - 1, x / CELL_SIZE));
+        int row = Math.max(0, Math.min(rows - 1, y / CELL_SIZE));
+        return row * cols + col;
+    }
+
+    /**
+     * Finds where an enemy should move to next to reach the target. Moving straight at the target
+     * is kept whenever it is one of the shortest ways there, so enemies only turn off the direct
+     * line to go around boulders. Otherwise a cell sharing a side is preferred to a diagonal one,
+     * so that an enemy stepping towards it always gets closer and never goes back and forth across
+     * the corner of a cell.
+     *
+     * @param x x coordinate of the upper-left corner of the enemy
+     *        y y coordinate of the upper-left corner of the enemy
+     *        tx x coordinate of the upper-left corner the enemy moves to
+     *        ty y coordinate of the upper-left corner the enemy moves to
+     * @return Neighbouring cell the enemy should step to, or -1 if it should move
+     *         straight at the target: when it is in the cell of the target, moving straight is
+     *         shortest, or it is in a blocked cell from which the field does not lead anywhere
+     */
+    public int getNextCell(int x, int y, int tx, int ty) {
+        int cell = cellAt(x, y);
+        int d = distance[cell];
+        if (d <= 0) {
+            return -1;
+        }
+        int col = cell % cols;
+        int row = cell / cols;
+        int straight = neighbour(col, row, Integer.signum(cellAt(tx, y) % cols - col),
+                                 Integer.signum(cellAt(x, ty) / cols - row));
+        if (straight >= 0 && straight != cell && distance[straight] == d - 1) {
+            return -1;
+        }
+        for (int k = 0; k < NEIGHBOUR_DX.length; k++) {
+            int next = neighbour(col, row, NEIGHBOUR_DX[k], NEIGHBOUR_DY[k]);
+            if (next >= 0 && distance[next] == d - 1) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param x x coordinate of the upper-left corner of an enemy
+     *        cell cell returned by getNextCell() for the enemy
+     * @return -1, 0 or 1 as the enemy should step left, not sideways, or right to reach the cell
+     */
+    public int getStepX(int x, int cell) {
+        return Integer.signum(cell % cols - cellAt(x, 0) % cols);
+    }
+
+    /**
+     * @param y y coordinate of the upper-left corner of an enemy
+     *        cell cell returned by getNextCell() for the enemy
+     * @return -1, 0 or 1 as the enemy should step up, not vertically, or down to reach the cell
+     */
+    public int getStepY(int y, int cell) {
+        return Integer.signum(cell / cols - cellAt(0, y) / cols);
+    }
+
+    /**
+     * @return Number of steps from the cell of an upper-left corner to the target, -1 if the
+     *         target cannot be reached from it
+     */
+    public int getDistance(int x, int y) {
+        return distance[cellAt(x, y)];
+    }
+
+    /**
+     * @return Number of times the distances were found again
+     */
+    public int getSearchCount() {
+        return searchCount;
+    }
+
+    /**
+     * @return Total time spent finding the distances, in nanoseconds
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+}
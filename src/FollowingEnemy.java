@@ -1,6 +1,8 @@
 /**
- * Enemy that follows and tries to shoot at the main character, blob
+ * Enemy that follows and tries to shoot at the main character, blob, finding its way around
+ * boulders with the FlowField of its room and not shooting while a boulder is in the way
  */
+@SuppressWarnings("serial")
 public class FollowingEnemy extends RegularEnemy {
     
 	/* Interval in seconds at which FollowingEnemy fires projectiles */
@@ -25,38 +27,73 @@ public class FollowingEnemy extends RegularEnemy {
     
 	@Override
     public void advance(Blob blob) {
+		if (blob == null) {
+			// nothing to follow, wait for blob to enter the room
+			this.setVx(0);
+			this.setVy(0);
+			return;
+		}
 		int tgtX = blob.getPx();
 		int tgtY = blob.getPy();
-		this.aimAtPoint(tgtX, tgtY);
+		aimAlongFlowField(tgtX, tgtY, blob);
 		if (counterFire % firingFreq == 0) {
 			int srcX = this.getPx();
 			int srcY = this.getPy();
 			if (tgtX > srcX) {
-				fireRightOrLeft(Direction.RIGHT, srcX, srcY, tgtX, tgtY);
+				fireRightOrLeft(Direction.RIGHT, srcX, srcY, blob);
 			} else if (tgtX < srcX) {
-				fireRightOrLeft(Direction.LEFT, srcX, srcY, tgtX, tgtY);
+				fireRightOrLeft(Direction.LEFT, srcX, srcY, blob);
 			} else if (tgtY > srcY) {
-				this.fire(Direction.DOWN, null);
+				this.fireUnlessBlocked(Direction.DOWN, null, blob);
 			} else if (tgtY < srcY) {
-				this.fire(Direction.UP, null);
+				this.fireUnlessBlocked(Direction.UP, null, blob);
 			}
 		}
 		counterFire++;
 	}
 	
+	/**
+     * Heads for the main character along the flow field of the room, which goes around
+     * boulders, or straight at it if the enemy is not in a room
+     * 
+     * @param tgtX x coordinate of the main character
+     *        tgtY y coordinate of the main character
+     *        blob the main character of the game
+     */
+	private void aimAlongFlowField(int tgtX, int tgtY, Blob blob) {
+		Room room = this.getRoom();
+		if (room != null) {
+			FlowField field = room.getFlowField(blob);
+			int next = field.getNextCell(this.getPx(), this.getPy(), tgtX, tgtY);
+			// step towards the next cell rather than at one of its corners, which could be
+			// crossed back and forth
+			if (next >= 0) {
+				int px = this.getPx();
+				int py = this.getPy();
+				this.aimAtPoint(px + field.getStepX(px, next), py + field.getStepY(py, next));
+				return;
+			}
+		}
+		this.aimAtPoint(tgtX, tgtY);
+	}
+	
 	/**
      * Helper method
-     * @param roomHandler the instance of the RoomHandler that controls the environment of the game
-     *        d direction that the projectile should be fired in
+     * @param d direction that the projectile should be fired in
+     *        srcX x coordinate of the enemy
+     *        srcY y coordinate of the enemy
+     *        blob the main character of the game, which the projectile is fired at
      */
-	public void fireRightOrLeft(Direction d, int srcX, int srcY, int tgtX, int tgtY) {
+	public void fireRightOrLeft(Direction d, int srcX, int srcY, Blob blob) {
+		int tgtX = blob.getPx();
+		int tgtY = blob.getPy();
 		if (Math.abs(tgtY - srcY) < THRESHOLD) {
-			this.fire(d, null);
+			this.fireUnlessBlocked(d, null, blob);
 		} else if (Math.abs(Math.abs(tgtX - srcX) - Math.abs(tgtY - srcY)) < THRESHOLD) {
 			if (tgtY > srcY) {
-				this.fire(d, Direction.DOWN);
+				this.fireUnlessBlocked(d, Direction.DOWN, blob);
 			} else {
-				this.fire(d, Direction.UP);
+				this.fireUnlessBlocked(d, Direction.UP, blob);
 			}
 		}
 	}
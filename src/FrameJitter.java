@@ -0,0 +1,71 @@
+/**
+ * Measures how evenly frames reach the screen: the time between two frames that were drawn, and
+ * how far each of those intervals is from the interval the frames should be drawn at. Comparing
+ * the reports of the two ways GameCourt can draw (see GameCourt.ACTIVE_RENDERING) shows how much
+ * each of them delays or bunches up frames.
+ */
+public class FrameJitter {
+
+    private final long targetNanos;
+    private final LatencyHistogram intervals = new LatencyHistogram();
+    private final LatencyHistogram jitter = new LatencyHistogram();
+
+    /* Time the last frame was drawn, 0 if none has been */
+    private long last;
+
+    /**
+     * Constructor
+     *
+     * @param framesPerSecond number of frames per second that should be drawn
+     */
+    public FrameJitter(int framesPerSecond) {
+        this.targetNanos = 1000000000L / framesPerSecond;
+    }
+
+    /**
+     * Records that a frame was drawn
+     *
+     * @param now current value of System.nanoTime()
+     */
+    public void record(long now) {
+        if (last != 0) {
+            long interval = now - last;
+            intervals.record(interval);
+            jitter.record(Math.abs(interval - targetNanos));
+        }
+        last = now;
+    }
+
+    /**
+     * Forgets the last frame, so that a pause is not recorded as one long interval
+     */
+    public void restart() {
+        last = 0;
+    }
+
+    /**
+     * @return Histogram of the time between two frames, in nanoseconds
+     */
+    public LatencyHistogram getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * @return Histogram of how far the time between two frames was from the target, in nanoseconds
+     */
+    public LatencyHistogram getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return The p50, p99 and max frame interval and jitter in milliseconds
+     */
+    public String getReport() {
+        return String.format("frames=%d interval p50=%.2f p99=%.2f max=%.2f ms, "
+                             + "jitter p50=%.2f p99=%.2f max=%.2f ms",
+                             intervals.getCount(), intervals.getPercentile(50) / 1e6,
+                             intervals.getPercentile(99) / 1e6, intervals.getMax() / 1e6,
+                             jitter.getPercentile(50) / 1e6, jitter.getPercentile(99) / 1e6,
+                             jitter.getMax() / 1e6);
+    }
+}
@@ -6,37 +6,82 @@
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.LockSupport;
 import javax.swing.*;
-import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * GameCourt
  * 
- * This class holds the primary game logic for how different objects interact with one another. Take
- * time to understand how the timer interacts with the different methods and how it repaints the GUI
- * on every tick().
+ * This class draws the game and forwards key presses to the GameEngine, which holds the primary
+ * game logic for how different objects interact with one another. Take time to understand how the
+ * game loop interacts with the different methods: it calls tick() a fixed number of times per
+ * second of real time and draws a frame in between.
+ *
+ * Frames are drawn onto a Canvas with a page-flipping BufferStrategy by a render thread of their
+ * own (active rendering), so that a slow frame does not delay the simulation and the other way
+ * round. After each frame of the game loop, the simulation copies what is to be drawn into a
+ * WorldSnapshot and hands it to the render thread through a TripleBuffer; the render thread only
+ * ever reads snapshots, never the game objects. If active rendering is switched off with
+ * -Dblob.activeRendering=false or not available, frames are drawn from the game objects by
+ * paintComponent() after asking Swing to repaint only the part of the court where something moved.
  */
 @SuppressWarnings("serial")
 public class GameCourt extends JPanel {
     
     // the state of the game logic
-    private RoomHandler roomHandler;
-    private Blob blob; // the main character
+    private GameEngine engine;
+
+    // records the input of the current game so that it can be played back with ReplayPlayer
+    private final ReplayRecorder recorder = new ReplayRecorder();
 
-    private boolean moveKeyPressed = false;
-    private boolean stopKeyPresses;
-    private boolean playing = false; // whether the game is running 
     private JLabel status; // Current status text, i.e. "Running..."
     private JButton pauseButton; // Button used to pause game
-	    
-    private Direction blobDirection;
-	private boolean hasWon;
-    private boolean hasLost;
-	
-	// variables for end animation
-	private int counterRotate;
-	private int freqRotate;
+    private GameLoop loop; // Runs tick() on a fixed timestep and repaints
+    private boolean repaintPending = false; // whether the last tick still needs to be drawn
+    private boolean resetPending = false; // whether to reset as soon as the images are loaded
+
+    // Used only by the thread that draws: the render thread with active rendering, the event
+    // dispatch thread otherwise
+    private final PerformanceHud hud = new PerformanceHud(); // overlay toggled with F3
+    private boolean firstFrameDrawn = false; // whether startup time has been reported
+    private final FrameJitter jitter = new FrameJitter(RENDER_FPS); // evenness of drawn frames
+
+    // Requests from the event dispatch thread to the thread that draws
+    private volatile boolean hudVisible = false;
+    private volatile boolean reportRequested = false;
+
+    // Canvas drawn on by the render thread, null when frames are drawn by paintComponent()
+    private volatile Canvas canvas;
+    private volatile BufferStrategy strategy;
+    private volatile boolean exposed = false; // whether the canvas has to be drawn again
+
+    // Snapshots handed to the render thread, and the number of time steps run, the time they
+    // took and the bytes allocated by the game thread, which are passed on in the snapshots for
+    // the HUD
+    private final TripleBuffer<WorldSnapshot> snapshots =
+            new TripleBuffer<>(new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot());
+    private long snapshotSequence;
+    private long totalTicks;
+    private long totalTickNanos;
+    private long allocatedBytes = -1;
+
+    // Used only by the render thread: static layer and the last snapshot drawn
+    private final StaticLayer renderLayer = new StaticLayer();
+    private long drawnSequence;
+    private double drawnAlpha;
+    private long hudTicks;
+    private long hudTickNanos;
+
+    // Area covered by moving objects in the last frame and the room drawn in it, used to repaint
+    // only what changed when frames are drawn by paintComponent()
+    private Rectangle movingBounds = new Rectangle(0, 0, -1, -1);
+    private Rectangle lastMovingBounds = new Rectangle(0, 0, -1, -1);
+    private Room paintedRoom;
+    private int paintedStaticVersion;
 	
     // Game constants
     public static final int BORDER = 88;
@@ -47,98 +92,132 @@ public class GameCourt extends JPanel {
     public static final int BLOB_VELOCITY = 4;
 	public static final double INTERVAL_ROTATE = 0.3;
 
-    // Update interval for timer, in milliseconds
+    // Number of simulation time steps per second, and number of frames drawn per second
     public static final int FPS = 30;
-    private static final int INTERVAL = 1000 / FPS;
+    public static final int RENDER_FPS = 60;
+
+    // File that the replay of the last game is saved to when it ends or is reset
+    public static final String REPLAY_FILE = "last.replay";
+
+    // Whether rooms the main character is not in keep being advanced (-Dblob.backgroundRooms=true)
+    public static final boolean BACKGROUND_ROOMS = Boolean.getBoolean("blob.backgroundRooms");
+
+    // Whether how the game loop kept up and how long startup took are printed (-Dblob.report=true)
+    public static final boolean REPORT = Boolean.getBoolean("blob.report");
+
+    // Whether the game loop draws frames itself (-Dblob.activeRendering=false to repaint instead)
+    public static final boolean ACTIVE_RENDERING =
+            Boolean.parseBoolean(System.getProperty("blob.activeRendering", "true"));
 
     public GameCourt(JLabel status, JButton pauseButton) {
 
-        // The timer is an object which triggers an action periodically with the given INTERVAL. We
-        // register an ActionListener with this timer, whose actionPerformed() method is called each
-        // time the timer triggers. We define a helper method called tick() that actually does
-        // everything that should be done in a single timestep.
-        Timer timer = new Timer(INTERVAL, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
+        // decode all images on other threads while the window is being set up
+        AssetManager.get().preload();
+
+        // The game loop calls tick() exactly FPS times per second of real time, no matter how long
+        // drawing takes, and draws or hands a snapshot to the render thread RENDER_FPS times per
+        // second. Objects are drawn in between their last two positions so that movement looks
+        // smooth.
+        loop = new GameLoop(FPS, RENDER_FPS, new Runnable() {
+            public void run() {
                 tick();
             }
+        }, new Runnable() {
+            public void run() {
+                if (resetPending) {
+                    if (AssetManager.get().isReady()) {
+                        resetPending = false;
+                        reset();
+                    } else {
+                        present(); // show loading progress
+                    }
+                } else if ((engine != null && engine.isPlaying()) || repaintPending) {
+                    GameObj.setInterpolation(loop.getAlpha());
+                    repaintPending = false;
+                    present();
+                }
+            }
         });
-        timer.start(); // MAKE SURE TO START THE TIMER!
+        if (ACTIVE_RENDERING && !GraphicsEnvironment.isHeadless()) {
+            canvas = new Canvas() {
+                public void paint(Graphics g) {
+                    exposed = true; // drawn by the next frame of the render thread
+                }
+                public void update(Graphics g) {
+                    paint(g);
+                }
+                public void removeNotify() {
+                    strategy = null; // the buffers go away with the window
+                    super.removeNotify();
+                }
+            };
+            canvas.setFocusable(false); // keys go to the court
+            setLayout(new BorderLayout());
+            add(canvas);
+            loop.startPaced();
+            Thread renderThread = new Thread(new Runnable() {
+                public void run() {
+                    renderLoop();
+                }
+            }, "render");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        } else {
+            loop.start(); // MAKE SURE TO START THE LOOP!
+        }
 
         // Enable keyboard focus on the court area.
         // When this component has the keyboard focus, key events are handled by its key listener.
         setFocusable(true);
 
-        // This key listener allows the square to move as long as an arrow key is pressed, by
-        // changing the square's velocity accordingly. (The tick method below actually moves the
-        // square.)
+        // This key listener translates key presses into calls on the game engine. Arrow keys move
+        // the main character as long as they are pressed, WASD fire, P pauses, F2 switches
+        // profiling of the phases of each time step on and off and F3 shows the performance HUD.
         addKeyListener(new KeyAdapter() {
-                       
-            //set of move keys that are currently pressed
-            private final Set<Integer> pressedMove = new TreeSet<Integer>();
             public void keyPressed(KeyEvent e) {
-            	
-            	if (stopKeyPresses) {
-            		return;
-            	}
-            	
+                if (engine == null) {
+                    return;
+                }
                 int keyCode = e.getKeyCode();
                 if (keyCode == KeyEvent.VK_LEFT) { 
-                    blob.setVx(-BLOB_VELOCITY);
-                    blobDirection = Direction.LEFT;
-                    moveKeyPressed = true;
-                    pressedMove.add(keyCode);
+                    engine.pressMove(Direction.LEFT);
                 } else if (keyCode == KeyEvent.VK_RIGHT) {
-                    blob.setVx(BLOB_VELOCITY);
-                    blobDirection = Direction.RIGHT;
-                    moveKeyPressed = true;
-                    pressedMove.add(keyCode);
+                    engine.pressMove(Direction.RIGHT);
                 } else if (keyCode == KeyEvent.VK_UP) {
-                    blob.setVy(-BLOB_VELOCITY);
-                    moveKeyPressed = true;
-                    pressedMove.add(keyCode);
+                    engine.pressMove(Direction.UP);
                 } else if (keyCode == KeyEvent.VK_DOWN) {
-                    blob.setVy(BLOB_VELOCITY);
-                    moveKeyPressed = true;
-                    pressedMove.add(keyCode);
+                    engine.pressMove(Direction.DOWN);
                 } else if (keyCode == KeyEvent.VK_W) {
-                    blob.fire(roomHandler, Direction.UP);
+                    engine.fire(Direction.UP);
                 } else if (keyCode == KeyEvent.VK_A) {
-                    blob.fire(roomHandler, Direction.LEFT);
+                    engine.fire(Direction.LEFT);
                 } else if (keyCode == KeyEvent.VK_S) {
-                    blob.fire(roomHandler, Direction.DOWN);
+                    engine.fire(Direction.DOWN);
                 } else if (keyCode == KeyEvent.VK_D) {
-                    blob.fire(roomHandler, Direction.RIGHT);
+                    engine.fire(Direction.RIGHT);
                 }
             }
             public void keyReleased(KeyEvent e) {
+                if (engine == null) {
+                    return;
+                }
                 int keyCode = e.getKeyCode();              
-                if (keyCode == KeyEvent.VK_LEFT || keyCode == KeyEvent.VK_RIGHT) {
-                    pressedMove.remove(keyCode); 
-                    if (keyCode == KeyEvent.VK_RIGHT && pressedMove.contains(KeyEvent.VK_LEFT)) {
-                        blob.setVx(-BLOB_VELOCITY);
-                        blobDirection = Direction.LEFT;
-                    } else if (keyCode == KeyEvent.VK_LEFT && 
-                               pressedMove.contains(KeyEvent.VK_RIGHT)) {
-                        blob.setVx(BLOB_VELOCITY);
-                        blobDirection = Direction.RIGHT;
-                    } else {
-                        blob.setVx(0);
-                    }
-                } else if (keyCode == KeyEvent.VK_DOWN || keyCode == KeyEvent.VK_UP) {
-                    pressedMove.remove(keyCode); 
-                    if (keyCode == KeyEvent.VK_DOWN && pressedMove.contains(KeyEvent.VK_UP)) {
-                        blob.setVy(-BLOB_VELOCITY);
-                    } else if (keyCode == KeyEvent.VK_UP && 
-                               pressedMove.contains(KeyEvent.VK_DOWN)) {
-                        blob.setVy(BLOB_VELOCITY);
-                    } else {
-                        blob.setVy(0);
-                    }
+                if (keyCode == KeyEvent.VK_LEFT) {
+                    engine.releaseMove(Direction.LEFT);
+                } else if (keyCode == KeyEvent.VK_RIGHT) {
+                    engine.releaseMove(Direction.RIGHT);
+                } else if (keyCode == KeyEvent.VK_UP) {
+                    engine.releaseMove(Direction.UP);
+                } else if (keyCode == KeyEvent.VK_DOWN) {
+                    engine.releaseMove(Direction.DOWN);
                 } else if (keyCode == KeyEvent.VK_P) {
                     togglePause();
-                }
-                if (pressedMove.isEmpty()) {
-                    moveKeyPressed = false;
+                } else if (keyCode == KeyEvent.VK_F2) {
+                    TickProfiler.setEnabled(!TickProfiler.isEnabled());
+                } else if (keyCode == KeyEvent.VK_F3) {
+                    hudVisible = !hudVisible;
+                    repaintPending = true;
+                    paintedRoom = null; // repaint all of the court to add or remove the overlay
                 }
             }
             public void keyTyped(KeyEvent e) {}
@@ -148,66 +227,86 @@ public class GameCourt extends JPanel {
     }
 
     /**
-     * (Re-)set the game to its initial state.
+     * (Re-)set the game to its initial state. If the images are still being loaded, the game is
+     * reset once they are.
      */
     public void reset() {
-        
-        roomHandler = new RoomHandler();        
-        
-        // make blob and health bar and move blob to center of court
-        blob = new Blob(BLOB_VELOCITY);
-        blob.moveToCenter();
-		blobDirection = Direction.RIGHT;
-        
-		hasWon = false;
-		hasLost = false;
-		stopKeyPresses = false;
-        playing = true;
-        status.setText("Playing");
-
-		// variables for end animation
-		counterRotate = 0;
-		freqRotate = (int) (Math.round((double) FPS * INTERVAL_ROTATE));
-		
+        if (!AssetManager.get().isReady()) {
+            resetPending = true;
+            status.setText("Loading...");
+            return;
+        }
+        if (engine != null) {
+            saveReplay();
+        }
+        engine = new GameEngine();
+        engine.setBackgroundSimulation(BACKGROUND_ROOMS);
+        engine.setRecorder(recorder);
+        status.setText(engine.getStatus());
+        pauseButton.setText("Pause");
+
         // Make sure that this component has the keyboard focus
         requestFocusInWindow();
     }
 
     /**
-     * This method is called every time the timer defined in the constructor triggers.
+     * This method is called by the game loop once per time step.
      */
     void tick() {
-        if (playing) {
-            
-            // advance blob and enemies and projectiles in room
-            hasWon = roomHandler.advance(blob);
-			hasLost = blob.isDead();
-
-            // check for the game end conditions
-            if (hasLost) {
-                status.setText("GAME OVER. Press Reset button to try again.");
-                playing = false;
-            } else if (hasWon) {
-				if (!blob.isAtCenter()) {
-					blob.aimAtCenter();
-                } else {
-					status.setText("CONGRATULATIONS! You made it to the portal!");
-					blob.setVx(0);
-					blob.setVy(0);
-					if (counterRotate > (3 * FPS)) {
-						blob.toggleTransparency();
-						playing = false;
-					} else {
-						stopKeyPresses = true;
-						if ((counterRotate % freqRotate) == 0) {
-							blob.rotate();
-						}
-						counterRotate++;
-					}
-				}
-			}
-            // update the display
-            repaint();
+        if (engine == null || !engine.isPlaying()) {
+            return;
+        }
+        repaintPending = true;
+        long start = System.nanoTime();
+        engine.tick();
+        long tickNanos = System.nanoTime() - start;
+        if (canvas != null) {
+            totalTicks++;
+            totalTickNanos += tickNanos;
+            if (hudVisible) {
+                allocatedBytes = PerformanceHud.getCurrentThreadAllocatedBytes();
+            }
+        } else {
+            hud.recordTick(tickNanos);
+            if (hudVisible) {
+                hud.recordAllocatedBytes(PerformanceHud.getCurrentThreadAllocatedBytes());
+            }
+        }
+        if (!engine.getStatus().equals(status.getText())) {
+            status.setText(engine.getStatus());
+        }
+        if (engine.isOver()) {
+            printReport();
+            saveReplay();
+        }
+    }
+
+    /**
+     * Prints how the game loop kept up if REPORT is set and, if profiling is on, how long each
+     * phase took
+     */
+    private void printReport() {
+        if (REPORT) {
+            System.out.println("Game loop: " + loop.getReport());
+            if (canvas != null) {
+                reportRequested = true; // printed by the render thread
+            } else {
+                System.out.println("Repaint rendering: " + jitter.getReport());
+            }
+        }
+        if (TickProfiler.isEnabled()) {
+            System.out.print(TickProfiler.getReport());
+        }
+    }
+
+    /**
+     * Saves the input of the current game to REPLAY_FILE
+     */
+    private void saveReplay() {
+        try {
+            recorder.save(new File(REPLAY_FILE), engine.getTickCount());
+        } catch (IOException e) {
+            System.out.println("IOException: " + e.getMessage());
         }
     }
 
@@ -215,30 +314,256 @@ public class GameCourt extends JPanel {
      * Toggle the playing state of the game. Keeps pause button updated with state.
      */
     public void togglePause() {
-		if (!hasWon && !hasLost) {
-			if (playing) {
-				playing = false;
-				status.setText("Paused");
-				pauseButton.setText("Unpause");
-			} else {
-				playing = true;
-				status.setText("Playing");
+		if (engine != null && !engine.hasWon() && !engine.hasLost()) {
+			engine.togglePause();
+			status.setText(engine.getStatus());
+			if (engine.isPlaying()) {
 				pauseButton.setText("Pause");
+			} else {
+				pauseButton.setText("Unpause");
+				printReport();
 			}
 			requestFocusInWindow();
 		}
     }
 
+    /**
+     * Draws the current frame: by handing a snapshot to the render thread with active rendering,
+     * otherwise by asking Swing to repaint
+     */
+    private void present() {
+        if (canvas != null) {
+            publishSnapshot();
+        } else {
+            repaintChanged();
+        }
+    }
+
+    /**
+     * Copies the current state of the game into a snapshot and hands it to the render thread
+     */
+    private void publishSnapshot() {
+        if (engine == null) {
+            return; // the render thread shows the loading progress until the first snapshot
+        }
+        WorldSnapshot snapshot = snapshots.getBack();
+        snapshot.clear(++snapshotSequence, loop.getStateNanos());
+        engine.addTo(snapshot);
+        Room room = engine.getRoomHandler().getRoom();
+        snapshot.setStats(room.getProjectileCount(), room.getEnemyCount(), totalTicks,
+                          totalTickNanos, allocatedBytes);
+        snapshots.publish();
+    }
+
+    /**
+     * Asks Swing to repaint the area covered by moving objects in the last frame and in this one,
+     * or all of the court if the room, anything that does not move or the overlay has changed
+     */
+    private void repaintChanged() {
+        if (engine == null) {
+            repaint();
+            return;
+        }
+        Rectangle last = lastMovingBounds;
+        lastMovingBounds = movingBounds;
+        movingBounds = last;
+        Rectangle current = lastMovingBounds;
+        current.setBounds(0, 0, -1, -1);
+        engine.addMovingBounds(current);
+
+        Room room = engine.getRoomHandler().getRoom();
+        int staticVersion = room.getStaticVersion();
+        if (room != paintedRoom || staticVersion != paintedStaticVersion || hudVisible
+                || last.width < 0) {
+            repaint();
+        } else {
+            last.add(current);
+            repaint(last);
+        }
+        paintedRoom = room;
+        paintedStaticVersion = staticVersion;
+    }
+
+    /**
+     * Runs on the render thread: draws the newest snapshot RENDER_FPS times per second, waiting
+     * for each frame with System.nanoTime(), until active rendering is given up
+     */
+    private void renderLoop() {
+        long frameNanos = 1000000000L / RENDER_FPS;
+        long next = System.nanoTime();
+        while (canvas != null) {
+            next += frameNanos;
+            long wait;
+            while ((wait = next - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (System.nanoTime() - next > frameNanos) {
+                next = System.nanoTime(); // a frame took too long, do not rush the next ones
+            }
+            if (!renderActive()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Draws the newest snapshot into the back buffer of the canvas and shows it, unless nothing
+     * has changed since the last frame
+     *
+     * @return false if the canvas cannot be drawn on, in which case drawing is handed back to
+     *         paintComponent()
+     */
+    private boolean renderActive() {
+        Canvas c = canvas;
+        if (c == null || !c.isDisplayable()) {
+            return true; // the court is not on screen, e.g. while the instructions are shown
+        }
+        if (hud.isVisible() != hudVisible) {
+            hud.toggleVisible();
+        }
+        WorldSnapshot snapshot = snapshots.acquire();
+        double alpha = snapshot.getAlpha(System.nanoTime(), 1000000000L / FPS);
+        boolean changed = snapshot.getSequence() != drawnSequence || alpha != drawnAlpha;
+        if (snapshot.getSequence() != 0 && !changed && !exposed && !hud.isVisible()) {
+            jitter.restart(); // the game is paused, nothing to draw
+            return true;
+        }
+        BufferStrategy bs = strategy;
+        if (bs == null) {
+            try {
+                c.createBufferStrategy(2);
+                bs = c.getBufferStrategy();
+                strategy = bs;
+            } catch (RuntimeException e) {
+                System.out.println("Active rendering not available: " + e.getMessage());
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        remove(canvas);
+                        canvas = null;
+                        revalidate();
+                        repaint();
+                    }
+                });
+                return false;
+            }
+        }
+        exposed = false;
+        try {
+            do {
+                do {
+                    Graphics g = bs.getDrawGraphics();
+                    try {
+                        drawSnapshot(g, snapshot, alpha);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (bs.contentsRestored());
+                bs.show();
+            } while (bs.contentsLost());
+        } catch (IllegalStateException e) {
+            return true; // the canvas was taken off the screen while drawing
+        }
+        Toolkit.getDefaultToolkit().sync();
+        drawnSequence = snapshot.getSequence();
+        drawnAlpha = alpha;
+        if (reportRequested) {
+            reportRequested = false;
+            System.out.println("Active rendering: " + jitter.getReport());
+        }
+        return true;
+    }
+
+    /**
+     * Draws a snapshot, or the loading progress if the game has not started yet
+     */
+    private void drawSnapshot(Graphics g, WorldSnapshot snapshot, double alpha) {
+        if (snapshot.getSequence() == 0) {
+            drawLoading(g);
+            return;
+        }
+        long start = System.nanoTime();
+        long phase = TickProfiler.start();
+        snapshot.draw(g, alpha, renderLayer);
+        TickProfiler.record(TickProfiler.PAINT, phase);
+        hud.recordPaint(System.nanoTime() - start);
+        hud.recordTicks(snapshot.getTotalTicks() - hudTicks,
+                        snapshot.getTotalTickNanos() - hudTickNanos);
+        hudTicks = snapshot.getTotalTicks();
+        hudTickNanos = snapshot.getTotalTickNanos();
+        hud.recordAllocatedBytes(snapshot.getAllocatedBytes());
+        jitter.record(System.nanoTime());
+        reportFirstFrame();
+        if (hud.isVisible()) {
+            hud.draw(g, snapshot.getProjectileCount(), snapshot.getEnemyCount());
+        }
+    }
+
+    /**
+     * Prints how long it took from starting the JVM to drawing the first frame of the game, if
+     * REPORT is set
+     */
+    private void reportFirstFrame() {
+        if (REPORT && !firstFrameDrawn) {
+            firstFrameDrawn = true;
+            System.out.printf("Startup to first frame: %d ms (loading images: %d ms)%n",
+                              ManagementFactory.getRuntimeMXBean().getUptime(),
+                              AssetManager.get().getLoadNanos() / 1000000);
+        }
+    }
+
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
-               
-        // draws room, then translates graphics context to upper left corner of game court
-        // to draw enemies and boulders
-        roomHandler.draw(g);
-        
-        // draw blob and healthbar
-        blob.draw(g, moveKeyPressed, blobDirection, COURT_WIDTH, BORDER);
+        if (canvas == null) {
+            drawFrame(g);
+        }
+    }
+
+    /**
+     * Draws the game, or the loading progress if it has not started yet
+     */
+    private void drawFrame(Graphics g) {
+        if (engine == null) {
+            drawLoading(g);
+            return;
+        }
+        long start = System.nanoTime();
+        long phase = TickProfiler.start();
+        engine.draw(g);
+        TickProfiler.record(TickProfiler.PAINT, phase);
+        hud.recordPaint(System.nanoTime() - start);
+        if (engine.isPlaying()) {
+            jitter.record(System.nanoTime());
+        } else {
+            jitter.restart();
+        }
+        reportFirstFrame();
+        if (hud.isVisible() != hudVisible) {
+            hud.toggleVisible();
+        }
+        if (hud.isVisible()) {
+            // drawing the game leaves the context translated, so draw the overlay on a fresh one
+            Graphics hudGraphics = g.create();
+            hud.draw(hudGraphics, engine.getRoomHandler().getRoom());
+            hudGraphics.dispose();
+        }
+    }
+
+    /**
+     * Draws a progress bar while the images are being loaded
+     */
+    private void drawLoading(Graphics g) {
+        AssetManager assets = AssetManager.get();
+        int total = Math.max(1, assets.getTotalCount());
+        int barWidth = ROOM_WIDTH / 2;
+        int x = (ROOM_WIDTH - barWidth) / 2;
+        int y = ROOM_HEIGHT / 2;
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, ROOM_WIDTH, ROOM_HEIGHT);
+        g.setColor(Color.WHITE);
+        g.drawString("Loading " + assets.getLoadedCount() + " / " + total, x, y - 10);
+        g.drawRect(x, y, barWidth, 20);
+        g.fillRect(x, y, barWidth * assets.getLoadedCount() / total, 20);
     }
 
     @Override
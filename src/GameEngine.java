@@ -0,0 +1,370 @@
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * GameEngine
+ *
+ * Holds the rules of the game without any dependency on a display. The engine owns the rooms and
+ * the main character, receives input through method calls and is advanced one time step at a time
+ * by calling tick(), which can be done as fast as the CPU allows. GameCourt draws the engine's
+ * state and forwards key presses to it.
+ *
+ * All randomness in a game comes from a single seed, so a game can be reproduced exactly by
+ * resetting with the same seed and giving the same input on the same ticks (see ReplayRecorder).
+ */
+public class GameEngine {
+
+    public static final String STATUS_PLAYING = "Playing";
+    public static final String STATUS_PAUSED = "Paused";
+    public static final String STATUS_LOST = "GAME OVER. Press Reset button to try again.";
+    public static final String STATUS_WON = "CONGRATULATIONS! You made it to the portal!";
+
+    // the state of the game logic
+    private RoomHandler roomHandler;
+    private Blob blob; // the main character
+
+    private boolean moveKeyPressed;
+    private boolean stopKeyPresses;
+    private boolean playing; // whether the game is running
+    private String status; // Current status text, i.e. "Playing"
+
+    // set of move directions that are currently pressed
+    private final Set<Direction> pressedMove = EnumSet.noneOf(Direction.class);
+
+    private Direction blobDirection;
+    private boolean hasWon;
+    private boolean hasLost;
+
+    // variables for end animation
+    private int counterRotate;
+    private int freqRotate;
+
+    // number of times tick() has been called since the last reset
+    private long tickCount;
+
+    // seed that all randomness of the current game is derived from
+    private long seed;
+
+    // records all input given to the engine if not null
+    private ReplayRecorder recorder;
+
+    // whether rooms the main character is not in keep being advanced (see RoomHandler)
+    private boolean backgroundSimulation = false;
+
+    /**
+     * Constructor
+     */
+    public GameEngine() {
+        reset();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param seed seed that all randomness of the game is derived from
+     */
+    public GameEngine(long seed) {
+        reset(seed);
+    }
+
+    /**
+     * (Re-)set the game to its initial state with a new random seed.
+     */
+    public void reset() {
+        reset(System.nanoTime());
+    }
+
+    /**
+     * (Re-)set the game to its initial state.
+     *
+     * @param seed seed that all randomness of the game is derived from
+     */
+    public void reset(long seed) {
+
+        this.seed = seed;
+        roomHandler = new RoomHandler(new Random(seed));
+        roomHandler.setBackgroundSimulation(backgroundSimulation);
+
+        // make blob and health bar and move blob to center of court
+        blob = new Blob(GameCourt.BLOB_VELOCITY);
+        blob.moveToCenter();
+        blobDirection = Direction.RIGHT;
+        pressedMove.clear();
+        moveKeyPressed = false;
+
+        hasWon = false;
+        hasLost = false;
+        stopKeyPresses = false;
+        playing = true;
+        status = STATUS_PLAYING;
+
+        // variables for end animation
+        counterRotate = 0;
+        freqRotate = (int) (Math.round((double) GameCourt.FPS * GameCourt.INTERVAL_ROTATE));
+
+        tickCount = 0;
+        if (recorder != null) {
+            recorder.start(seed, backgroundSimulation);
+        }
+    }
+
+    /**
+     * Turns advancing the rooms that the main character is not in on or off. The setting is kept
+     * when the game is reset. To be recorded correctly it must be set before the recorder.
+     *
+     * @param on whether the other rooms should be advanced in the background
+     */
+    public void setBackgroundSimulation(boolean on) {
+        this.backgroundSimulation = on;
+        roomHandler.setBackgroundSimulation(on);
+    }
+
+    public boolean isBackgroundSimulation() {
+        return backgroundSimulation;
+    }
+
+    /**
+     * Records all input given to the engine from now on. The recording is restarted whenever the
+     * game is reset.
+     *
+     * @param recorder recorder to give input to, null to stop recording
+     */
+    public void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+        if (recorder != null) {
+            recorder.start(seed, backgroundSimulation);
+        }
+    }
+
+    /**
+     * Gives an input event to the recorder, if there is one
+     */
+    private void record(int type, Direction d) {
+        if (recorder != null) {
+            recorder.record(tickCount, type, d);
+        }
+    }
+
+    /**
+     * Advances the game by one time step. Does nothing while the game is paused or over.
+     */
+    public void tick() {
+        tickCount++;
+        if (!playing) {
+            return;
+        }
+
+        // advance blob and enemies and projectiles in room
+        hasWon = roomHandler.advance(blob);
+        hasLost = blob.isDead();
+        blob.advanceAnimation(moveKeyPressed);
+
+        // check for the game end conditions
+        if (hasLost) {
+            status = STATUS_LOST;
+            playing = false;
+        } else if (hasWon) {
+            if (!blob.isAtCenter()) {
+                blob.aimAtCenter();
+            } else {
+                status = STATUS_WON;
+                blob.setVx(0);
+                blob.setVy(0);
+                if (counterRotate > (3 * GameCourt.FPS)) {
+                    blob.toggleTransparency();
+                    playing = false;
+                } else {
+                    stopKeyPresses = true;
+                    if ((counterRotate % freqRotate) == 0) {
+                        blob.rotate();
+                    }
+                    counterRotate++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the room and everything in it, then the main character and its health bar
+     *
+     * @param g The <code>Graphics</code> context used for drawing the game
+     */
+    public void draw(Graphics g) {
+        // draws room, then translates graphics context to upper left corner of game court
+        // to draw enemies and boulders
+        roomHandler.draw(g);
+
+        // draw blob and healthbar
+        blob.draw(g, moveKeyPressed, blobDirection, GameCourt.COURT_WIDTH, GameCourt.BORDER);
+    }
+
+    /**
+     * Fills a snapshot with the room and everything in it, then the main character and its health
+     * bar, for drawing on another thread
+     *
+     * @param snapshot snapshot being filled
+     */
+    public void addTo(WorldSnapshot snapshot) {
+        roomHandler.getRoom().addTo(snapshot);
+        blob.addTo(snapshot, moveKeyPressed, blobDirection, GameCourt.COURT_WIDTH,
+                   GameCourt.BORDER);
+    }
+
+    /**
+     * Grows a rectangle to cover everything that can move or change in the current room until the
+     * next time step: enemies, projectiles, the main character and its health bar. Everything else
+     * only changes along with the static version of the room.
+     *
+     * @param bounds rectangle to grow, see GameObj.addMovingBounds()
+     */
+    public void addMovingBounds(Rectangle bounds) {
+        roomHandler.getRoom().addMovingBounds(bounds);
+        blob.addMovingBoundsWithHealthBar(bounds, GameCourt.COURT_WIDTH, GameCourt.BORDER);
+    }
+
+    /*** INPUT ************************************************************************************/
+
+    /**
+     * Starts moving the main character in the given direction, as if an arrow key was pressed
+     *
+     * @param d direction of the arrow key
+     */
+    public void pressMove(Direction d) {
+        record(ReplayRecorder.PRESS_MOVE, d);
+        if (stopKeyPresses) {
+            return;
+        }
+        switch (d) {
+        case LEFT:
+            blob.setVx(-GameCourt.BLOB_VELOCITY);
+            blobDirection = Direction.LEFT;
+            break;
+        case RIGHT:
+            blob.setVx(GameCourt.BLOB_VELOCITY);
+            blobDirection = Direction.RIGHT;
+            break;
+        case UP:
+            blob.setVy(-GameCourt.BLOB_VELOCITY);
+            break;
+        case DOWN:
+            blob.setVy(GameCourt.BLOB_VELOCITY);
+            break;
+        }
+        moveKeyPressed = true;
+        pressedMove.add(d);
+    }
+
+    /**
+     * Stops moving the main character in the given direction, as if an arrow key was released.
+     * If the opposite arrow key is still held down, the main character turns around.
+     *
+     * @param d direction of the arrow key
+     */
+    public void releaseMove(Direction d) {
+        record(ReplayRecorder.RELEASE_MOVE, d);
+        pressedMove.remove(d);
+        switch (d) {
+        case LEFT:
+        case RIGHT:
+            if (d == Direction.RIGHT && pressedMove.contains(Direction.LEFT)) {
+                blob.setVx(-GameCourt.BLOB_VELOCITY);
+                blobDirection = Direction.LEFT;
+            } else if (d == Direction.LEFT && pressedMove.contains(Direction.RIGHT)) {
+                blob.setVx(GameCourt.BLOB_VELOCITY);
+                blobDirection = Direction.RIGHT;
+            } else {
+                blob.setVx(0);
+            }
+            break;
+        case UP:
+        case DOWN:
+            if (d == Direction.DOWN && pressedMove.contains(Direction.UP)) {
+                blob.setVy(-GameCourt.BLOB_VELOCITY);
+            } else if (d == Direction.UP && pressedMove.contains(Direction.DOWN)) {
+                blob.setVy(GameCourt.BLOB_VELOCITY);
+            } else {
+                blob.setVy(0);
+            }
+            break;
+        }
+        if (pressedMove.isEmpty()) {
+            moveKeyPressed = false;
+        }
+    }
+
+    /**
+     * Fires a projectile from the main character
+     *
+     * @param d direction that the projectile should be fired in
+     */
+    public void fire(Direction d) {
+        record(ReplayRecorder.FIRE, d);
+        if (stopKeyPresses) {
+            return;
+        }
+        blob.fire(roomHandler, d);
+    }
+
+    /**
+     * Toggle the playing state of the game. Does nothing once the game has been won or lost.
+     */
+    public void togglePause() {
+        record(ReplayRecorder.TOGGLE_PAUSE, null);
+        if (!hasWon && !hasLost) {
+            playing = !playing;
+            status = playing ? STATUS_PLAYING : STATUS_PAUSED;
+        }
+    }
+
+    /*** GETTERS **********************************************************************************/
+
+    public RoomHandler getRoomHandler() {
+        return roomHandler;
+    }
+
+    public Blob getBlob() {
+        return blob;
+    }
+
+    public boolean isMoveKeyPressed() {
+        return moveKeyPressed;
+    }
+
+    public Direction getBlobDirection() {
+        return blobDirection;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public boolean hasWon() {
+        return hasWon;
+    }
+
+    public boolean hasLost() {
+        return hasLost;
+    }
+
+    /**
+     * @return Whether the game has been won or lost and the end animation is over
+     */
+    public boolean isOver() {
+        return !playing && (hasWon || hasLost);
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
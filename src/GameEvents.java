@@ -0,0 +1,146 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events describing what happens in the game, so that recordings show game
+ * activity next to the JVM and Swing events.
+ *
+ * All events are disabled by default and cost nothing unless a recording enables them. blob.jfc
+ * enables all of them; record together with the default JVM events with:
+ *   java -XX:StartFlightRecording:settings=default,settings=blob.jfc,filename=game.jfr Game
+ *
+ * Events are only created while Flight Recorder runs, filled in only if shouldCommit() returns
+ * true, and committed:
+ *   if (GameEvents.isRecorderRunning()) {
+ *       GameEvents.EnemyDeath event = new GameEvents.EnemyDeath();
+ *       if (event.shouldCommit()) {
+ *           ...
+ *           event.commit();
+ *       }
+ *   }
+ */
+public final class GameEvents {
+
+    private static final String CATEGORY = "Escape of Blob";
+
+    private GameEvents() {
+    }
+
+    /**
+     * Checked before creating an event, so that no event objects are created unless Flight
+     * Recorder has been started
+     *
+     * @return Whether Flight Recorder is running in this JVM
+     */
+    public static boolean isRecorderRunning() {
+        return FlightRecorder.isInitialized();
+    }
+
+    @Name("blob.Tick")
+    @Label("Tick")
+    @Description("One time step of the room the main character is in")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Tick extends Event {
+        @Label("Tick Number")
+        public long tick;
+
+        @Label("Projectiles")
+        public int projectiles;
+
+        @Label("Enemies")
+        public int enemies;
+
+        @Label("Boulders")
+        public int boulders;
+
+        @Label("Projectiles Blocked")
+        @Description("Enemy projectiles stopped by a boulder")
+        public int projectilesBlocked;
+
+        @Label("Shots Skipped")
+        @Description("Shots enemies did not fire because a boulder was in the way")
+        public int shotsSkipped;
+    }
+
+    @Name("blob.RoomTransition")
+    @Label("Room Transition")
+    @Description("The main character moved through a door into another room")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class RoomTransition extends Event {
+        @Label("Door")
+        public String door;
+
+        @Label("From Row")
+        public int fromRow;
+
+        @Label("From Column")
+        public int fromColumn;
+
+        @Label("To Row")
+        public int toRow;
+
+        @Label("To Column")
+        public int toColumn;
+    }
+
+    @Name("blob.ProjectileSpawn")
+    @Label("Projectile Spawn")
+    @Description("A projectile was fired")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ProjectileSpawn extends Event {
+        /* Names of the owner types of ProjectileStore */
+        static final String[] SOURCES = {"Blob", "Enemy", "Boss"};
+
+        @Label("Source")
+        public String source;
+
+        @Label("Projectiles In Room")
+        public int projectiles;
+    }
+
+    @Name("blob.BossAttackSwitch")
+    @Label("Boss Attack Switch")
+    @Description("The boss moved to a new position to attack from")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class BossAttackSwitch extends Event {
+        @Label("Attack Mode")
+        public String attackMode;
+
+        @Label("Ticks Until Next Switch")
+        public int attackInterval;
+    }
+
+    @Name("blob.EnemyDeath")
+    @Label("Enemy Death")
+    @Description("An enemy was killed by a projectile of the main character")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static class EnemyDeath extends Event {
+        @Label("Enemy Type")
+        public String enemyType;
+
+        @Label("X")
+        public int x;
+
+        @Label("Y")
+        public int y;
+
+        @Label("Enemies Left")
+        public int enemiesLeft;
+    }
+}
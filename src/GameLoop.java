@@ -0,0 +1,223 @@
+import java.awt.EventQueue;
+import java.awt.event.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.Timer;
+
+/**
+ * GameLoop
+ *
+ * Runs the simulation on a fixed timestep that is independent of how often the screen is drawn.
+ * A Swing timer is only used as a pulse to render frames. On every frame the loop measures the
+ * real time that has passed with System.nanoTime(), adds it to an accumulator, and runs as many
+ * simulation steps of exactly 1 / stepsPerSecond seconds as fit in the accumulator. What is left
+ * over is used as the interpolation factor for drawing objects between their last two positions.
+ *
+ * If the game falls too far behind (e.g. a long GC pause), at most MAX_STEPS_PER_FRAME steps are
+ * run in one frame and the rest of the accumulated time is thrown away so the game does not
+ * spiral. These catch-up steps and dropped steps are counted so that overload can be detected.
+ *
+ * Instead of the Swing timer, which may fire late and merges events it could not deliver in time,
+ * startPaced() runs a thread of its own that waits until each frame is due with System.nanoTime()
+ * and then runs the frame on the event dispatch thread, waiting for it to finish.
+ */
+public class GameLoop {
+
+    /* Maximum number of simulation steps that can be run while drawing a single frame */
+    public static final int MAX_STEPS_PER_FRAME = 5;
+
+    private final long stepNanos;
+    private final long frameNanos;
+    private final Timer timer;
+    private Thread pacer;
+    private final Runnable step;
+    private final Runnable render;
+
+    /* Time bookkeeping, in nanoseconds */
+    private long lastTime;
+    private long accumulator;
+    private volatile boolean running = false;
+
+    /* Fraction of a step that has passed since the last simulation step, from 0 to 1 */
+    private double alpha = 1.0;
+
+    /* System.nanoTime() at which the state after the last simulation step was due */
+    private long stateNanos;
+
+    /* Statistics */
+    private long totalSteps;
+    private long totalFrames;
+    private long catchUpSteps;
+    private long droppedSteps;
+
+    /**
+     * Constructor
+     *
+     * @param stepsPerSecond number of simulation steps per second of real time
+     *        framesPerSecond number of times per second a frame should be rendered
+     *        step advances the simulation by one step
+     *        render draws a frame (uses getAlpha() for interpolation)
+     */
+    public GameLoop(int stepsPerSecond, int framesPerSecond, Runnable step, Runnable render) {
+        this.stepNanos = 1000000000L / stepsPerSecond;
+        this.frameNanos = 1000000000L / framesPerSecond;
+        this.step = step;
+        this.render = render;
+        this.timer = new Timer(1000 / framesPerSecond, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                frame(System.nanoTime());
+            }
+        });
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * Starts the loop. Time that passed while the loop was stopped is not simulated.
+     */
+    public void start() {
+        lastTime = System.nanoTime();
+        accumulator = 0;
+        running = true;
+        timer.start();
+    }
+
+    /**
+     * Starts the loop on a thread that renders frames at exact intervals instead of using the
+     * Swing timer. Time that passed while the loop was stopped is not simulated.
+     */
+    public void startPaced() {
+        lastTime = System.nanoTime();
+        accumulator = 0;
+        running = true;
+        final Runnable frame = new Runnable() {
+            public void run() {
+                if (running) {
+                    frame(System.nanoTime());
+                }
+            }
+        };
+        pacer = new Thread(new Runnable() {
+            public void run() {
+                long next = System.nanoTime();
+                while (running) {
+                    next += frameNanos;
+                    long wait;
+                    while ((wait = next - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    if (System.nanoTime() - next > frameNanos) {
+                        // a frame took too long, start again from now instead of rushing frames
+                        next = System.nanoTime();
+                    }
+                    try {
+                        EventQueue.invokeAndWait(frame);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (InvocationTargetException e) {
+                        // report it like an exception thrown from a timer event and keep going
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread,
+                                                                               e.getCause());
+                    }
+                }
+            }
+        }, "game-loop");
+        pacer.setDaemon(true);
+        pacer.start();
+    }
+
+    public void stop() {
+        running = false;
+        timer.stop();
+        if (pacer != null) {
+            pacer.interrupt();
+            pacer = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Runs the simulation steps that are due at the given time and renders one frame
+     *
+     * @param now current value of System.nanoTime()
+     */
+    void frame(long now) {
+        long elapsed = now - lastTime;
+        lastTime = now;
+        if (elapsed < 0) {
+            elapsed = 0;
+        }
+        accumulator += elapsed;
+
+        int steps = 0;
+        while (accumulator >= stepNanos && steps < MAX_STEPS_PER_FRAME) {
+            step.run();
+            accumulator -= stepNanos;
+            steps++;
+        }
+        if (steps > 1) {
+            catchUpSteps += steps - 1;
+        }
+        if (accumulator >= stepNanos) {
+            // too far behind to catch up, throw away the time that could not be simulated
+            droppedSteps += accumulator / stepNanos;
+            accumulator %= stepNanos;
+        }
+        totalSteps += steps;
+        totalFrames++;
+
+        alpha = (double) accumulator / stepNanos;
+        stateNanos = now - accumulator;
+        render.run();
+    }
+
+    /*** GETTERS **********************************************************************************/
+
+    /**
+     * @return Fraction of a step between the previous and current simulation state to draw at
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * @return System.nanoTime() at which the state after the last simulation step was due; a
+     *         frame drawn at a later time t is drawn at alpha (t - getStateNanos()) / step length
+     */
+    public long getStateNanos() {
+        return stateNanos;
+    }
+
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * @return Number of steps that were run in addition to the first step of a frame
+     */
+    public long getCatchUpSteps() {
+        return catchUpSteps;
+    }
+
+    /**
+     * @return Number of simulation steps that were skipped because the loop fell too far behind
+     */
+    public long getDroppedSteps() {
+        return droppedSteps;
+    }
+
+    /**
+     * @return Summary of the loop statistics
+     */
+    public String getReport() {
+        return "steps=" + totalSteps + " frames=" + totalFrames + " catchUpSteps=" + catchUpSteps +
+               " droppedSteps=" + droppedSteps;
+    }
+}
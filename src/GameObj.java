@@ -5,25 +5,40 @@
  */
 
 import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.io.Serializable;
 
 /** 
  * An object in the game. 
  *
  * Game objects exist in the game court. They have a position, velocity, size and bounds. Their
- * velocity controls how they move; their position should always be within their bounds.
+ * velocity controls how they move; their position should always be within their bounds. They are
+ * serializable so that the rooms holding them can be saved when they are evicted (see WorldMap).
+ *
+ * The position, velocity and other state that changes every time step are kept in an EntityStore,
+ * which the game object is a facade for, so that objects sharing a store can be updated together.
  */
-public abstract class GameObj {
+@SuppressWarnings("serial")
+public abstract class GameObj implements Serializable {
 	
     /*
-     * Current position of the object (in terms of graphics coordinates)
-     *  
-     * Coordinates are given by the upper-left hand corner of the object. This position should
-     * always be within bounds.
+     * Store holding the state of the object that changes every time step, and the index of the
+     * object's entry in it (see EntityStore). The object starts out in a store of its own.
+     *
+     * Its position is given by the upper-left hand corner of the object, in terms of graphics
+     * coordinates. This position should always be within bounds.
      *  0 <= px <= maxX 
      *  0 <= py <= maxY 
+     * The bounds take the radius used for collisions into account.
+     */
+    private EntityStore store;
+    private int index;
+
+    /* 
+     * Fraction of a time step between the previous and current positions at which all objects
+     * are drawn. Set by the game loop before each frame, 1 draws the current position.
      */
-    private int px; 
-    private int py;
+    private static double interpolation = 1.0;
 
     /* Size of object, in pixels. */
     private int width;
@@ -32,22 +47,6 @@ public abstract class GameObj {
     /* default velocity that object moves */
     private int velocity;
     
-    /* Velocity: number of pixels to move every time move() is called. */
-    private int vx;
-    private int vy;
-        
-    /* 
-     * Radius of object in pixels used to calculate collisions
-     */
-    private int radius;
-	
-    /* 
-     * Upper bounds of the area in which the object can be positioned. Maximum permissible x, y
-     * positions for the upper-left hand corner of the object.
-     */
-    private int maxX;
-    private int maxY;
-    
     /* 
      * x and y positions for the upper-left hand corner of the object at which object is in middle of court.
      */
@@ -58,42 +57,103 @@ public abstract class GameObj {
      * Constructor
      */
     public GameObj(int velocity, int vx, int vy, int px, int py, int width, int height, int radius) {
+        this(null, velocity, vx, vy, px, py, width, height, radius);
+    }
+    
+    /**
+     * Constructor for an object whose state is kept from the start in a store shared with other
+     * objects, such as the store of a room for the objects that never move, instead of in a store
+     * of its own
+     * 
+     * @param shared store to add the object to, null for a store of its own
+     */
+    protected GameObj(EntityStore shared, int velocity, int vx, int vy, int px, int py, int width,
+                      int height, int radius) {
         
     	this.velocity = velocity;
-        this.vx = vx;
-        this.vy = vy;
-        this.px = px;
-        this.py = py;
         this.width  = width;
         this.height = height;
-        this.radius = radius;
+        this.store = (shared != null) ? shared : new EntityStore(1);
+        this.index = store.add(this);
+        store.setVx(index, vx);
+        store.setVy(index, vy);
+        store.setPosition(index, px, py);
+        store.snapPrevious(index);
 
         // take the width and height into account when setting the bounds for the upper left corner
         // of the object.
-        this.maxX = GameCourt.COURT_WIDTH - 2 * radius;
-        this.maxY = GameCourt.COURT_HEIGHT - 2 * radius;
+        store.setShape(index, radius, GameCourt.COURT_WIDTH - 2 * radius,
+                       GameCourt.COURT_HEIGHT - 2 * radius);
         
         // coordinates for object to be in center of court
         this.centerX = (int) Math.round(((double) (GameCourt.COURT_WIDTH - width)) / 2);
         this.centerY = (int) Math.round(((double) (GameCourt.COURT_HEIGHT - height)) / 2);
     }
+    
+    /*** ENTITY STORE *****************************************************************************/
+    
+    /**
+     * Moves the state of the object into another store, e.g. that of the room it is added to, so
+     * that the systems of that store update it together with the other objects in it
+     * 
+     * @param target store to move to
+     */
+    public void moveTo(EntityStore target) {
+        if (target == store) {
+            return;
+        }
+        int i = target.add(this);
+        target.copy(i, store, index);
+        store.remove(index);
+        store = target;
+        index = i;
+    }
+    
+    /**
+     * Moves the state of the object out of the store it shares with other objects into a store of
+     * its own, e.g. when it is removed from a room
+     */
+    public void detach() {
+        moveTo(new EntityStore(1));
+    }
+    
+    /**
+     * Called by EntityStore when the entry of the object moves to another index
+     */
+    void setEntityIndex(int index) {
+        this.index = index;
+    }
+    
+    /**
+     * @return Store holding the state of the object
+     */
+    protected EntityStore getStore() {
+        return store;
+    }
+    
+    /**
+     * @return Index of the entry of the object in its store
+     */
+    protected int getIndex() {
+        return index;
+    }
 	 
     /*** GETTERS **********************************************************************************/
     
     public int getPx() {
-        return this.px;
+        return store.getPx(index);
     }
 
     public int getPy() {
-        return this.py;
+        return store.getPy(index);
     }
     
     public int getVx() {
-        return this.vx;
+        return store.getVx(index);
     }
     
     public int getVy() {
-        return this.vy;
+        return store.getVy(index);
     }
     
     public int getWidth() {
@@ -104,31 +164,126 @@ public abstract class GameObj {
         return this.height;
     }
 
+    /**
+     * @return x position at which the object should be drawn, between its previous and current
+     *         position depending on the interpolation
+     */
+    public int getDrawPx() {
+        return interpolate(store.getPrevPx(index), store.getPx(index));
+    }
+
+    /**
+     * @return y position at which the object should be drawn, between its previous and current
+     *         position depending on the interpolation
+     */
+    public int getDrawPy() {
+        return interpolate(store.getPrevPy(index), store.getPy(index));
+    }
+
+    /**
+     * Grows a rectangle to cover everywhere the object can be drawn until the next time step,
+     * from its previous to its current position
+     *
+     * @param bounds rectangle to grow, given an empty one (negative width) it is replaced
+     *        dx added to the x coordinates, to convert them to the coordinates of the drawing
+     *        dy added to the y coordinates
+     */
+    public void addMovingBounds(Rectangle bounds, int dx, int dy) {
+        int px = store.getPx(index);
+        int py = store.getPy(index);
+        int prevPx = store.getPrevPx(index);
+        int prevPy = store.getPrevPy(index);
+        bounds.add(Math.min(prevPx, px) + dx, Math.min(prevPy, py) + dy);
+        bounds.add(Math.max(prevPx, px) + width + dx, Math.max(prevPy, py) + height + dy);
+    }
+
+    /**
+     * @param previous coordinate before the last time step
+     *        current coordinate after the last time step
+     * @return Coordinate at which to draw, depending on the interpolation
+     */
+    public static int interpolate(int previous, int current) {
+        return interpolate(previous, current, interpolation);
+    }
+
+    /**
+     * @param previous coordinate before the last time step
+     *        current coordinate after the last time step
+     *        alpha fraction of the time step to draw at
+     * @return Coordinate at which to draw
+     */
+    public static int interpolate(int previous, int current, double alpha) {
+        return (int) Math.round(previous + (current - previous) * alpha);
+    }
+
+    /**
+     * Adds the object to a snapshot as draw() would draw it, at its previous and current position
+     *
+     * @param snapshot snapshot being filled
+     *        dx added to the x coordinates, to convert them to the coordinates of the room
+     *        dy added to the y coordinates
+     */
+    public void addTo(WorldSnapshot snapshot, int dx, int dy) {
+        Sprite sprite = getSprite();
+        if (sprite != null) {
+            snapshot.add(sprite, store.getPrevPx(index) + dx, store.getPrevPy(index) + dy,
+                         store.getPx(index) + dx, store.getPy(index) + dy);
+        }
+    }
+
+    /**
+     * @return Sprite the object is drawn with at the moment, null if it is not drawn
+     */
+    protected Sprite getSprite() {
+        return null;
+    }
+
+    /**
+     * @return Collision layer the object is on (see CollisionLayers); objects that collide with
+     *         nothing, like blood splats, are on no layer
+     */
+    public int getLayer() {
+        return CollisionLayers.NONE;
+    }
+
+    public int getRadius() {
+        return store.getRadius(index);
+    }
+
     public int getPxCenter() {
-        return this.px + radius;
+        return store.getPx(index) + store.getRadius(index);
     }
     
     public int getPyCenter() {
-        return this.py + radius;
+        return store.getPy(index) + store.getRadius(index);
     }
     
     /*** SETTERS **********************************************************************************/
     public void setPx(int px) {
-        this.px = px;
+        store.setPosition(index, px, store.getPy(index));
         clip();
     }
 
     public void setPy(int py) {
-        this.py = py;
+        store.setPosition(index, store.getPx(index), py);
         clip();
     }
 
     public void setVx(int vx) {
-        this.vx = vx;
+        store.setVx(index, vx);
     }
 
     public void setVy(int vy) {
-        this.vy = vy;
+        store.setVy(index, vy);
+    }
+
+    /**
+     * Sets the fraction of a time step at which all objects are drawn
+     * 
+     * @param alpha 0 draws objects at their previous position, 1 at their current position
+     */
+    public static void setInterpolation(double alpha) {
+        interpolation = Math.min(Math.max(alpha, 0), 1);
     }
 
     /*** UPDATES AND OTHER METHODS ****************************************************************/
@@ -138,17 +293,18 @@ public abstract class GameObj {
      * (i.e. Object cannot go outside of the active area the user defines for it).
      */ 
     private void clip() {
-        this.px = Math.min(Math.max(this.px, 0), this.maxX);
-        this.py = Math.min(Math.max(this.py, 0), this.maxY);
+        store.setPosition(index, Math.min(Math.max(store.getPx(index), 0), store.getMaxX(index)),
+                          Math.min(Math.max(store.getPy(index), 0), store.getMaxY(index)));
     }
     
     /**
      * Moves the object by its velocity.  Ensures that the object does not go outside its bounds by
-     * clipping.
+     * clipping. EntityStore.moveAll() does the same for every object in a store at once.
      */
     public void move() {
-        this.px += this.vx;
-        this.py += this.vy;
+        store.snapPrevious(index);
+        store.setPosition(index, store.getPx(index) + store.getVx(index),
+                          store.getPy(index) + store.getVy(index));
         clip();
     }
 	       
@@ -159,16 +315,26 @@ public abstract class GameObj {
      */
     public boolean isAtCenter() {
     	int threshold = 1 + (int) ((double) this.velocity / 2);
-        return (this.px > (this.centerX - threshold) && this.px < (this.centerX + threshold)) && 
-        	   (this.py > (this.centerY - threshold) && this.py < (this.centerY + threshold));
+        int px = store.getPx(index);
+        int py = store.getPy(index);
+        return (px > (this.centerX - threshold) && px < (this.centerX + threshold)) && 
+        	   (py > (this.centerY - threshold) && py < (this.centerY + threshold));
     }
     
     /**
      * Moves the object to the center of the court
      */
     public void moveToCenter() {
-        this.px = this.centerX;
-        this.py = this.centerY;
+        store.setPosition(index, this.centerX, this.centerY);
+        snapPrevious();
+    }
+    
+    /**
+     * Forgets the previous position so that an object that jumped is not drawn sliding across
+     * the court
+     */
+    private void snapPrevious() {
+        store.snapPrevious(index);
     }
     
     /**
@@ -188,19 +354,21 @@ public abstract class GameObj {
      *        velocity number of pixels object should move through towards point
      */
     public void aimAtPoint(int x, int y) {
-        if (x > this.px) {
-            this.vx = this.velocity;
-        } else if (x < this.px) {
-            this.vx = -this.velocity;
+        int px = store.getPx(index);
+        int py = store.getPy(index);
+        if (x > px) {
+            store.setVx(index, this.velocity);
+        } else if (x < px) {
+            store.setVx(index, -this.velocity);
         } else {
-            this.vx = 0;
+            store.setVx(index, 0);
         }
-        if (y > this.py) {
-            this.vy = this.velocity;
-        } else if (y < this.py) {
-            this.vy = -this.velocity;
+        if (y > py) {
+            store.setVy(index, this.velocity);
+        } else if (y < py) {
+            store.setVy(index, -this.velocity);
         } else {
-            this.vy = 0;
+            store.setVy(index, 0);
         }
     }
     
@@ -212,22 +380,19 @@ public abstract class GameObj {
     public void moveToEdge(Direction d) {
         switch (d) {
         case UP:
-            this.px = centerX;
-            this.py = 0;
+            store.setPosition(index, centerX, 0);
             break;  
         case DOWN:
-            this.px = centerX;
-            this.py = maxY;
+            store.setPosition(index, centerX, store.getMaxY(index));
             break;
         case LEFT:
-            this.px = 0;
-            this.py = centerY;
+            store.setPosition(index, 0, centerY);
             break;
         case RIGHT:
-            this.px = maxX;
-            this.py = centerY;
+            store.setPosition(index, store.getMaxX(index), centerY);
             break;
         }
+        snapPrevious();
     }
 
     /**
@@ -240,10 +405,10 @@ public abstract class GameObj {
      * @return Whether this object intersects the other object.
      */
     public boolean intersects(GameObj that) {
-        double dx = (this.px + this.radius) - (that.px + that.radius);
-        double dy = (this.py + this.radius) - (that.py + that.radius);
+        double dx = this.getPxCenter() - that.getPxCenter();
+        double dy = this.getPyCenter() - that.getPyCenter();
         double distance = Math.pow(dx * dx + dy * dy, 0.5);
-        return (distance <= Math.abs(this.radius + that.radius));
+        return (distance <= Math.abs(this.getRadius() + that.getRadius()));
     }
 	
 	/**
@@ -257,14 +422,14 @@ public abstract class GameObj {
      * @return Whether an intersection will occur.
      */
     public boolean willIntersect(GameObj that) {
-        int thisNextX = this.px + this.vx;
-        int thisNextY = this.py + this.vy;
-        int thatNextX = that.px + that.vx;
-        int thatNextY = that.py + that.vy;
-		double dx = (thisNextX + this.radius) - (thatNextX + that.radius);
-        double dy = (thisNextY + this.radius) - (thatNextY + that.radius);
+        int thisNextX = this.getPx() + this.getVx();
+        int thisNextY = this.getPy() + this.getVy();
+        int thatNextX = that.getPx() + that.getVx();
+        int thatNextY = that.getPy() + that.getVy();
+		double dx = (thisNextX + this.getRadius()) - (thatNextX + that.getRadius());
+        double dy = (thisNextY + this.getRadius()) - (thatNextY + that.getRadius());
         double distance = Math.pow(dx * dx + dy * dy, 0.5);
-        return (distance <= Math.abs(this.radius + that.radius));
+        return (distance <= Math.abs(this.getRadius() + that.getRadius()));
     }
 
     /**
@@ -274,15 +439,17 @@ public abstract class GameObj {
      * @return Direction of impending wall, null if all clear.
      */
     public Direction hitWall() {
-        if (this.px + this.vx < 0) {
+        int nextX = store.getPx(index) + store.getVx(index);
+        int nextY = store.getPy(index) + store.getVy(index);
+        if (nextX < 0) {
             return Direction.LEFT;
-        } else if (this.px + this.vx > this.maxX) {
+        } else if (nextX > store.getMaxX(index)) {
            return Direction.RIGHT;
         }
 
-        if (this.py + this.vy < 0) {
+        if (nextY < 0) {
             return Direction.UP;
-        } else if (this.py + this.vy > this.maxY) {
+        } else if (nextY > store.getMaxY(index)) {
             return Direction.DOWN;
         } else {
             return null;
@@ -296,8 +463,10 @@ public abstract class GameObj {
      * @return Direction of door, null if all clear.
      */
     public Direction hitDoor() {
-        if (!((this.px < (centerX + 30)) && (this.px > (centerX - 30))) &&
-            !((this.py < (centerY + 30)) && (this.py > (centerY - 30))))  {
+        int px = store.getPx(index);
+        int py = store.getPy(index);
+        if (!((px < (centerX + 30)) && (px > (centerX - 30))) &&
+            !((py < (centerY + 30)) && (py > (centerY - 30))))  {
             return null;
         }
         return hitWall();
@@ -0,0 +1,188 @@
+import java.util.Random;
+
+/**
+ * Runs the game without a display as fast as possible, driven by a simple random bot, and prints
+ * how many ticks per second the engine manages. Games that end are reset and played again. It
+ * also prints how many enemy projectiles were stopped by boulders and how many shots enemies held
+ * back because a boulder was in the way. The games and the bot input are all derived from the
+ * seed, so two runs with the same arguments play the same games.
+ *
+ * Usage: java HeadlessRunner [ticks] [seed] [background]
+ * If background is true, the rooms the main character is not in are advanced as well and the
+ * time each room took in its last time step is printed. With -Dblob.profile=true the durations of
+ * the phases of each time step are printed as well.
+ *
+ * Usage: java HeadlessRunner scenario enemies boulders projectiles [ticks] [seed]
+ * Advances rooms built by ScenarioGenerator instead of playing the game, keeping the number of
+ * projectiles topped up, and prints ticks per second as CSV. Each count can be a comma separated
+ * list, in which case every combination is run, giving the points of a scaling curve.
+ */
+public class HeadlessRunner {
+
+    /* Number of ticks between each change of input by the bot */
+    private static final int MOVE_INTERVAL = 15;
+    private static final int FIRE_INTERVAL = 5;
+
+    private final GameEngine engine;
+    private final Random random;
+    private Direction moving;
+
+    private int gamesWon;
+    private int gamesLost;
+
+    /* Time spent resetting the game between runs, which is not counted as ticking */
+    private long resetNanos;
+
+    /* Enemy projectiles stopped by boulders and enemy shots skipped, in the games that ended */
+    private long projectilesBlocked;
+    private long shotsSkipped;
+
+    /**
+     * Constructor
+     *
+     * @param seed seed for the first game and the random bot input, which also gives the seeds of
+     *             the games after it
+     */
+    public HeadlessRunner(long seed) {
+        this.engine = new GameEngine(seed);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Runs the given number of ticks, resetting the game whenever it is over
+     *
+     * @param ticks number of ticks to run
+     * @return Number of nanoseconds that were spent ticking, not counting resets
+     */
+    public long run(long ticks) {
+        Direction[] directions = Direction.values();
+        long start = System.nanoTime();
+        long runResetNanos = 0;
+        for (long t = 0; t < ticks; t++) {
+            if (t % MOVE_INTERVAL == 0) {
+                if (moving != null) {
+                    engine.releaseMove(moving);
+                }
+                moving = directions[random.nextInt(directions.length)];
+                engine.pressMove(moving);
+            }
+            if (t % FIRE_INTERVAL == 0) {
+                engine.fire(directions[random.nextInt(directions.length)]);
+            }
+            engine.tick();
+            if (engine.isOver()) {
+                if (engine.hasWon()) {
+                    gamesWon++;
+                } else {
+                    gamesLost++;
+                }
+                projectilesBlocked += engine.getRoomHandler().getProjectilesBlocked();
+                shotsSkipped += engine.getRoomHandler().getShotsSkipped();
+                long resetStart = System.nanoTime();
+                engine.reset(random.nextLong());
+                runResetNanos += System.nanoTime() - resetStart;
+                moving = null;
+            }
+        }
+        resetNanos += runResetNanos;
+        return System.nanoTime() - start - runResetNanos;
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Advances a room built by a ScenarioGenerator for the given number of ticks, with the main
+     * character standing in the center
+     *
+     * @param generator generator to build the room and fire projectiles with
+     *        enemiesPerKind number of enemies of each kind
+     *        boulders number of boulders
+     *        projectiles number of projectiles kept in the room
+     *        ticks number of ticks to run
+     * @return Number of nanoseconds that were spent ticking, not counting building the room
+     */
+    public static long runScenario(ScenarioGenerator generator, int enemiesPerKind, int boulders,
+                                   int projectiles, long ticks) {
+        Room room = generator.generate(enemiesPerKind, boulders, projectiles);
+        Blob blob = generator.createBlob();
+        long start = System.nanoTime();
+        for (long t = 0; t < ticks; t++) {
+            generator.topUpProjectiles(room, projectiles);
+            room.advance(blob);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static int[] parseCounts(String s) {
+        String[] parts = s.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+
+    private static void scenarioMain(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: java HeadlessRunner scenario enemies boulders projectiles " +
+                               "[ticks] [seed]");
+            return;
+        }
+        int[] enemyCounts = parseCounts(args[1]);
+        int[] boulderCounts = parseCounts(args[2]);
+        int[] projectileCounts = parseCounts(args[3]);
+        long ticks = args.length > 4 ? Long.parseLong(args[4]) : 10000L;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 0L;
+        System.out.println("enemiesPerKind,boulders,projectiles,ticksPerSecond");
+        for (int enemies : enemyCounts) {
+            for (int boulders : boulderCounts) {
+                for (int projectiles : projectileCounts) {
+                    long nanos = runScenario(new ScenarioGenerator(seed), enemies, boulders,
+                                             projectiles, ticks);
+                    System.out.printf("%d,%d,%d,%.0f%n", enemies, boulders, projectiles,
+                                      ticks / (nanos / 1e9));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("scenario")) {
+            scenarioMain(args);
+            return;
+        }
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 1000000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0L;
+        boolean background = args.length > 2 && Boolean.parseBoolean(args[2]);
+        HeadlessRunner runner = new HeadlessRunner(seed);
+        runner.getEngine().setBackgroundSimulation(background);
+        long nanos = runner.run(ticks);
+        double seconds = nanos / 1e9;
+        System.out.printf("%d ticks in %.3f s (%.0f ticks/s), %.3f s resetting, " +
+                          "games won=%d lost=%d%n", ticks, seconds, ticks / seconds,
+                          runner.resetNanos / 1e9, runner.gamesWon, runner.gamesLost);
+        RoomHandler current = runner.getEngine().getRoomHandler();
+        System.out.printf("enemy projectiles stopped by boulders=%d, shots skipped=%d%n",
+                          runner.projectilesBlocked + current.getProjectilesBlocked(),
+                          runner.shotsSkipped + current.getShotsSkipped());
+        if (background) {
+            RoomHandler roomHandler = runner.getEngine().getRoomHandler();
+            int radius = RoomHandler.RESIDENT_RADIUS;
+            for (int i = roomHandler.getRow() - radius; i <= roomHandler.getRow() + radius; i++) {
+                for (int j = roomHandler.getColumn() - radius;
+                     j <= roomHandler.getColumn() + radius; j++) {
+                    if (roomHandler.isRoomResident(i, j)) {
+                        System.out.printf("room (%d, %d): %d ns%n", i, j,
+                                          roomHandler.getRoomTickNanos(i, j));
+                    }
+                }
+            }
+            System.out.printf("background rooms: %d ns%n", roomHandler.getBackgroundTickNanos());
+        }
+        if (TickProfiler.isEnabled()) {
+            System.out.print(TickProfiler.getReport());
+        }
+    }
+}
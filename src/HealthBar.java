@@ -1,19 +1,8 @@
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 public class HealthBar {
         
-    private static final String IMG_EMPTY_HEART = "files/HeartEmpty.png";
-    private static final String IMG_HALF_HEART = "files/HeartHalf.png";
-    private static final String IMG_FULL_HEART = "files/HeartFull.png";
-    private static final int HEART_SIZE = 30;
-    
-    private static BufferedImage imgEmptyHeart;
-    private static BufferedImage imgHalfHeart;
-    private static BufferedImage imgFullHeart;
+    public static final int HEART_SIZE = 30;
     
 	/* Health information, with numLives being the number of hearts possible
 	 * and the maxHealth being the number of half hearts possible */
@@ -28,15 +17,6 @@ public class HealthBar {
         this.numLives = numLives;
         this.maxHealth = numLives * 2;
         health = maxHealth;
-        try {
-            if (imgEmptyHeart == null) {
-                imgEmptyHeart = ImageIO.read(new File(IMG_EMPTY_HEART));
-                imgHalfHeart = ImageIO.read(new File(IMG_HALF_HEART));
-                imgFullHeart = ImageIO.read(new File(IMG_FULL_HEART));
-            }
-        } catch (IOException e) {
-            System.out.println("IOException:" + e.getMessage());
-        }    
     }
  
 	/**
@@ -50,21 +30,55 @@ public class HealthBar {
         int numFullHearts = health / 2;
         int numHalfHearts = health % 2;
         int numEmptyHearts = heartNumber - numFullHearts - numHalfHearts;
+        SpriteAtlas atlas = SpriteAtlas.get();
         int x = -HEART_SIZE;
         for (int i = 0; i < numEmptyHearts; i++) {
-            g.drawImage(imgEmptyHeart, x, 0, HEART_SIZE, HEART_SIZE, null);   
+            atlas.draw(g, Sprite.HEART_EMPTY, x, 0);
             x -= HEART_SIZE;
         }
         if (numHalfHearts == 1) {
-            g.drawImage(imgHalfHeart, x, 0, HEART_SIZE, HEART_SIZE, null);  
+            atlas.draw(g, Sprite.HEART_HALF, x, 0);
             x -= HEART_SIZE;
         }
         for (int i = 0; i < numFullHearts; i++) {
-            g.drawImage(imgFullHeart, x, 0, HEART_SIZE, HEART_SIZE, null);  
+            atlas.draw(g, Sprite.HEART_FULL, x, 0);
             x -= HEART_SIZE;
         }
     }
         
+	/**
+     * Adds the hearts to a snapshot as draw() would draw them
+     * 
+     * @param snapshot snapshot being filled
+     *        right x coordinate in the room that the hearts are drawn to the left of
+     *        top y coordinate in the room of the top of the hearts
+     */
+    public void addTo(WorldSnapshot snapshot, int right, int top) {
+        int numFullHearts = health / 2;
+        int numHalfHearts = health % 2;
+        int numEmptyHearts = numLives - numFullHearts - numHalfHearts;
+        int x = right - HEART_SIZE;
+        for (int i = 0; i < numEmptyHearts; i++) {
+            snapshot.add(Sprite.HEART_EMPTY, x, top, x, top);
+            x -= HEART_SIZE;
+        }
+        if (numHalfHearts == 1) {
+            snapshot.add(Sprite.HEART_HALF, x, top, x, top);
+            x -= HEART_SIZE;
+        }
+        for (int i = 0; i < numFullHearts; i++) {
+            snapshot.add(Sprite.HEART_FULL, x, top, x, top);
+            x -= HEART_SIZE;
+        }
+    }
+    
+	/**
+     * @return Width of all hearts, which are drawn to the left of the point the bar is drawn at
+     */
+    public int getWidth() {
+        return numLives * HEART_SIZE;
+    }
+    
 	/**
      * Removes half a heart from HealthBar
      * 
@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds with a fixed number of buckets, used to find percentiles
+ * of how long something took without keeping every sample.
+ *
+ * Buckets are log-linear: every power of two is split into SUB_BUCKETS buckets of equal width, so
+ * a value is always put in a bucket at most 1/SUB_BUCKETS wider than the value itself. Recording a
+ * sample is a few bit operations and an array increment, and never creates any objects. The
+ * histogram is not thread safe and should be recorded into from one thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /* Enough buckets for every positive long */
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long max;
+
+    /**
+     * Records a duration
+     *
+     * @param nanos duration in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)]++;
+        count++;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Removes all recorded durations
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Longest duration recorded, exactly
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile percentile to find, from 0 to 100
+     * @return Duration that the given percent of recorded durations were shorter than or equal to,
+     *         rounded up to the end of its bucket, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= target) {
+                return Math.min(highestValue(b), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return Index of the bucket holding a value
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return Largest value that is put in a bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,625 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+/**
+ * The layout of a level: where the rooms are, which doors lead between them, their backgrounds,
+ * and the enemies and boulders in them. A level is kept in its compiled binary form and a room is
+ * only made from it when createRoom() is called, so a level holds no game objects and a large
+ * level pack costs no more than its file until its rooms are entered. Rooms can be at any row
+ * and column, and are found by their position in a hash table in constant time however many
+ * rooms there are.
+ *
+ * Level text format, one entry per line, '#' starting a comment:
+ *  start row column                         room the main character starts in
+ *  room row column open [closed]            a room, with the background shown when its doors are
+ *                                           open and when they are closed (the same if omitted)
+ *  final row column open closed             the room with the boss and the portal
+ *  doors direction...                       the only sides of the room with a door; without it a
+ *                                           room has a door to every room next to it
+ *  boulder x y
+ *  patrolling x y direction [options]       enemy firing in direction
+ *  sprinkler x y direction [options]        enemy on the wall facing direction
+ *  sniping x y direction direction|- offset firing|waiting [options]
+ *                                           enemy firing in one or two directions, starting
+ *                                           offset seconds into its firing or waiting period
+ *  following x y [options]
+ * Doors, boulders and enemies belong to the room above them. Options are "edge direction" to move
+ * the enemy against that wall of the court, and "left" to turn it to the left. Rows increase
+ * downwards and columns to the right. A door only leads somewhere if there is a room behind it;
+ * it does not need a door back.
+ *
+ * Binary format (big endian), which can be memory-mapped from a file:
+ *  int   MAGIC
+ *  byte  VERSION
+ *  short start row, short start column
+ *  short number of strings, then per string its length and modified UTF-8 bytes (as writeUTF)
+ *  int   number of rooms
+ *  int   number of slots of the room table, a power of two
+ *  per slot: short row, short column, int offset of the room from the start of the level or 0
+ *            if the slot is empty; a room is in the first slot from hash(row, column) on that
+ *            holds it or is empty
+ *  per room: byte ROOM or FINAL, byte door bits (1 << direction ordinal), short open background,
+ *            short closed background (indices of strings), short number of objects, then per
+ *            object OBJECT_BYTES bytes: byte kind, short x, short y, byte edge, byte direction,
+ *            byte second direction (-1 if none), short offset in milliseconds, byte FLAG_ bits
+ */
+public class Level {
+
+    public static final int MAGIC = 0x424C4C56; // "BLLV"
+    public static final byte VERSION = 2;
+
+    /* Kinds of rooms */
+    public static final int ROOM = 0;
+    public static final int FINAL = 1;
+
+    /* Kinds of objects in a room */
+    public static final int BOULDER = 0;
+    public static final int PATROLLING = 1;
+    public static final int SPRINKLER = 2;
+    public static final int SNIPING = 3;
+    public static final int FOLLOWING = 4;
+
+    private static final String[] KEYWORDS = {
+        "boulder", "patrolling", "sprinkler", "sniping", "following"
+    };
+
+    /* Bits of the flags of an object */
+    public static final int FLAG_FIRING = 1;
+    public static final int FLAG_LEFT = 2;
+
+    private static final int OBJECT_BYTES = 11;
+    private static final int ROOM_HEADER_BYTES = 8;
+    private static final int SLOT_BYTES = 8;
+    private static final int ALL_DOORS = 0xf;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /* Compiled level, only read with absolute gets so that it can be shared between threads */
+    private final ByteBuffer data;
+
+    private final int startRow;
+    private final int startColumn;
+    private final String[] strings;
+    private final int roomCount;
+    private final int slotMask;
+    private final int roomTable;   // position of the first slot of the room table
+
+    /**
+     * Reads a compiled level
+     *
+     * @param data level in the binary format, from its position to its limit
+     */
+    public Level(ByteBuffer data) throws IOException {
+        this.data = data.slice();
+        try {
+            if (this.data.getInt(0) != MAGIC) {
+                throw new IOException("Not a compiled level");
+            }
+            byte version = this.data.get(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported level version " + version);
+            }
+            int pos = 5;
+            startRow = this.data.getShort(pos);
+            startColumn = this.data.getShort(pos + 2);
+            pos += 4;
+            strings = new String[this.data.getShort(pos) & 0xffff];
+            pos += 2;
+            for (int k = 0; k < strings.length; k++) {
+                int length = this.data.getShort(pos) & 0xffff;
+                byte[] utf = new byte[length + 2];
+                for (int b = 0; b < utf.length; b++) {
+                    utf[b] = this.data.get(pos + b);
+                }
+                strings[k] = new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+                pos += utf.length;
+            }
+            roomCount = this.data.getInt(pos);
+            int slots = this.data.getInt(pos + 4);
+            slotMask = slots - 1;
+            roomTable = pos + 8;
+            if (slots <= roomCount || (slots & slotMask) != 0
+                    || roomTable + (long) slots * SLOT_BYTES > this.data.limit()
+                    || !contains(startRow, startColumn)) {
+                throw new IOException("Corrupt level");
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt level");
+        }
+    }
+
+    /**
+     * Reads a level file in either format. Compiled levels are memory-mapped rather than read.
+     *
+     * @param file level file
+     */
+    public static Level load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() >= 4 && raf.readInt() == MAGIC) {
+                // the mapping stays valid after the file is closed
+                return new Level(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                                                      raf.length()));
+            }
+        }
+        try (Reader in = new InputStreamReader(new FileInputStream(file),
+                                               StandardCharsets.UTF_8)) {
+            return parse(in);
+        }
+    }
+
+    /**
+     * Compiles a level in the text format. Lines are read one at a time and their rooms written
+     * straight into the binary format.
+     *
+     * @param in level in the text format
+     */
+    public static Level parse(Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndex = new HashMap<>();
+        // offset of each room in body, by position(row, column)
+        Map<Long, Integer> roomOffsets = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ByteArrayOutputStream objects = new ByteArrayOutputStream();
+        DataOutputStream objectData = new DataOutputStream(objects);
+        byte[] roomHeader = null;
+        int objectCount = 0;
+        int startRow = 0;
+        int startColumn = 0;
+
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            StringTokenizer tokens = new StringTokenizer(
+                    (comment >= 0) ? line.substring(0, comment) : line);
+            if (!tokens.hasMoreTokens()) {
+                continue;
+            }
+            try {
+                String keyword = tokens.nextToken();
+                if (keyword.equals("start")) {
+                    startRow = readCoordinate(tokens);
+                    startColumn = readCoordinate(tokens);
+                } else if (keyword.equals("room") || keyword.equals("final")) {
+                    if (roomHeader != null) {
+                        writeRoom(body, roomHeader, objectCount, objects);
+                    }
+                    int row = readCoordinate(tokens);
+                    int column = readCoordinate(tokens);
+                    String open = readToken(tokens);
+                    String closed = (keyword.equals("final") || tokens.hasMoreTokens())
+                            ? readToken(tokens) : open;
+                    if (roomOffsets.put(position(row, column), body.size()) != null) {
+                        throw new IOException("second room at row " + row + " column " + column);
+                    }
+                    roomHeader = new byte[ROOM_HEADER_BYTES];
+                    roomHeader[0] = (byte) (keyword.equals("final") ? FINAL : ROOM);
+                    roomHeader[1] = ALL_DOORS;
+                    putShort(roomHeader, 2, intern(open, strings, stringIndex));
+                    putShort(roomHeader, 4, intern(closed, strings, stringIndex));
+                    objectCount = 0;
+                    objects.reset();
+                } else if (keyword.equals("doors")) {
+                    if (roomHeader == null) {
+                        throw new IOException("doors before the first room");
+                    }
+                    roomHeader[1] = 0;
+                    while (tokens.hasMoreTokens()) {
+                        roomHeader[1] |= 1 << Direction.valueOf(tokens.nextToken()).ordinal();
+                    }
+                } else {
+                    int kind = Arrays.asList(KEYWORDS).indexOf(keyword);
+                    if (kind < 0) {
+                        throw new IOException("unknown entry " + keyword);
+                    }
+                    if (roomHeader == null) {
+                        throw new IOException(keyword + " before the first room");
+                    }
+                    readObject(kind, tokens, objectData);
+                    objectCount++;
+                }
+                if (tokens.hasMoreTokens()) {
+                    throw new IOException("unexpected " + tokens.nextToken());
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        if (roomHeader != null) {
+            writeRoom(body, roomHeader, objectCount, objects);
+        }
+        if (!roomOffsets.containsKey(position(startRow, startColumn))) {
+            throw new IOException("No start room");
+        }
+
+        ByteArrayOutputStream level = new ByteArrayOutputStream(body.size() + 256);
+        DataOutputStream out = new DataOutputStream(level);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(startRow);
+        out.writeShort(startColumn);
+        out.writeShort(strings.size());
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+        int rooms = roomOffsets.size();
+        int slots = Integer.highestOneBit(2 * rooms + 1) * 2; // at most half full
+        out.writeInt(rooms);
+        out.writeInt(slots);
+        int bodyStart = out.size() + slots * SLOT_BYTES;
+        byte[] table = new byte[slots * SLOT_BYTES];
+        byte[] roomData = body.toByteArray();
+        for (Map.Entry<Long, Integer> room : roomOffsets.entrySet()) {
+            int row = (int) (room.getKey() >> 32);
+            int column = (int) (long) room.getKey();
+            int offset = room.getValue();
+            // doors only lead somewhere if there is a room behind them
+            for (Direction d : DIRECTIONS) {
+                if (!roomOffsets.containsKey(position(row + getRowStep(d),
+                                                      column + getColumnStep(d)))) {
+                    roomData[offset + 1] &= ~(1 << d.ordinal());
+                }
+            }
+            int slot = hash(row, column) & (slots - 1);
+            while (getInt(table, slot * SLOT_BYTES + 4) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            putShort(table, slot * SLOT_BYTES, row);
+            putShort(table, slot * SLOT_BYTES + 2, column);
+            putInt(table, slot * SLOT_BYTES + 4, bodyStart + offset);
+        }
+        out.write(table);
+        out.write(roomData);
+        out.flush();
+        return new Level(ByteBuffer.wrap(level.toByteArray()));
+    }
+
+    /**
+     * Reads the numbers and options of a boulder or enemy and writes its object record
+     */
+    private static void readObject(int kind, StringTokenizer tokens, DataOutputStream out)
+            throws IOException {
+        int x = readShort(tokens, "position");
+        int y = readShort(tokens, "position");
+        int direction = -1;
+        int direction2 = -1;
+        int offsetMillis = 0;
+        int flags = 0;
+        if (kind == PATROLLING || kind == SPRINKLER || kind == SNIPING) {
+            direction = Direction.valueOf(readToken(tokens)).ordinal();
+        }
+        if (kind == SNIPING) {
+            String second = readToken(tokens);
+            direction2 = second.equals("-") ? -1 : Direction.valueOf(second).ordinal();
+            offsetMillis = checkShort(Math.round(Double.parseDouble(readToken(tokens)) * 1000),
+                                      "offset in milliseconds");
+            String mode = readToken(tokens);
+            if (mode.equals("firing")) {
+                flags |= FLAG_FIRING;
+            } else if (!mode.equals("waiting")) {
+                throw new IOException("expected firing or waiting but found " + mode);
+            }
+        }
+        int edge = -1;
+        while (kind != BOULDER && tokens.hasMoreTokens()) {
+            String option = tokens.nextToken();
+            if (option.equals("edge")) {
+                edge = Direction.valueOf(readToken(tokens)).ordinal();
+            } else if (option.equals("left")) {
+                flags |= FLAG_LEFT;
+            } else {
+                throw new IOException("unknown option " + option);
+            }
+        }
+        out.writeByte(kind);
+        out.writeShort(x);
+        out.writeShort(y);
+        out.writeByte(edge);
+        out.writeByte(direction);
+        out.writeByte(direction2);
+        out.writeShort(offsetMillis);
+        out.writeByte(flags);
+    }
+
+    private static void writeRoom(ByteArrayOutputStream body, byte[] header, int objectCount,
+                                  ByteArrayOutputStream objects) throws IOException {
+        if (objectCount > 0xffff) {
+            throw new IOException("more than " + 0xffff + " objects in one room");
+        }
+        putShort(header, 6, objectCount);
+        body.write(header);
+        objects.writeTo(body);
+    }
+
+    private static int intern(String s, List<String> strings, Map<String, Integer> index) {
+        Integer i = index.get(s);
+        if (i == null) {
+            i = strings.size();
+            strings.add(s);
+            index.put(s, i);
+        }
+        return i;
+    }
+
+    private static void putShort(byte[] b, int pos, int value) {
+        b[pos] = (byte) (value >> 8);
+        b[pos + 1] = (byte) value;
+    }
+
+    private static void putInt(byte[] b, int pos, int value) {
+        putShort(b, pos, value >> 16);
+        putShort(b, pos + 2, value);
+    }
+
+    private static int getInt(byte[] b, int pos) {
+        return ((b[pos] & 0xff) << 24) | ((b[pos + 1] & 0xff) << 16) | ((b[pos + 2] & 0xff) << 8)
+                | (b[pos + 3] & 0xff);
+    }
+
+    private static String readToken(StringTokenizer tokens) throws IOException {
+        if (!tokens.hasMoreTokens()) {
+            throw new IOException("missing value");
+        }
+        return tokens.nextToken();
+    }
+
+    private static int readNumber(StringTokenizer tokens) throws IOException {
+        return Integer.parseInt(readToken(tokens));
+    }
+
+    private static int readCoordinate(StringTokenizer tokens) throws IOException {
+        return readShort(tokens, "room position");
+    }
+
+    /**
+     * Reads a number that is stored as a short
+     *
+     * @param what what the number is, for the error message
+     */
+    private static int readShort(StringTokenizer tokens, String what) throws IOException {
+        return checkShort(readNumber(tokens), what);
+    }
+
+    private static int checkShort(long value, String what) throws IOException {
+        if (value != (short) value) {
+            throw new IOException(what + " " + value + " out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return Row and column of a room packed into one number, the row in the upper half
+     */
+    public static long position(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    /**
+     * @return First slot of the room table to look for a room in
+     */
+    private static int hash(int row, int column) {
+        int h = row * 0x9e3779b1 + column * 0x85ebca77;
+        return h ^ (h >>> 15);
+    }
+
+    /**
+     * @return Change of row when going through a door on the given side of a room
+     */
+    public static int getRowStep(Direction d) {
+        return (d == Direction.UP) ? -1 : (d == Direction.DOWN) ? 1 : 0;
+    }
+
+    /**
+     * @return Change of column when going through a door on the given side of a room
+     */
+    public static int getColumnStep(Direction d) {
+        return (d == Direction.LEFT) ? -1 : (d == Direction.RIGHT) ? 1 : 0;
+    }
+
+    /**
+     * Writes the compiled level, which load() memory-maps
+     *
+     * @param out stream to write the level to
+     */
+    public void write(OutputStream out) throws IOException {
+        ByteBuffer copy = data.duplicate();
+        copy.clear();
+        byte[] chunk = new byte[8192];
+        while (copy.hasRemaining()) {
+            int n = Math.min(chunk.length, copy.remaining());
+            copy.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    /**
+     * Makes a room with everything in it
+     *
+     * @param row row of the room
+     *        column column of the room
+     *        random source of randomness for the room, seeded for reproducible games
+     */
+    public Room createRoom(int row, int column, Random random) {
+        int pos = getRoomOffset(row, column);
+        String open = strings[data.getShort(pos + 2) & 0xffff];
+        String closed = strings[data.getShort(pos + 4) & 0xffff];
+        Room room = (data.get(pos) == FINAL) ? new FinalRoom(open, closed, random)
+                                             : new Room(open, closed);
+        int count = data.getShort(pos + 6) & 0xffff;
+        for (int k = 0; k < count; k++) {
+            addObject(room, pos + ROOM_HEADER_BYTES + k * OBJECT_BYTES);
+        }
+        return room;
+    }
+
+    /**
+     * Adds the boulder or enemy of an object record to a room
+     */
+    private void addObject(Room room, int pos) {
+        int kind = data.get(pos);
+        int x = data.getShort(pos + 1);
+        int y = data.getShort(pos + 3);
+        int edge = data.get(pos + 5);
+        Direction d = direction(data.get(pos + 6));
+        int flags = data.get(pos + 10);
+        if (kind == BOULDER) {
+            room.addBoulder(x, y);
+            return;
+        }
+        RegularEnemy enemy;
+        switch (kind) {
+        case PATROLLING:
+            enemy = new PatrollingEnemy(x, y, d);
+            break;
+        case SPRINKLER:
+            enemy = new SprinklerEnemy(x, y, d);
+            break;
+        case SNIPING:
+            enemy = new SnipingEnemy(x, y, d, direction(data.get(pos + 7)),
+                                     data.getShort(pos + 8) / 1000.0,
+                                     (flags & FLAG_FIRING) != 0);
+            break;
+        default:
+            enemy = new FollowingEnemy(x, y);
+            break;
+        }
+        if (edge >= 0) {
+            enemy.moveToEdge(DIRECTIONS[edge]);
+        }
+        if ((flags & FLAG_LEFT) != 0) {
+            enemy.setDirectionLeft();
+        }
+        room.addEnemy(enemy);
+    }
+
+    private static Direction direction(int ordinal) {
+        return (ordinal >= 0) ? DIRECTIONS[ordinal] : null;
+    }
+
+    /**
+     * @return Position of the record of a room, -1 if there is no room at the given position
+     */
+    private int find(int row, int column) {
+        int slot = hash(row, column) & slotMask;
+        // a table without an empty slot can only come from a corrupt file, so look at each slot
+        // at most once rather than trusting that one is empty
+        for (int probe = 0; probe <= slotMask; probe++) {
+            int pos = roomTable + slot * SLOT_BYTES;
+            int offset = data.getInt(pos + 4);
+            if (offset == 0) {
+                return -1;
+            }
+            if (data.getShort(pos) == row && data.getShort(pos + 2) == column) {
+                return offset;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    private int getRoomOffset(int row, int column) {
+        int pos = find(row, column);
+        if (pos < 0) {
+            throw new IndexOutOfBoundsException("No room at row " + row + " column " + column);
+        }
+        return pos;
+    }
+
+    /**
+     * @return Whether there is a room at the given position
+     */
+    public boolean contains(int row, int column) {
+        return row == (short) row && column == (short) column && find(row, column) >= 0;
+    }
+
+    /**
+     * @param row row of the room
+     *        column column of the room
+     *        d side of the room
+     * @return Whether the room has a door on the given side leading to another room
+     */
+    public boolean hasDoor(int row, int column, Direction d) {
+        return (data.get(getRoomOffset(row, column) + 1) & (1 << d.ordinal())) != 0;
+    }
+
+    /**
+     * @param row row of the room
+     *        column column of the room
+     * @return Image file of the background a room is drawn with when it is entered the first
+     *         time: with closed doors if there are enemies in it
+     */
+    public String getEntryBackground(int row, int column) {
+        int pos = getRoomOffset(row, column);
+        boolean enemies = data.get(pos) == FINAL;
+        int count = data.getShort(pos + 6) & 0xffff;
+        for (int k = 0; k < count && !enemies; k++) {
+            enemies = data.get(pos + ROOM_HEADER_BYTES + k * OBJECT_BYTES) != BOULDER;
+        }
+        return strings[data.getShort(pos + (enemies ? 4 : 2)) & 0xffff];
+    }
+
+    /**
+     * @return Number of rooms in the level
+     */
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int getStartRow() {
+        return startRow;
+    }
+
+    public int getStartColumn() {
+        return startColumn;
+    }
+
+    /**
+     * @return Number of bytes of the compiled level
+     */
+    public int getSize() {
+        return data.limit();
+    }
+
+    /**
+     * Compiles a level file in the text format into the binary format
+     *
+     * Usage: java Level levelFile compiledFile
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java Level levelFile compiledFile");
+            return;
+        }
+        long start = System.nanoTime();
+        Level level = load(new File(args[0]));
+        double millis = (System.nanoTime() - start) / 1e6;
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            level.write(out);
+        }
+        System.out.printf("%d rooms, %d bytes, read in %.2f ms%n", level.getRoomCount(),
+                          level.getSize(), millis);
+    }
+}
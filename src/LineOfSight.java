@@ -0,0 +1,195 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Whether a projectile can get from one place in a room to another without hitting a boulder, so
+ * that enemies can hold their fire when a boulder is in the way. One LineOfSight serves every
+ * enemy in a room.
+ *
+ * The room is divided into cells of CELL_SIZE pixels, and the answer for a pair of cells is found
+ * once, by testing the line between their centers against the boulders, and then kept in a bit set
+ * for every later query between the same cells. Any line between two points of the cells is
+ * within REACH of the line between their centers, so the answer is only kept as blocked if the
+ * line between the centers passes at least REACH inside a boulder, and as visible if it passes at
+ * least REACH outside every boulder. Otherwise the pair is marked unsure and every query for it
+ * tests its own line against the boulders, so an answer is never wrong and no shot that would get
+ * through is held back. The answers are thrown away when a boulder is added.
+ */
+public class LineOfSight {
+
+    public static final int CELL_SIZE = 40;
+
+    /* Largest distance between a point of a cell and its center, half the diagonal of a cell */
+    private static final double REACH = CELL_SIZE * Math.sqrt(0.5);
+
+    /* What is known about the lines between two cells */
+    private static final int VISIBLE = 0;
+    private static final int BLOCKED = 1;
+    private static final int UNSURE = 2;
+
+    /* Distance a line has to keep from the edge of a boulder, i.e. the radius of a projectile */
+    private final int margin;
+
+    private final int cols;
+    private final int rows;
+    private final int cells;
+
+    /*
+     * One bit per pair of cells: whether the answer is known, whether it is visible, and whether
+     * it depends on where in the cells the line starts and ends
+     */
+    private final long[] known;
+    private final long[] visible;
+    private final long[] unsure;
+
+    /* Number of boulders the answers were found for */
+    private int boulderCount = -1;
+
+    private int queryCount;
+    private int computedCount;
+    private int exactCount;
+
+    /**
+     * Constructor
+     *
+     * @param width width of the court
+     *        height height of the court
+     *        margin distance a line has to keep from the boulders, the radius of a projectile
+     */
+    public LineOfSight(int width, int height, int margin) {
+        this.margin = margin;
+        this.cols = (width + CELL_SIZE - 1) / CELL_SIZE;
+        this.rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        this.cells = cols * rows;
+        int words = (cells * cells + 63) / 64;
+        this.known = new long[words];
+        this.visible = new long[words];
+        this.unsure = new long[words];
+    }
+
+    /**
+     * @param x0 x coordinate of the start of the line, e.g. the center of an enemy
+     *        y0 y coordinate of the start of the line
+     *        x1 x coordinate of the end of the line, e.g. the center of the main character
+     *        y1 y coordinate of the end of the line
+     *        boulders boulders in the room, which are only ever added to
+     * @return Whether a projectile could travel between the cells of the two points without
+     *         hitting a boulder
+     */
+    public boolean isVisible(int x0, int y0, int x1, int y1, List<Boulder> boulders) {
+        if (boulders.size() != boulderCount) {
+            Arrays.fill(known, 0);
+            boulderCount = boulders.size();
+        }
+        queryCount++;
+        if (!isInside(x0, y0) || !isInside(x1, y1)) {
+            // a point off the grid can be further than REACH from the center of its cell
+            exactCount++;
+            return isClear(x0, y0, x1 - x0, y1 - y0, boulders, 0);
+        }
+        int a = cellAt(x0, y0);
+        int b = cellAt(x1, y1);
+        // the line between two cells is the same both ways, so only one order is stored
+        int pair = (a < b) ? a * cells + b : b * cells + a;
+        long bit = 1L << pair;
+        int word = pair >>> 6;
+        if ((known[word] & bit) == 0) {
+            known[word] |= bit;
+            int answer = classify(a, b, boulders);
+            if (answer == VISIBLE) {
+                visible[word] |= bit;
+            } else {
+                visible[word] &= ~bit;
+            }
+            if (answer == UNSURE) {
+                unsure[word] |= bit;
+            } else {
+                unsure[word] &= ~bit;
+            }
+            computedCount++;
+        }
+        if ((unsure[word] & bit) != 0) {
+            exactCount++;
+            return isClear(x0, y0, x1 - x0, y1 - y0, boulders, 0);
+        }
+        return (visible[word] & bit) != 0;
+    }
+
+    /**
+     * @return VISIBLE if every line between two cells keeps clear of the boulders, BLOCKED if
+     *         every such line hits one, UNSURE otherwise
+     */
+    private int classify(int a, int b, List<Boulder> boulders) {
+        double ax = (a % cols) * CELL_SIZE + CELL_SIZE / 2;
+        double ay = (a / cols) * CELL_SIZE + CELL_SIZE / 2;
+        double dx = (b % cols) * CELL_SIZE + CELL_SIZE / 2 - ax;
+        double dy = (b / cols) * CELL_SIZE + CELL_SIZE / 2 - ay;
+        if (!isClear(ax, ay, dx, dy, boulders, -REACH)) {
+            return BLOCKED;
+        }
+        return isClear(ax, ay, dx, dy, boulders, REACH) ? VISIBLE : UNSURE;
+    }
+
+    /**
+     * @param ax x coordinate of the start of a line
+     *        ay y coordinate of the start of the line
+     *        dx x distance from the start to the end of the line
+     *        dy y distance from the start to the end of the line
+     *        boulders boulders to test the line against
+     *        extra distance added to how far the line has to keep from the boulders
+     * @return Whether the line keeps clear of every boulder
+     */
+    private boolean isClear(double ax, double ay, double dx, double dy, List<Boulder> boulders,
+                            double extra) {
+        double lengthSquared = dx * dx + dy * dy;
+        for (Boulder bould : boulders) {
+            double cx = bould.getPxCenter() - ax;
+            double cy = bould.getPyCenter() - ay;
+            // point of the line nearest to the center of the boulder
+            double t = (lengthSquared == 0) ? 0
+                    : Math.max(0, Math.min(1, (cx * dx + cy * dy) / lengthSquared));
+            double ex = cx - t * dx;
+            double ey = cy - t * dy;
+            double reach = bould.getRadius() + margin + extra;
+            if (reach >= 0 && ex * ex + ey * ey <= reach * reach) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < cols * CELL_SIZE && y < rows * CELL_SIZE;
+    }
+
+    /**
+     * @return Cell of a point, clamped to the grid
+     */
+    private int cellAt(int x, int y) {
+        int col = Math.max(0, Math.min(cols - 1, x / CELL_SIZE));
+        int row = Math.max(0, Math.min(rows - 1, y / CELL_SIZE));
+        return row * cols + col;
+    }
+
+    /**
+     * @return Number of times isVisible() was called
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * @return Number of times isVisible() had to find the answer for a pair of cells
+     */
+    public int getComputedCount() {
+        return computedCount;
+    }
+
+    /**
+     * @return Number of times isVisible() had to test the line it was given against the boulders
+     *         because the answer for its cells was unsure
+     */
+    public int getExactCount() {
+        return exactCount;
+    }
+}
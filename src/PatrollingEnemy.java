@@ -1,6 +1,7 @@
 /**
  * Enemy that patrols vertically or horizontally and shoots perpendicularly
  */
+@SuppressWarnings("serial")
 public class PatrollingEnemy extends RegularEnemy {
     
 	/* Interval in seconds at which SnipingEnemy fires projectiles 
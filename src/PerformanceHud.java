@@ -0,0 +1,264 @@
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Overlay drawn over the game showing how well it runs: frames drawn per second, average time of
+ * a time step and of drawing a frame, the number of projectiles and enemies in the current room
+ * and how fast the game thread allocates memory.
+ *
+ * The numbers are updated twice a second by writing digits into character buffers that are drawn
+ * with Graphics.drawChars(), so showing the overlay creates no Strings and hardly changes the
+ * numbers it shows.
+ *
+ * The overlay may be drawn on another thread than the one running the game, so the bytes
+ * allocated by the game thread are measured on that thread with getCurrentThreadAllocatedBytes()
+ * and handed over with recordAllocatedBytes().
+ */
+public class PerformanceHud {
+
+    /* Time between updates of the numbers shown, in nanoseconds */
+    private static final long UPDATE_NANOS = 500000000L;
+
+    private static final int FPS = 0;
+    private static final int TICK = 1;
+    private static final int PAINT = 2;
+    private static final int PROJECTILES = 3;
+    private static final int ENEMIES = 4;
+    private static final int ALLOC = 5;
+
+    /* Label and unit of each line; the number is written in between */
+    private static final String[] LABELS = {
+        "fps      ", "tick     ", "paint    ", "proj     ", "enemies  ", "alloc    "
+    };
+    private static final String[] UNITS = {"", " ms", " ms", "", "", " MB/s"};
+    private static final int LINE_CAPACITY = 40;
+
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.BOLD, 12);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+    private static final int WIDTH = 160;
+    private static final int LINE_HEIGHT = 14;
+    private static final int MARGIN = 6;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final char[][] lines = new char[LABELS.length][LINE_CAPACITY];
+    private final int[] lengths = new int[LABELS.length];
+
+    private boolean visible = false;
+
+    /* Totals since the numbers were last updated */
+    private long windowStart;
+    private int frames;
+    private int ticks;
+    private long tickNanos;
+    private long paintNanos;
+    private long windowAllocatedBytes;
+
+    /* Bytes allocated by the game thread so far, as last recorded, -1 if not known */
+    private long allocatedBytes = -1;
+
+    /**
+     * Constructor
+     */
+    public PerformanceHud() {
+        for (int i = 0; i < LABELS.length; i++) {
+            LABELS[i].getChars(0, LABELS[i].length(), lines[i], 0);
+            lengths[i] = LABELS[i].length();
+        }
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public void toggleVisible() {
+        visible = !visible;
+        windowStart = 0;
+    }
+
+    /**
+     * Records how long a time step took
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void recordTick(long nanos) {
+        ticks++;
+        tickNanos += nanos;
+    }
+
+    /**
+     * Records how long a number of time steps took together
+     *
+     * @param count number of time steps
+     *        nanos total duration in nanoseconds
+     */
+    public void recordTicks(long count, long nanos) {
+        ticks += count;
+        tickNanos += nanos;
+    }
+
+    /**
+     * Records how many bytes the game thread has allocated so far
+     *
+     * @param bytes total as returned by getCurrentThreadAllocatedBytes() on the game thread
+     */
+    public void recordAllocatedBytes(long bytes) {
+        allocatedBytes = bytes;
+    }
+
+    /**
+     * @return Number of bytes the calling thread has allocated so far, -1 if the JVM cannot tell
+     */
+    public static long getCurrentThreadAllocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Records how long drawing a frame took
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void recordPaint(long nanos) {
+        frames++;
+        paintNanos += nanos;
+    }
+
+    /**
+     * Draws the overlay in the upper-left corner, updating its numbers if they are due
+     *
+     * @param g The <code>Graphics</code> context used for drawing the overlay
+     *        room room the main character is in
+     */
+    public void draw(Graphics g, Room room) {
+        draw(g, room.getProjectileCount(), room.getEnemyCount());
+    }
+
+    /**
+     * Draws the overlay in the upper-left corner, updating its numbers if they are due
+     *
+     * @param g The <code>Graphics</code> context used for drawing the overlay
+     *        projectiles number of projectiles in the room the main character is in
+     *        enemies number of enemies in that room
+     */
+    public void draw(Graphics g, int projectiles, int enemies) {
+        update(System.nanoTime(), projectiles, enemies);
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, WIDTH, lines.length * LINE_HEIGHT + 2 * MARGIN);
+        g.setColor(Color.WHITE);
+        g.setFont(FONT);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawChars(lines[i], 0, lengths[i], MARGIN, MARGIN + (i + 1) * LINE_HEIGHT - 3);
+        }
+    }
+
+    /**
+     * Updates the numbers if UPDATE_NANOS have passed since the last update
+     *
+     * @param now current time in nanoseconds
+     *        room room the main character is in
+     */
+    void update(long now, Room room) {
+        update(now, room.getProjectileCount(), room.getEnemyCount());
+    }
+
+    private void update(long now, int projectiles, int enemies) {
+        long allocated = allocatedBytes;
+        if (windowStart == 0) {
+            startWindow(now, allocated);
+            return;
+        }
+        long elapsed = now - windowStart;
+        if (elapsed < UPDATE_NANOS) {
+            return;
+        }
+        setNumber(FPS, frames * 10000000000L / elapsed, 1);
+        setNumber(TICK, ticks == 0 ? 0 : tickNanos / ticks / 1000, 3);
+        setNumber(PAINT, frames == 0 ? 0 : paintNanos / frames / 1000, 3);
+        setNumber(PROJECTILES, projectiles, 0);
+        setNumber(ENEMIES, enemies, 0);
+        if (allocated < 0 || windowAllocatedBytes < 0) {
+            setNumber(ALLOC, -1, 0);
+        } else {
+            // bytes per second to tenths of megabytes per second
+            setNumber(ALLOC, (allocated - windowAllocatedBytes) * 10000L / elapsed, 1);
+        }
+        startWindow(now, allocated);
+    }
+
+    private void startWindow(long now, long allocated) {
+        windowStart = now;
+        windowAllocatedBytes = allocated;
+        frames = 0;
+        ticks = 0;
+        tickNanos = 0;
+        paintNanos = 0;
+    }
+
+    /**
+     * Writes a number and its unit after the label of a line
+     *
+     * @param line line to write
+     *        value number to write, scaled by 10^decimals; negative if not available
+     *        decimals number of digits after the decimal point
+     */
+    private void setNumber(int line, long value, int decimals) {
+        char[] buf = lines[line];
+        int pos = LABELS[line].length();
+        if (value < 0) {
+            buf[pos++] = '-';
+            lengths[line] = pos;
+            return;
+        }
+        pos = writeDecimal(buf, pos, value, decimals);
+        String unit = UNITS[line];
+        unit.getChars(0, unit.length(), buf, pos);
+        lengths[line] = pos + unit.length();
+    }
+
+    /**
+     * Writes a non-negative fixed-point number into a character buffer
+     *
+     * @param buf buffer to write into
+     *        pos position in the buffer to start writing at
+     *        value number scaled by 10^decimals
+     *        decimals number of digits after the decimal point
+     * @return Position after the last character written
+     */
+    static int writeDecimal(char[] buf, int pos, long value, int decimals) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, decimals + 1);
+        int end = pos + digits + (decimals > 0 ? 1 : 0);
+        int p = end;
+        for (int d = 0; d < digits; d++) {
+            if (decimals > 0 && d == decimals) {
+                buf[--p] = '.';
+            }
+            buf[--p] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * @param line number of a line of the overlay
+     * @return Text of the line, for testing
+     */
+    String getLine(int line) {
+        return new String(lines[line], 0, lengths[line]);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,377 @@
+import java.awt.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Holds every projectile that has been fired by Blob or enemies.
+ *
+ * Projectiles are not objects: each projectile is an index into parallel arrays of positions,
+ * velocities, radii, owner types and the characters that fired them. Removing a projectile moves
+ * the last projectile into its place, so the projectiles always fill indices 0 to size() - 1. The
+ * arrays are created with enough room for a full screen of projectiles and only grow past that, so
+ * firing and removing projectiles normally creates no objects at all.
+ */
+@SuppressWarnings("serial")
+public class ProjectileStore implements Serializable {
+
+    /* Types of owners of projectiles, which decide who a projectile hurts and how it looks */
+    public static final int BLOB = 0;
+    public static final int ENEMY = 1;
+    public static final int BOSS = 2;
+
+    public static final int PROJECTILE_VELOCITY = 8;
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /* Image and radius used for collisions for each owner type */
+    private static final Sprite[] SPRITES = {
+        Sprite.BLOB_PROJECTILE, Sprite.ENEMY_PROJECTILE, Sprite.BOSS_PROJECTILE
+    };
+    private static final int[] RADII = {8, 8, 10};
+
+    /* Collision layer of the projectiles of each owner type (see CollisionLayers) */
+    private static final int[] LAYERS = {
+        CollisionLayers.BLOB_PROJECTILE, CollisionLayers.ENEMY_PROJECTILE,
+        CollisionLayers.ENEMY_PROJECTILE
+    };
+
+    /*
+     * Upper-left corner of each projectile before and after the last time step, velocity,
+     * radius, owner type and the character that fired it, which it never hits; only the first
+     * size entries are saved (see writeObject())
+     */
+    private transient int[] px;
+    private transient int[] py;
+    private transient int[] prevPx;
+    private transient int[] prevPy;
+    private transient int[] vx;
+    private transient int[] vy;
+    private transient int[] radius;
+    private transient byte[] owner;
+    private transient GameObj[] shooter;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param capacity number of projectiles that can be held before the arrays have to grow
+     */
+    public ProjectileStore(int capacity) {
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        capacity = Math.max(capacity, 1);
+        px = new int[capacity];
+        py = new int[capacity];
+        prevPx = new int[capacity];
+        prevPy = new int[capacity];
+        vx = new int[capacity];
+        vy = new int[capacity];
+        radius = new int[capacity];
+        owner = new byte[capacity];
+        shooter = new GameObj[capacity];
+    }
+
+    /**
+     * Saves the projectiles without the unused part of the arrays
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < size; i++) {
+            out.writeInt(px[i]);
+            out.writeInt(py[i]);
+            out.writeInt(prevPx[i]);
+            out.writeInt(prevPy[i]);
+            out.writeInt(vx[i]);
+            out.writeInt(vy[i]);
+            out.writeInt(radius[i]);
+            out.writeByte(owner[i]);
+            // enemies are saved with their room, Blob is not and leaves the room when it is saved
+            out.writeObject((shooter[i] instanceof Enemy) ? shooter[i] : null);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        allocate(Math.max(size, DEFAULT_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            px[i] = in.readInt();
+            py[i] = in.readInt();
+            prevPx[i] = in.readInt();
+            prevPy[i] = in.readInt();
+            vx[i] = in.readInt();
+            vy[i] = in.readInt();
+            radius[i] = in.readInt();
+            owner[i] = in.readByte();
+            shooter[i] = (GameObj) in.readObject();
+        }
+    }
+
+    /**
+     * Fires a projectile
+     *
+     * @param ownerType type of the object that fired the projectile (BLOB, ENEMY or BOSS)
+     *        x x coordinate of the center of the projectile
+     *        y y coordinate of the center of the projectile
+     *        d1 direction that the projectile moves in, must not be null
+     *        d2 secondary direction, overrides d1 if in the same axis (x or y), can be null
+     * @return Index of the new projectile
+     */
+    public int spawn(int ownerType, int x, int y, Direction d1, Direction d2) {
+        return spawn(ownerType, null, x, y, d1, d2);
+    }
+
+    /**
+     * Fires a projectile that never hits the character that fired it
+     *
+     * @param ownerType type of the object that fired the projectile (BLOB, ENEMY or BOSS)
+     *        from the character that fired the projectile, null if none
+     *        x x coordinate of the center of the projectile
+     *        y y coordinate of the center of the projectile
+     *        d1 direction that the projectile moves in, must not be null
+     *        d2 secondary direction, overrides d1 if in the same axis (x or y), can be null
+     * @return Index of the new projectile
+     */
+    public int spawn(int ownerType, GameObj from, int x, int y, Direction d1, Direction d2) {
+        if (size == px.length) {
+            grow();
+        }
+        int i = size++;
+        int r = RADII[ownerType];
+        px[i] = x - r;
+        py[i] = y - r;
+        prevPx[i] = px[i];
+        prevPy[i] = py[i];
+        vx[i] = 0;
+        vy[i] = 0;
+        radius[i] = r;
+        owner[i] = (byte) ownerType;
+        shooter[i] = from;
+        setVelocity(i, d1);
+        if (d2 != null) {
+            setVelocity(i, d2);
+        }
+        return i;
+    }
+
+    private void setVelocity(int i, Direction d) {
+        switch (d) {
+        case UP:
+            vy[i] = -PROJECTILE_VELOCITY;
+            break;
+        case DOWN:
+            vy[i] = PROJECTILE_VELOCITY;
+            break;
+        case LEFT:
+            vx[i] = -PROJECTILE_VELOCITY;
+            break;
+        case RIGHT:
+            vx[i] = PROJECTILE_VELOCITY;
+            break;
+        }
+    }
+
+    private void grow() {
+        int capacity = px.length * 2;
+        px = Arrays.copyOf(px, capacity);
+        py = Arrays.copyOf(py, capacity);
+        prevPx = Arrays.copyOf(prevPx, capacity);
+        prevPy = Arrays.copyOf(prevPy, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        owner = Arrays.copyOf(owner, capacity);
+        shooter = Arrays.copyOf(shooter, capacity);
+    }
+
+    /**
+     * Removes a projectile by moving the last projectile into its place
+     *
+     * @param i index of the projectile to remove
+     */
+    public void remove(int i) {
+        int last = --size;
+        if (i != last) {
+            px[i] = px[last];
+            py[i] = py[last];
+            prevPx[i] = prevPx[last];
+            prevPy[i] = prevPy[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            radius[i] = radius[last];
+            owner[i] = owner[last];
+            shooter[i] = shooter[last];
+        }
+        shooter[last] = null;
+    }
+
+    /**
+     * Removes all projectiles
+     */
+    public void clear() {
+        Arrays.fill(shooter, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Moves a projectile by its velocity, clipped to the court like GameObj.move()
+     *
+     * @param i index of the projectile
+     */
+    public void move(int i) {
+        int max = 2 * radius[i];
+        prevPx[i] = px[i];
+        prevPy[i] = py[i];
+        px[i] = Math.min(Math.max(px[i] + vx[i], 0), GameCourt.COURT_WIDTH - max);
+        py[i] = Math.min(Math.max(py[i] + vy[i], 0), GameCourt.COURT_HEIGHT - max);
+    }
+
+    /**
+     * Determine whether a projectile will hit a wall in the next time step
+     *
+     * @param i index of the projectile
+     * @return Whether the projectile will hit a wall
+     */
+    public boolean hitsWall(int i) {
+        int max = 2 * radius[i];
+        int nextX = px[i] + vx[i];
+        int nextY = py[i] + vy[i];
+        return nextX < 0 || nextX > GameCourt.COURT_WIDTH - max ||
+               nextY < 0 || nextY > GameCourt.COURT_HEIGHT - max;
+    }
+
+    /**
+     * Determine whether a projectile is currently intersecting a game object, in the same way as
+     * GameObj.intersects()
+     *
+     * @param i index of the projectile
+     *        that the game object
+     * @return Whether the projectile intersects the object
+     */
+    public boolean intersects(int i, GameObj that) {
+        long dx = (px[i] + radius[i]) - (that.getPx() + that.getRadius());
+        long dy = (py[i] + radius[i]) - (that.getPy() + that.getRadius());
+        long reach = Math.abs(radius[i] + that.getRadius());
+        return dx * dx + dy * dy <= reach * reach;
+    }
+
+    /**
+     * Determine whether two projectiles are currently intersecting, in the same way as
+     * GameObj.intersects()
+     *
+     * @param i index of a projectile
+     *        j index of another projectile
+     * @return Whether the projectiles intersect
+     */
+    public boolean intersects(int i, int j) {
+        long dx = (px[i] + radius[i]) - (px[j] + radius[j]);
+        long dy = (py[i] + radius[i]) - (py[j] + radius[j]);
+        long reach = radius[i] + radius[j];
+        return dx * dx + dy * dy <= reach * reach;
+    }
+
+    /*** GETTERS **********************************************************************************/
+
+    public int size() {
+        return size;
+    }
+
+    public int getPx(int i) {
+        return px[i];
+    }
+
+    public int getPy(int i) {
+        return py[i];
+    }
+
+    public int getVx(int i) {
+        return vx[i];
+    }
+
+    public int getVy(int i) {
+        return vy[i];
+    }
+
+    public int getRadius(int i) {
+        return radius[i];
+    }
+
+    /**
+     * @param ownerType type of the object firing a projectile (BLOB, ENEMY or BOSS)
+     * @return Radius of the projectiles it fires
+     */
+    public static int radiusOf(int ownerType) {
+        return RADII[ownerType];
+    }
+
+    public int getOwner(int i) {
+        return owner[i];
+    }
+
+    /**
+     * @return Collision layer of a projectile, decided by its owner type
+     */
+    public int getLayer(int i) {
+        return LAYERS[owner[i]];
+    }
+
+    /**
+     * @return Character that fired a projectile, null if none
+     */
+    public GameObj getShooter(int i) {
+        return shooter[i];
+    }
+
+    /**
+     * @return Number of projectiles that can be held before the arrays have to grow
+     */
+    public int getCapacity() {
+        return px.length;
+    }
+
+    /**
+     * Grows a rectangle to cover everywhere a projectile can be drawn until the next time step
+     *
+     * @param bounds rectangle to grow, see GameObj.addMovingBounds()
+     *        dx added to the x coordinates
+     *        dy added to the y coordinates
+     */
+    public void addMovingBounds(Rectangle bounds, int dx, int dy) {
+        for (int i = 0; i < size; i++) {
+            int drawSize = SPRITES[owner[i]].getSize();
+            bounds.add(Math.min(prevPx[i], px[i]) + dx, Math.min(prevPy[i], py[i]) + dy);
+            bounds.add(Math.max(prevPx[i], px[i]) + drawSize + dx,
+                       Math.max(prevPy[i], py[i]) + drawSize + dy);
+        }
+    }
+
+    /**
+     * Adds every projectile to a snapshot, at its previous and current position
+     *
+     * @param snapshot snapshot being filled
+     *        dx added to the x coordinates, to convert them to the coordinates of the room
+     *        dy added to the y coordinates
+     */
+    public void addTo(WorldSnapshot snapshot, int dx, int dy) {
+        for (int i = 0; i < size; i++) {
+            snapshot.add(SPRITES[owner[i]], prevPx[i] + dx, prevPy[i] + dy, px[i] + dx,
+                         py[i] + dy);
+        }
+    }
+
+    /**
+     * Draws every projectile
+     *
+     * @param g The <code>Graphics</code> context used for drawing the projectiles
+     */
+    public void draw(Graphics g) {
+        SpriteAtlas atlas = SpriteAtlas.get();
+        for (int i = 0; i < size; i++) {
+            atlas.draw(g, SPRITES[owner[i]], GameObj.interpolate(prevPx[i], px[i]),
+                       GameObj.interpolate(prevPy[i], py[i]));
+        }
+    }
+}
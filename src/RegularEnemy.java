@@ -1,32 +1,18 @@
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 /**
  * Enemy that is represented by red rounded triangular image
  */
+@SuppressWarnings("serial")
 public abstract class RegularEnemy extends Enemy {
     
-    private static final String IMG_FILE_RIGHT = "files/EnemyRight.png";
-    private static final String IMG_FILE_LEFT = "files/EnemyLeft.png";
-    private static final String IMG_FILE_RIGHT_HIT = "files/EnemyRightHit.png";
-    private static final String IMG_FILE_LEFT_HIT = "files/EnemyLeftHit.png";
-	private static final String IMG_FILE_PROJECTILE = "files/EnemyProjectile.png";
-	
 	private static final int NUM_LIVES = 4;
 	
 	/* Size of image and radius used for collisions */
     public static final int SIZE = 60;
-    private static final int RADIUS = 30;
+    public static final int RADIUS = 30;
 
-    private static BufferedImage img;
-    private static BufferedImage imgRight;
-    private static BufferedImage imgLeft;
-    private static BufferedImage imgRightHit;
-    private static BufferedImage imgLeftHit;
-	private static BufferedImage imgProj;
+    private Sprite sprite = Sprite.ENEMY_RIGHT;
 	
 	/* true if instance is set to display the RegularEnemy facing left */
 	private boolean directionSetLeft = false;
@@ -36,17 +22,6 @@ public abstract class RegularEnemy extends Enemy {
     */
     public RegularEnemy(int velocity, int px, int py) {
         super(velocity, px, py, SIZE, RADIUS, NUM_LIVES);
-        try {
-            if (imgRight == null) {
-                imgRight = ImageIO.read(new File(IMG_FILE_RIGHT));
-                imgLeft = ImageIO.read(new File(IMG_FILE_LEFT));
-                imgRightHit = ImageIO.read(new File(IMG_FILE_RIGHT_HIT));
-                imgLeftHit = ImageIO.read(new File(IMG_FILE_LEFT_HIT));
-				imgProj = ImageIO.read(new File(IMG_FILE_PROJECTILE));
-            }
-        } catch (IOException e) {
-            System.out.println("IOException: " + e.getMessage());
-        }
     }
     
 	/**
@@ -58,12 +33,17 @@ public abstract class RegularEnemy extends Enemy {
 	
     @Override
     public void draw(Graphics g) {
+        SpriteAtlas.get().draw(g, getSprite(), this.getDrawPx(), this.getDrawPy());
+    }
+    
+    @Override
+    protected Sprite getSprite() {
         if (this.isHurt()) {
-            drawLeftOrRight(imgLeftHit, imgRightHit);
+            drawLeftOrRight(Sprite.ENEMY_LEFT_HIT, Sprite.ENEMY_RIGHT_HIT);
         } else {
-            drawLeftOrRight(imgLeft, imgRight);
+            drawLeftOrRight(Sprite.ENEMY_LEFT, Sprite.ENEMY_RIGHT);
         }
-        g.drawImage(img, this.getPx(), this.getPy(), SIZE, SIZE, null);
+        return sprite;
     }
 	
 	/**
@@ -73,54 +53,70 @@ public abstract class RegularEnemy extends Enemy {
      *        rightImage image of RegularEnemy facing right, either squished or not
      *        d direction that RegularEnemy is currently moving
      */
-    private void drawLeftOrRight(BufferedImage leftImage, BufferedImage rightImage) {
+    private void drawLeftOrRight(Sprite leftImage, Sprite rightImage) {
 		if (directionSetLeft || this.getVx() < 0) {
-			img = leftImage;
+			sprite = leftImage;
         } else {
-            img = rightImage;
+            sprite = rightImage;
         }
     }
 	
 	/**
-     * Fires a projectile from RegularEnemy
-     * @param roomHandler the instance of the RoomHandler that controls the environment of the game
-     *        d1 main direction that the projectile should be fired in
+     * Fires a projectile from RegularEnemy into its room
+     * @param d1 main direction that the projectile should be fired in
      *        d2 secondary direction that the projectile should be fired in 
      *           (null if no secondary direction)
      */
     public void fire(Direction d1, Direction d2) {
-        int x = this.getPxCenter();
-        int y = this.getPyCenter();
-        Room.addProjectile((Projectile) new RegularEnemyProjectile(x, y, d1, d2));
+        this.spawnProjectile(ProjectileStore.ENEMY, d1, d2);
+    }
+
+	/**
+     * Fires a projectile from RegularEnemy into its room, unless a boulder would stop it before it
+     * gets as close to the main character as it ever will, in which case the shot is only counted
+     * as skipped by the room
+     * @param d1 main direction that the projectile should be fired in
+     *        d2 secondary direction that the projectile should be fired in 
+     *           (null if no secondary direction)
+     *        blob the main character of the game, null if it is not in the same room
+     * @return Whether the projectile was fired
+     */
+    public boolean fireUnlessBlocked(Direction d1, Direction d2, Blob blob) {
+        Room room = this.getRoom();
+        if (room == null || blob == null) {
+            this.fire(d1, d2);
+            return true;
+        }
+        // velocity of the projectile, with d2 overriding d1 in the same axis as in ProjectileStore
+        int dx = stepX(d2, stepX(d1, 0));
+        int dy = stepY(d2, stepY(d1, 0));
+        int srcX = this.getPxCenter();
+        int srcY = this.getPyCenter();
+        // the projectile is closest to the main character where it passes its center
+        int t = ((blob.getPxCenter() - srcX) * dx + (blob.getPyCenter() - srcY) * dy)
+                / (dx * dx + dy * dy);
+        if (t > 0 && !room.hasLineOfSight(srcX, srcY, srcX + t * dx, srcY + t * dy)) {
+            room.skipShot();
+            return false;
+        }
+        this.fire(d1, d2);
+        return true;
+    }
+
+    private static int stepX(Direction d, int otherwise) {
+        return (d == Direction.LEFT) ? -1 : (d == Direction.RIGHT) ? 1 : otherwise;
+    }
+
+    private static int stepY(Direction d, int otherwise) {
+        return (d == Direction.UP) ? -1 : (d == Direction.DOWN) ? 1 : otherwise;
     }
 	
 	/**
      * Default advance method that updates the velocity and state of the RegularEnemy
      * 
-     * @param blob the main character of the game, used by some RegularEnemies
+     * @param blob the main character of the game, used by some RegularEnemies, null if it is not
+     *             in the same room
      */
 	public abstract void advance(Blob blob);
 	
-	/**
-	 * Projectile associated with Blob
-	 */
-	public class RegularEnemyProjectile extends Projectile {
-
-		public static final int SIZE = 16;
-		public static final int RADIUS = 8;
-
-		/**
-		 * Constructor
-		 */
-		public RegularEnemyProjectile(int x, int y, Direction d1, Direction d2) {
-			super(x - RADIUS, y - RADIUS, SIZE, RADIUS, d1, d2);
-		}
-
-		@Override
-		public void draw(Graphics g) {
-			g.drawImage(imgProj, this.getPx(), this.getPy(), this.getWidth(), this.getHeight(), null);
-		}
-
-	}
-	
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * Plays a replay file written by ReplayRecorder by resetting a GameEngine with the recorded seed
+ * and giving it the recorded input on the recorded ticks. The engine is ticked as fast as possible,
+ * so any moment of a game can be reached in milliseconds.
+ *
+ * Usage: java ReplayPlayer replayFile [tick] [image.png]
+ * Plays the replay up to the given tick (or to the end), prints the state of the game and
+ * optionally saves the frame at that tick as an image.
+ */
+public class ReplayPlayer {
+
+    private final long seed;
+    private final int flags;
+    private final long totalTicks;
+    private final long[] ticks;
+    private final byte[] codes;
+
+    /**
+     * Reads a replay
+     *
+     * @param in stream in the replay file format
+     */
+    public ReplayPlayer(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != ReplayRecorder.MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        byte version = data.readByte();
+        if (version != ReplayRecorder.VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        this.seed = data.readLong();
+        this.flags = data.readUnsignedByte();
+        this.totalTicks = data.readLong();
+        int size = data.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt replay file");
+        }
+        this.ticks = new long[size];
+        this.codes = new byte[size];
+        long tick = 0;
+        for (int i = 0; i < size; i++) {
+            tick += readVarLong(data);
+            ticks[i] = tick;
+            codes[i] = data.readByte();
+        }
+    }
+
+    /**
+     * Reads a replay file
+     *
+     * @param file replay file
+     */
+    public static ReplayPlayer load(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return new ReplayPlayer(in);
+        }
+    }
+
+    /**
+     * Resets the engine to the start of the recorded game and plays the given number of ticks
+     *
+     * @param engine engine to play the replay with
+     *        untilTick number of ticks to play
+     */
+    public void play(GameEngine engine, long untilTick) {
+        engine.setBackgroundSimulation(isBackgroundSimulation());
+        engine.reset(seed);
+        Direction[] directions = Direction.values();
+        int next = 0;
+        for (long t = 0; t < untilTick; t++) {
+            while (next < ticks.length && ticks[next] == t) {
+                int type = codes[next] >> 2;
+                Direction d = directions[codes[next] & 3];
+                switch (type) {
+                case ReplayRecorder.PRESS_MOVE:
+                    engine.pressMove(d);
+                    break;
+                case ReplayRecorder.RELEASE_MOVE:
+                    engine.releaseMove(d);
+                    break;
+                case ReplayRecorder.FIRE:
+                    engine.fire(d);
+                    break;
+                case ReplayRecorder.TOGGLE_PAUSE:
+                    engine.togglePause();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown replay event " + type);
+                }
+                next++;
+            }
+            engine.tick();
+        }
+    }
+
+    /**
+     * Plays the whole replay
+     *
+     * @param engine engine to play the replay with
+     */
+    public void play(GameEngine engine) {
+        play(engine, totalTicks);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return Whether the recorded game advanced rooms in the background
+     */
+    public boolean isBackgroundSimulation() {
+        return (flags & ReplayRecorder.FLAG_BACKGROUND_SIMULATION) != 0;
+    }
+
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Corrupt replay file");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java ReplayPlayer replayFile [tick] [image.png]");
+            return;
+        }
+        ReplayPlayer player = load(new File(args[0]));
+        long untilTick = args.length > 1 ? Long.parseLong(args[1]) : player.getTotalTicks();
+
+        GameEngine engine = new GameEngine(player.getSeed());
+        long start = System.nanoTime();
+        player.play(engine, untilTick);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        Blob blob = engine.getBlob();
+        System.out.printf("tick %d of %d in %.1f ms: blob at (%d, %d), status \"%s\"%n",
+                          engine.getTickCount(), player.getTotalTicks(), millis, blob.getPx(),
+                          blob.getPy(), engine.getStatus());
+
+        if (args.length > 2) {
+            BufferedImage frame = new BufferedImage(GameCourt.ROOM_WIDTH, GameCourt.ROOM_HEIGHT,
+                                                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = frame.createGraphics();
+            engine.draw(g);
+            g.dispose();
+            ImageIO.write(frame, "png", new File(args[2]));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Records every input given to a GameEngine together with the tick on which it was given, the
+ * seed of the game and the engine settings that change how the game plays, which is everything
+ * needed to play the game again exactly (see ReplayPlayer).
+ *
+ * Replay file format (big endian):
+ *  int   MAGIC
+ *  byte  VERSION
+ *  long  seed
+ *  byte  settings (FLAG_BACKGROUND_SIMULATION)
+ *  long  number of ticks recorded
+ *  int   number of events
+ *  per event: the number of ticks since the previous event as a variable length integer (7 bits
+ *             per byte, high bit set if more bytes follow), then one byte holding the event type
+ *             in the upper bits and the ordinal of the direction in the lower two bits
+ */
+public class ReplayRecorder {
+
+    public static final int MAGIC = 0x424C5250; // "BLRP"
+    public static final byte VERSION = 2;
+
+    /* Bits of the settings byte */
+    public static final int FLAG_BACKGROUND_SIMULATION = 1;
+
+    /* Types of input events */
+    public static final int PRESS_MOVE = 0;
+    public static final int RELEASE_MOVE = 1;
+    public static final int FIRE = 2;
+    public static final int TOGGLE_PAUSE = 3;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long seed;
+    private boolean backgroundSimulation;
+    private long lastTick;
+
+    /* Recorded events, as parallel arrays to avoid creating an object per key press */
+    private long[] ticks = new long[INITIAL_CAPACITY];
+    private byte[] codes = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Throws away everything recorded so far and starts recording a new game
+     *
+     * @param seed seed of the game being recorded
+     *        backgroundSimulation whether the engine advances rooms in the background
+     */
+    public void start(long seed, boolean backgroundSimulation) {
+        this.seed = seed;
+        this.backgroundSimulation = backgroundSimulation;
+        this.lastTick = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Records an input event
+     *
+     * @param tick number of ticks the game had run when the input was given
+     *        type type of input event
+     *        d direction of the input, null if the event has none
+     */
+    public void record(long tick, int type, Direction d) {
+        if (size == ticks.length) {
+            ticks = Arrays.copyOf(ticks, size * 2);
+            codes = Arrays.copyOf(codes, size * 2);
+        }
+        ticks[size] = tick;
+        codes[size] = encode(type, d);
+        size++;
+        lastTick = Math.max(lastTick, tick);
+    }
+
+    /**
+     * @return Number of events recorded since the game started
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Writes the recording to a replay file
+     *
+     * @param file file to write to
+     *        totalTicks number of ticks the game ran for
+     */
+    public void save(File file, long totalTicks) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(out, totalTicks);
+        }
+    }
+
+    /**
+     * Writes the recording in the replay file format
+     *
+     * @param out stream to write to
+     *        totalTicks number of ticks the game ran for
+     */
+    public void write(OutputStream out, long totalTicks) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(seed);
+        data.writeByte(backgroundSimulation ? FLAG_BACKGROUND_SIMULATION : 0);
+        data.writeLong(Math.max(totalTicks, lastTick));
+        data.writeInt(size);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarLong(data, ticks[i] - previous);
+            data.writeByte(codes[i]);
+            previous = ticks[i];
+        }
+        data.flush();
+    }
+
+    /**
+     * Packs an event type and direction into a single byte
+     */
+    static byte encode(int type, Direction d) {
+        return (byte) ((type << 2) | (d == null ? 0 : d.ordinal()));
+    }
+
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+}
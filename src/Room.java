@@ -1,62 +1,148 @@
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import javax.imageio.ImageIO;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Iterator;
 
 // draws itself but cannot advance anything or do anything with enemies
-public class Room {
+@SuppressWarnings("serial")
+public class Room implements Serializable {
 	
-	/* Image that gets displayed when enemy dies */
-	private static BufferedImage imgSplat;
+	/* Image files for room: either doors are open or closed; loaded when first drawn */
+    private String imgFileOpen;
+	private String imgFileClosed;
 	
-	/* Images for room: either doors are open or closed */
-    private BufferedImage imgOpen;
-	private BufferedImage imgClosed;
+	/* All projectiles that have been fired by Blob or Enemies in this room */
+    private ProjectileStore projectiles;
 	
-	/* Linked list of all projectiles that have been fired by Blob or Enemies */
-    private static List<Projectile> projectiles = new LinkedList<>();
+	/* Enemies in room, in the order they were added, with their positions, velocities, health
+	 * and other state in arrays that the systems of the store update in one pass over them all */
+	private EntityStore enemies;
 	
-	/* LinkedList of enemies, boulders, and blood splats in room */
-    private List<Enemy> enemies;
+	/* LinkedList of boulders and blood splats in room, which never move and so share one store
+	 * instead of each having one of their own */
     private List<Boulder> boulders;
 	private List<EnemyBloodSplat> enemyBloodSplats;
+	private EntityStore statics;
+	
+	/* Which collision layers interact in this room (see CollisionLayers) */
+	private CollisionLayers layers = CollisionLayers.DEFAULT;
+	
+	/* Grid holding the boulders, enemies and blob during a time step, used to only test each
+	 * projectile against the objects near it; not saved with the room (see WorldMap) */
+	private static final int GRID_CELL_SIZE = 64;
+	private transient SpatialGrid grid = createGrid();
+	
+	/* Ways to the main character around the boulders, shared by the FollowingEnemies of the room;
+	 * made when first asked for, and not saved with the room */
+	private transient FlowField flowField;
+	
+	/* Which places in the room enemies can shoot between without hitting a boulder; made when
+	 * first asked for, and not saved with the room */
+	private transient LineOfSight lineOfSight;
+	
+	/* Indices of the enemies held back in the current time step, see findBlockedEnemies() */
+	private transient int[] blocked;
+	
+	/* Number of exact collision tests done for projectiles in the last time step, and the number
+	 * that testing every projectile against every boulder and enemy (or blob) would have taken */
+	private int narrowPhaseTests;
+	private int bruteForceTests;
+	
+	/* Number of enemy projectiles stopped by a boulder in the last time step, and the number of
+	 * shots enemies held back in it because a boulder was in the way */
+	private int projectilesBlocked;
+	private int shotsSkipped;
+	
+	/* Time taken by the last call to advance(), in nanoseconds; not saved with the room */
+	private transient volatile long lastAdvanceNanos;
+	
+	/* Number of times a boulder or blood splat has been added, see getStaticVersion() */
+	private int staticChanges;
+	
+	/* The background, blood splats and boulders of the room drawn last; only one room is drawn at
+	 * a time, so all rooms share it */
+	private static final StaticLayer STATIC_LAYER = new StaticLayer();
 
 	/**
      * Constructor
      */
     public Room(String imgFileOpen, String imgFileClosed) {
-        projectiles.clear();
-		try {
-            this.imgOpen = ImageIO.read(new File(imgFileOpen));
-			this.imgClosed = ImageIO.read(new File(imgFileClosed));
-        } catch (IOException e) {
-            System.out.println("IOException: " + e.getMessage());
-        }
-        enemies = new LinkedList<>();
+        projectiles = new ProjectileStore(ProjectileStore.DEFAULT_CAPACITY);
+		this.imgFileOpen = imgFileOpen;
+		this.imgFileClosed = imgFileClosed;
+        enemies = new EntityStore(EntityStore.DEFAULT_CAPACITY);
         boulders = new LinkedList<>();
 		enemyBloodSplats = new LinkedList<>();
+		statics = new EntityStore(EntityStore.DEFAULT_CAPACITY);
     }
 	
+	private static SpatialGrid createGrid() {
+		return new SpatialGrid(GameCourt.COURT_WIDTH, GameCourt.COURT_HEIGHT, GRID_CELL_SIZE);
+	}
+	
 	/**
-     * Adds projectile to game
+     * Restores a room saved with its state, making the grid that is not saved
+     */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		grid = createGrid();
+	}
+	
+	/**
+     * Fires a projectile in this room
      * 
-     * @param projectile projectile to be added to game
+     * @param owner type of the object firing the projectile (see ProjectileStore)
+     *        x x coordinate of the center of the projectile
+     *        y y coordinate of the center of the projectile
+     *        d1 main direction that the projectile should be fired in
+     *        d2 secondary direction that the projectile should be fired in (can be null)
      */
-	public static void addProjectile(Projectile proj) {
-        projectiles.add(proj);
+	public void spawnProjectile(int owner, int x, int y, Direction d1, Direction d2) {
+		spawnProjectile(owner, null, x, y, d1, d2);
 	}
 	
 	/**
-     * Advances everything in the room with reference to projectiles and each other
+     * Fires a projectile in this room that never hits the character firing it
      * 
-     * @param blob     the main character of game controlled by user
-     *        iterProj iterator for all projectiles to advance
+     * @param owner type of the object firing the projectile (see ProjectileStore)
+     *        from the character firing the projectile, null if none
+     *        x x coordinate of the center of the projectile
+     *        y y coordinate of the center of the projectile
+     *        d1 main direction that the projectile should be fired in
+     *        d2 secondary direction that the projectile should be fired in (can be null)
      */
-	public static void clearProjectiles() {
+	public void spawnProjectile(int owner, GameObj from, int x, int y, Direction d1, Direction d2) {
+        projectiles.spawn(owner, from, x, y, d1, d2);
+		if (GameEvents.isRecorderRunning()) {
+			GameEvents.ProjectileSpawn event = new GameEvents.ProjectileSpawn();
+			if (event.shouldCommit()) {
+				event.source = GameEvents.ProjectileSpawn.SOURCES[owner];
+				event.projectiles = projectiles.size();
+				event.commit();
+			}
+		}
+	}
+	
+	/**
+     * Sets which collision layers interact in this room, CollisionLayers.DEFAULT unless set
+     * 
+     * @param layers layers to use from the next time step on
+     */
+	public void setCollisionLayers(CollisionLayers layers) {
+		this.layers = layers;
+	}
+	
+	public CollisionLayers getCollisionLayers() {
+		return layers;
+	}
+	
+	/**
+     * Removes all projectiles in this room
+     */
+	public void clearProjectiles() {
         projectiles.clear();
 	}
 	
@@ -75,16 +161,17 @@ public class Room {
      * @return Whether all enemies in room have been defeated
      */	
 	public boolean enemiesDefeated() {
-        return enemies.isEmpty();
+        return enemies.size() == 0;
     }
 	
 	/**
-     * Adds enemy to room
+     * Adds enemy to room. The enemy fires its projectiles into this room.
      * 
      * @param e enemy to be added to room
      */
     public void addEnemy(Enemy e) {
-        enemies.add(e);
+        e.setRoom(this);
+        e.moveTo(enemies);
     }
 	
 	/**
@@ -93,10 +180,8 @@ public class Room {
      * If no enemies in room, does nothing
      */
     public void removeEnemy() {
-        Iterator<Enemy> iter = enemies.iterator();
-		if (iter.hasNext()) {
-			iter.next();
-			iter.remove();
+		if (enemies.size() > 0) {
+			enemies.get(0).detach();
 		}
     }
 	
@@ -106,19 +191,106 @@ public class Room {
      * @param b boulder to be added to room
      */
     public void addBoulder(Boulder b) {
+		b.moveTo(statics);
         boulders.add(b);
+		staticChanges++;
     }
 	
+	/**
+     * Adds a boulder to room, made straight in the store of the objects of the room that never
+     * move
+     * 
+     * @param x x coordinate of the upper-left corner of the boulder
+     *        y y coordinate of the upper-left corner of the boulder
+     */
+    public void addBoulder(int x, int y) {
+        addBoulder(new Boulder(x, y, statics));
+    }
+	
+	/**
+     * @return Store of the objects of the room that never move, for objects made for the room
+     */
+	protected EntityStore getStaticStore() {
+		return statics;
+	}
+	
+	/**
+     * @param blob the main character of the game
+     * @return Field leading to the main character around the boulders of this room, for
+     *         enemies the size of a RegularEnemy
+     */
+	public FlowField getFlowField(Blob blob) {
+		if (flowField == null) {
+			flowField = new FlowField(GameCourt.COURT_WIDTH, GameCourt.COURT_HEIGHT,
+					RegularEnemy.SIZE, RegularEnemy.RADIUS);
+		}
+		flowField.update(blob.getPx(), blob.getPy(), boulders);
+		return flowField;
+	}
+	
+	/**
+     * Checks whether an enemy projectile could travel between two points without hitting a
+     * boulder, see LineOfSight
+     * 
+     * @param x0 x coordinate of the point the projectile would be fired from
+     *        y0 y coordinate of the point the projectile would be fired from
+     *        x1 x coordinate of the point the projectile should reach
+     *        y1 y coordinate of the point the projectile should reach
+     * @return Whether no boulder is in the way
+     */
+	public boolean hasLineOfSight(int x0, int y0, int x1, int y1) {
+		if (lineOfSight == null) {
+			lineOfSight = new LineOfSight(GameCourt.COURT_WIDTH, GameCourt.COURT_HEIGHT,
+					ProjectileStore.radiusOf(ProjectileStore.ENEMY));
+		}
+		return lineOfSight.isVisible(x0, y0, x1, y1, boulders);
+	}
+	
+	/**
+     * @return The line of sight of the room, null if no enemy has asked for it yet
+     */
+	public LineOfSight getLineOfSight() {
+		return lineOfSight;
+	}
+	
+	/**
+     * Counts a shot that an enemy did not fire because a boulder was in the way
+     */
+	public void skipShot() {
+		shotsSkipped++;
+	}
+	
 	/**
      * Advances everything in the room with reference to projectiles and each other
      * 
-     * @param blob     the main character of game controlled by user
-     *        iterProj iterator for all projectiles to advance
+     * Rooms do not share any state, so different rooms can be advanced on different threads at
+     * the same time.
+     * 
+     * @param blob the main character of game controlled by user, null if the main character is
+     *             not in this room
      */
 	public void advance(Blob blob) {
+		long start = System.nanoTime();
+		// only the room the main character is in is profiled, on the game thread
+		long phase = (blob != null) ? TickProfiler.start() : 0;
+		projectilesBlocked = 0;
+		shotsSkipped = 0;
         advanceProjectiles(blob);
-		advanceBoulders(blob);
+		phase = TickProfiler.record(TickProfiler.PROJECTILES, phase);
+		if (blob != null) {
+			advanceBoulders(blob);
+			phase = TickProfiler.record(TickProfiler.BOULDERS, phase);
+		}
         advanceEnemies(blob);
+		TickProfiler.record(TickProfiler.ENEMIES, phase);
+		lastAdvanceNanos = System.nanoTime() - start;
+	}
+	
+	/**
+     * @return Time taken by the last call to advance(), in nanoseconds
+     */
+	public long getLastAdvanceNanos() {
+		return lastAdvanceNanos;
 	}
 	
 	/**
@@ -129,76 +301,199 @@ public class Room {
      *        iterProj iterator for all projectiles to advance
      */
 	private void advanceProjectiles(Blob blob) {
-		Iterator<Projectile> iterProj = projectiles.iterator();
-		projIteration:
-		while (iterProj.hasNext()) {
-			Projectile proj = iterProj.next();
+		fillGrid(blob);
+		narrowPhaseTests = 0;
+		bruteForceTests = 0;
+		removeProjectilesHittingEachOther();
+		// removing a projectile moves the last one into its place, which is checked next
+		int proj = 0;
+		while (proj < projectiles.size()) {
 			if (projCollidesWall(proj) || projCollidesBoulder(proj) || projCollidesEnemyOrBlob(proj, blob)) {
-				iterProj.remove();
-				continue projIteration;
+				projectiles.remove(proj);
 			} else {
-				proj.move(); 
+				projectiles.move(proj);
+				proj++;
 			}
         }
     }
 	
+	/**
+     * Removes the pairs of projectiles that hit each other, if any collision layers of projectiles
+     * are set to interact (see CollisionLayers); they interact with none by default, in which case
+     * this does nothing. The projectiles are put into the grid and each one is tested against the
+     * projectiles found near it, after those that come before it in the store.
+     */
+	private void removeProjectilesHittingEachOther() {
+		if (((layers.getMask(CollisionLayers.BLOB_PROJECTILE)
+				| layers.getMask(CollisionLayers.ENEMY_PROJECTILE)) & CollisionLayers.PROJECTILES) == 0) {
+			return;
+		}
+		int count = projectiles.size();
+		int first = grid.size();
+		for (int proj = 0; proj < count; proj++) {
+			grid.add(proj, projectiles.getPx(proj), projectiles.getPy(proj),
+					projectiles.getRadius(proj), projectiles.getLayer(proj));
+		}
+		for (int proj = 0; proj < count; proj++) {
+			int entry = first + proj;
+			int mask = layers.getMask(projectiles.getLayer(proj)) & CollisionLayers.PROJECTILES;
+			if (mask == 0 || grid.getLayer(entry) == CollisionLayers.NONE) {
+				continue; // does not hit projectiles, or already hit one
+			}
+			bruteForceTests += count - 1;
+			int hit = -1;
+			int found = queryGrid(proj, mask);
+			for (int k = 0; k < found; k++) {
+				int index = grid.getResult(k);
+				if (index != entry && (hit == -1 || index < hit)) {
+					narrowPhaseTests++;
+					if (projectiles.intersects(proj, grid.getId(index))) {
+						hit = index; // the first projectile in the store that it hits
+					}
+				}
+			}
+			if (hit != -1) {
+				grid.remove(entry);
+				grid.remove(hit);
+			}
+		}
+		// remove the projectiles taken out of the grid from the last, so that the projectile moved
+		// into the place of each one has already been looked at
+		for (int proj = count - 1; proj >= 0; proj--) {
+			if (grid.getLayer(first + proj) == CollisionLayers.NONE) {
+				projectiles.remove(proj);
+			}
+		}
+	}
+	
+	/**
+     * Puts the boulders, enemies and blob into the grid at their current positions
+     * Enemies are added in the order of the store of enemies, so the grid index of an enemy
+     * tells which enemy comes first
+     * 
+     * @param blob the main character of game controlled by user
+     */
+	private void fillGrid(Blob blob) {
+		grid.clear();
+		for (Boulder bould : boulders) {
+			grid.add(bould, bould.getLayer());
+		}
+		for (int i = 0; i < enemies.size(); i++) {
+			GameObj enemy = enemies.get(i);
+			grid.add(enemy, enemies.getPx(i), enemies.getPy(i), enemies.getRadius(i),
+					enemy.getLayer());
+		}
+		if (blob != null) {
+			grid.add(blob, blob.getLayer());
+		}
+	}
+	
+	/**
+     * Finds the objects on the given collision layers near a projectile
+     * 
+     * @param proj index of the projectile to find objects near
+     *        layerMask collision layers of the objects to find
+     * @return Number of objects found, which can be read from the grid
+     */
+	private int queryGrid(int proj, int layerMask) {
+		int diameter = 2 * projectiles.getRadius(proj);
+		return grid.query(projectiles.getPx(proj), projectiles.getPy(proj), diameter, diameter,
+				layerMask);
+	}
+	
 	/**
      * Checks projectile for collision with wall
      * 
-     * @param proj projectile to check for collision with wall
+     * @param proj index of projectile to check for collision with wall
      * @return Whether projectile collides with any boulder
      */
-	private boolean projCollidesWall(Projectile proj) {
-		Direction d = proj.hitWall();
-		return d != null;
+	private boolean projCollidesWall(int proj) {
+		return projectiles.hitsWall(proj);
 	}
 	
 	/**
      * Checks projectile for collision with boulder
      * 
-     * @param proj projectile to check for collision with boulder
+     * @param proj index of projectile to check for collision with boulder
      * @return Whether projectile collides with any boulder
      */
-	private boolean projCollidesBoulder(Projectile proj) {
-		Iterator<Boulder> iterBould = boulders.iterator();
-		while (iterBould.hasNext()) {
-			Boulder bould = iterBould.next();
-			if (proj.intersects(bould)) {
+	private boolean projCollidesBoulder(int proj) {
+		if ((layers.getMask(projectiles.getLayer(proj)) & CollisionLayers.BOULDER) == 0) {
+			return false;
+		}
+		bruteForceTests += boulders.size();
+		int found = queryGrid(proj, CollisionLayers.BOULDER);
+		for (int k = 0; k < found; k++) {
+			narrowPhaseTests++;
+			if (projectiles.intersects(proj, grid.get(grid.getResult(k)))) {
+				if (projectiles.getLayer(proj) == CollisionLayers.ENEMY_PROJECTILE) {
+					projectilesBlocked++;
+				}
 				return true;
-			 }
+			}
 		}
 		return false;
 	}
 	    	
 	/**
-     * Checks projectile for collision with blob or enemy depending on type of projectile
-     * Blob projectiles hurt enemies and Enemy projectiles hurt blob
+     * Checks projectile for collision with the characters on the layers it interacts with
+     * By default Blob projectiles hurt enemies and Enemy projectiles hurt blob (see CollisionLayers),
+     * and a projectile never hits the character that fired it
      * 
-     * @param proj projectile to check for collision with enemy or blob
+     * @param proj index of projectile to check for collision with enemy or blob
      *        blob the main character of the game that the user controls
-     * @return Whether projectile collides with any boulder
+     * @return Whether projectile collides with any character
      */
-	private boolean projCollidesEnemyOrBlob(Projectile proj, Blob blob) {
-		if (proj.getClass().equals(Blob.BlobProjectile.class)) {
-			Iterator<Enemy> iterEn = enemies.iterator();
-			while (iterEn.hasNext()) {
-				Enemy enemy = iterEn.next();
-				if (proj.intersects(enemy)) {
-					if (enemy.removeHealth()) {
-						addEnemyBloodSplat(enemy);
-						iterEn.remove();
-					}
-					return true;
-				 }
-			 }
-		} else if (proj.getClass().equals(RegularEnemy.RegularEnemyProjectile.class) ||
-				   proj.getClass().equals(Boss.BossProjectile.class)) {
-			 if (proj.intersects(blob)) {
-				 blob.removeHalfHealth();
-				 return true;
-			 }
+	private boolean projCollidesEnemyOrBlob(int proj, Blob blob) {
+		int mask = layers.getMask(projectiles.getLayer(proj)) & (CollisionLayers.ENEMY | CollisionLayers.BLOB);
+		if (mask == 0) {
+			return false;
 		}
-		return false;
+		if ((mask & CollisionLayers.ENEMY) != 0) {
+			bruteForceTests += enemies.size();
+		}
+		if ((mask & CollisionLayers.BLOB) != 0 && blob != null) {
+			bruteForceTests++;
+		}
+		// the projectile hits the first character added to the grid that it intersects, i.e. the
+		// first enemy in the store of enemies, or blob, which is added after them
+		int hit = -1;
+		GameObj shooter = projectiles.getShooter(proj);
+		int found = queryGrid(proj, mask);
+		for (int k = 0; k < found; k++) {
+			int index = grid.getResult(k);
+			if (grid.get(index) == shooter) {
+				continue;
+			}
+			narrowPhaseTests++;
+			if ((hit == -1 || index < hit) && projectiles.intersects(proj, grid.get(index))) {
+				hit = index;
+			}
+		}
+		if (hit == -1) {
+			return false;
+		}
+		if (grid.get(hit) == blob) {
+			blob.removeHalfHealth();
+			return true;
+		}
+		Enemy enemy = (Enemy) grid.get(hit);
+		if (enemy.removeHealth()) {
+			addEnemyBloodSplat(enemy);
+			enemy.detach();
+			grid.remove(hit);
+			if (GameEvents.isRecorderRunning()) {
+				GameEvents.EnemyDeath event = new GameEvents.EnemyDeath();
+				if (event.shouldCommit()) {
+					event.enemyType = enemy.getClass().getSimpleName();
+					event.x = enemy.getPx();
+					event.y = enemy.getPy();
+					event.enemiesLeft = enemies.size();
+					event.commit();
+				}
+			}
+		}
+		return true;
 	}
 	
 	
@@ -209,6 +504,9 @@ public class Room {
      * @param blob the main character of game controlled by user
      */
 	private void advanceBoulders(Blob blob) {
+		if ((layers.getMask(blob.getLayer()) & CollisionLayers.BOULDER) == 0) {
+			return;
+		}
 		Iterator<Boulder> iterBould = boulders.iterator();	
 		while (iterBould.hasNext()) {
 			Boulder bould = iterBould.next();
@@ -222,20 +520,155 @@ public class Room {
 	/**
      * Advance all the enemies in the room
      * 
-     * @param blob the main character of game controlled by user
+     * @param blob the main character of game controlled by user, null if not in this room
      */
 	private void advanceEnemies(Blob blob) {
-		Iterator<Enemy> iterEn = enemies.iterator();
-        while (iterEn.hasNext()) {
-            Enemy enemy = iterEn.next();
-            enemy.advance(blob);
-			if (blob.intersects(enemy)) {
-				blob.removeHealth();
+		// each kind of enemy decides where to move and when to fire
+		for (int i = 0; i < enemies.size(); i++) {
+			((Enemy) enemies.get(i)).advance(blob);
+		}
+		// then all enemies are updated in the same way, straight from the arrays of the store;
+		// enemies do not look at each other, so this is the same as updating them one by one
+		enemies.advanceHurtCounters();
+		if (blob != null && (layers.getMask(blob.getLayer()) & CollisionLayers.ENEMY) != 0) {
+			for (int i = 0; i < enemies.size(); i++) {
+				if (enemies.intersects(i, blob)) {
+					blob.removeHealth();
+				}
 			}
-            enemy.move();
-        }
+		}
+		int blockedCount = findBlockedEnemies();
+		enemies.moveAll();
+		for (int k = 0; k < blockedCount; k++) {
+			int i = blocked[k];
+			enemies.setPosition(i, enemies.getPrevPx(i), enemies.getPrevPy(i));
+		}
     }
 	
+	/**
+     * Finds the enemies that would walk into a boulder or another enemy in this time step, if
+     * enemies are set to interact with either (see CollisionLayers); by default they interact with
+     * neither and walk through both. A held back enemy keeps its velocity and only stays where it
+     * is for this time step, as blob does in front of a boulder. An enemy already touching what it
+     * would walk into is not held back, so that enemies placed on top of each other can move apart.
+     * 
+     * @return Number of enemies held back, whose indices are at the start of blocked
+     */
+	private int findBlockedEnemies() {
+		int mask = layers.getMask(CollisionLayers.ENEMY) & (CollisionLayers.ENEMY | CollisionLayers.BOULDER);
+		if (mask == 0) {
+			return 0;
+		}
+		if (blocked == null || blocked.length < enemies.size()) {
+			blocked = new int[Math.max(enemies.size(), EntityStore.DEFAULT_CAPACITY)];
+		}
+		int blockedCount = 0;
+		for (int i = 0; i < enemies.size(); i++) {
+			int nextX = enemies.getPx(i) + enemies.getVx(i);
+			int nextY = enemies.getPy(i) + enemies.getVy(i);
+			int radius = enemies.getRadius(i);
+			GameObj enemy = enemies.get(i);
+			int found = grid.query(nextX, nextY, 2 * radius, 2 * radius, mask);
+			for (int k = 0; k < found; k++) {
+				GameObj that = grid.get(grid.getResult(k));
+				if (that != enemy && touches(nextX, nextY, radius, that)
+						&& !enemies.intersects(i, that)) {
+					blocked[blockedCount++] = i;
+					break;
+				}
+			}
+		}
+		return blockedCount;
+	}
+	
+	/**
+     * Determine whether a circle at the given place intersects a game object, in the same way as
+     * GameObj.intersects()
+     * 
+     * @param px x coordinate of the upper-left corner of the circle
+     *        py y coordinate of the upper-left corner of the circle
+     *        radius radius of the circle
+     *        that the game object
+     * @return Whether the circle intersects the object
+     */
+	private static boolean touches(int px, int py, int radius, GameObj that) {
+		long dx = (px + radius) - (that.getPx() + that.getRadius());
+		long dy = (py + radius) - (that.getPy() + that.getRadius());
+		long reach = radius + that.getRadius();
+		return dx * dx + dy * dy <= reach * reach;
+	}
+	
+	/**
+     * @return Number of projectiles currently in this room
+     */
+	public int getProjectileCount() {
+		return projectiles.size();
+	}
+
+	/**
+     * @return Number of enemies still alive in this room
+     */
+	public int getEnemyCount() {
+		return enemies.size();
+	}
+
+	/**
+     * @return Number of boulders in this room
+     */
+	public int getBoulderCount() {
+		return boulders.size();
+	}
+
+	/**
+     * @return Number that changes whenever something that does not move is added to the room or
+     *         its doors open or close, i.e. whenever its static layer has to be drawn again
+     */
+	public int getStaticVersion() {
+		return 2 * staticChanges + (this.isOpen() ? 1 : 0);
+	}
+	
+	/**
+     * Grows a rectangle to cover everywhere the enemies and projectiles in this room can be drawn
+     * until the next time step, in the coordinates of the room
+     * 
+     * @param bounds rectangle to grow, see GameObj.addMovingBounds()
+     */
+	public void addMovingBounds(Rectangle bounds) {
+		for (int i = 0; i < enemies.size(); i++) {
+			enemies.get(i).addMovingBounds(bounds, GameCourt.BORDER, GameCourt.BORDER);
+		}
+		projectiles.addMovingBounds(bounds, GameCourt.BORDER, GameCourt.BORDER);
+	}
+	
+	/**
+     * @return Number of exact collision tests done for projectiles in the last time step
+     */
+	public int getNarrowPhaseTests() {
+		return narrowPhaseTests;
+	}
+	
+	/**
+     * @return Number of collision tests the last time step would have taken without the grid
+     */
+	public int getBruteForceTests() {
+		return bruteForceTests;
+	}
+	
+	/**
+     * @return Number of enemy projectiles stopped by a boulder in the last time step
+     */
+	public int getProjectilesBlocked() {
+		return projectilesBlocked;
+	}
+	
+	/**
+     * @return Number of shots enemies did not fire in the last time step because a boulder was in
+     *         the way
+     */
+	public int getShotsSkipped() {
+		return shotsSkipped;
+	}
+	
 	/**
      * Adds enemy blood splat to room
      * 
@@ -248,67 +681,101 @@ public class Room {
 		int x = e.getPx() + (int) ((double) (width - ebsSize) / 2);
 		int y = e.getPy() + (int) ((double) (height - ebsSize) / 2);
         enemyBloodSplats.add(new EnemyBloodSplat(x, y));
+		staticChanges++;
     }
     
+	/**
+     * @return Image file of the background the room is drawn with now
+     */
+	public String getBackgroundFile() {
+		return this.isOpen() ? imgFileOpen : imgFileClosed;
+	}
+	
+	/**
+     * Starts loading the backgrounds of the room in the background, so that they are ready when
+     * the room is drawn
+     * 
+     * @param both whether to load the background for both open and closed doors, rather than
+     *             only the one the room is drawn with now
+     */
+	public void prefetchBackgrounds(boolean both) {
+		BackgroundCache cache = BackgroundCache.get();
+		if (both) {
+			cache.prefetch(imgFileOpen);
+			cache.prefetch(imgFileClosed);
+		} else {
+			cache.prefetch(getBackgroundFile());
+		}
+	}
+    
 	/**
      * Draw method for Room
      * 
      * @param g The <code>Graphics</code> context used for drawing the object
      */
     public void draw(Graphics g) {
-		if (this.isOpen()) {
-			g.drawImage(imgOpen, 0, 0, GameCourt.ROOM_WIDTH, GameCourt.ROOM_HEIGHT, null);
-		} else {
-			g.drawImage(imgClosed, 0, 0, GameCourt.ROOM_WIDTH, GameCourt.ROOM_HEIGHT, null);
+		GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+		int version = getStaticVersion();
+		if (!STATIC_LAYER.isCurrent(gc, this, version)) {
+			Graphics2D layer = STATIC_LAYER.begin(gc, getBackgroundFile());
+			for (EnemyBloodSplat enemyBloodSplat : enemyBloodSplats) {
+				enemyBloodSplat.draw(layer);
+			}
+			for (Boulder bould : boulders) {
+				bould.draw(layer);
+			}
+			STATIC_LAYER.end(layer, this, version);
 		}
+		STATIC_LAYER.draw(g);
         g.translate(GameCourt.BORDER, GameCourt.BORDER);
-        Iterator<EnemyBloodSplat> iterSplat = enemyBloodSplats.iterator();
-        while (iterSplat.hasNext()) {
-            EnemyBloodSplat enemyBloodSplat = iterSplat.next();
-            enemyBloodSplat.draw(g);
-        }
-		Iterator<Boulder> iterBould = boulders.iterator();
-        while (iterBould.hasNext()) {
-            Boulder bould = iterBould.next();
-            bould.draw(g);
-        }
-        Iterator<Enemy> iterEn = enemies.iterator();
-        while (iterEn.hasNext()) {
-            Enemy e = iterEn.next();
-            e.draw(g);
-        }
-		Iterator<Projectile> iterProj = projectiles.iterator();
-		while (iterProj.hasNext()) {
-            Projectile proj = iterProj.next();
-            proj.draw(g);
+        for (int i = 0; i < enemies.size(); i++) {
+            enemies.get(i).draw(g);
         }
+		projectiles.draw(g);
     }
 	
+	/**
+     * Adds the room and everything in it to a snapshot, in the order draw() draws them
+     * 
+     * @param snapshot snapshot being filled
+     */
+	public void addTo(WorldSnapshot snapshot) {
+		snapshot.setRoom(this, getStaticVersion(), getBackgroundFile());
+		for (EnemyBloodSplat enemyBloodSplat : enemyBloodSplats) {
+			enemyBloodSplat.addTo(snapshot, GameCourt.BORDER, GameCourt.BORDER);
+		}
+		for (Boulder bould : boulders) {
+			bould.addTo(snapshot, GameCourt.BORDER, GameCourt.BORDER);
+		}
+		for (int i = 0; i < enemies.size(); i++) {
+			enemies.get(i).addTo(snapshot, GameCourt.BORDER, GameCourt.BORDER);
+		}
+		projectiles.addTo(snapshot, GameCourt.BORDER, GameCourt.BORDER);
+	}
+	
 	/**
 	 * Object representing the blood splats left behind when an enemy dieds
 	 */
+	@SuppressWarnings("serial")
 	public class EnemyBloodSplat extends GameObj {
 
-		private static final String IMG_FILE = "files/BloodSplatRed.png";
 		public static final int SIZE = 120;
 
 		/**
 		* Constructor
 		*/
 		public EnemyBloodSplat(int x, int y) {
-			super(0, 0, 0, x, y, SIZE, SIZE, 0);
-			try {
-				if (imgSplat == null) {
-					imgSplat = ImageIO.read(new File(IMG_FILE));
-				}
-			} catch (IOException e) {
-				System.out.println("IOException: " + e.getMessage());
-			}
+			super(statics, 0, 0, 0, x, y, SIZE, SIZE, 0);
 		}
 
 		@Override
 		public void draw(Graphics g) {
-			g.drawImage(imgSplat, this.getPx(), this.getPy(), SIZE, SIZE, null);
+			SpriteAtlas.get().draw(g, Sprite.ENEMY_BLOOD_SPLAT, this.getPx(), this.getPy());
+		}
+		
+		@Override
+		public void addTo(WorldSnapshot snapshot, int dx, int dy) {
+			snapshot.addStatic(Sprite.ENEMY_BLOOD_SPLAT, this.getPx() + dx, this.getPy() + dy);
 		}
 
 	}
@@ -1,90 +1,132 @@
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Handles all game objects in between ticks, except for drawing the main character.
- * Holds all room and level information
+ * Holds all room and level information; the layout of the rooms is read from a Level
  */
 public class RoomHandler {
         
-	/* 2D array of rooms representative of spatial location */
-    private static Room[][] rooms = new Room[3][];
+	/* Level the game is played in, read once and shared by every game */
+	public static final String LEVEL_FILE = "files/Level1.txt";
+	private static Level defaultLevel;
+        
+	/* 
+	 * Rooms by their position in the level. A room is made the first time it is needed, and
+	 * rooms more than residentRadius rows or columns away from the current room are evicted.
+	 */
+	public static final int RESIDENT_RADIUS = Integer.getInteger("blob.residentRadius", 2);
+    private final Level level;
+    private final WorldMap rooms;
+    private final int residentRadius;
     
-	/* Current room and location of room in rooms array */
+	/* Current room and its position in the level */
     private Room room;
-    private int i = 0;
-    private int j = 1;
+    private int i;
+    private int j;
+
+	/* Side of a room a door leads into, by the side it is left through */
+	private static final Direction[] OPPOSITE = {
+		Direction.DOWN, Direction.UP, Direction.RIGHT, Direction.LEFT
+	};
 
 	private boolean hasWon = false;
+	
+	/* 
+	 * Whether rooms that the main character is not in keep being advanced. They are advanced once
+	 * every BACKGROUND_INTERVAL time steps, spread over the threads of a ForkJoinPool, while the
+	 * current room is advanced every time step on the calling thread.
+	 */
+	public static final int BACKGROUND_INTERVAL = 4;
+	private static final ForkJoinPool BACKGROUND_POOL = ForkJoinPool.commonPool();
+	private boolean backgroundSimulation = false;
+	private long tickCount = 0;
+	
+	/* Time taken by advancing the rooms in the background in the last time step they were due */
+	private long lastBackgroundNanos;
+	
+	/* Enemy projectiles stopped by boulders and shots held back by enemies because a boulder was
+	 * in the way, in the rooms the main character was in */
+	private long projectilesBlocked;
+	private long shotsSkipped;
     
     /**
     * Constructor
     */
     public RoomHandler() {
-        
-		int courtWidth = GameCourt.COURT_WIDTH;
-		int courtHeight = GameCourt.COURT_HEIGHT;
-		
-        // create rooms
-        Room startRoom = new Room("files/Bkgrnd3Lower.png", "files/Bkgrnd3Lower.png");
-        Room centerRoom = new Room("files/Bkgrnd2LeftTop.png", "files/Bkgrnd2LeftTopClosed.png");
-        Room trickRoom = new Room("files/Bkgrnd1Left.png", "files/Bkgrnd1LeftClosed.png");
-        Room centerLeftRoom = new Room("files/Bkgrnd3Right.png", "files/Bkgrnd3RightClosed.png");
-		Room upperLeftRoom = new Room("files/Bkgrnd2RightLower.png", 
-									  "files/Bkgrnd2RightLowerClosed.png");
-        
-        // create final room
-        Room finalRoom = new FinalRoom("files/Bkgrnd1Top.png", "files/Bkgrnd1TopClosed.png");
-        
-        rooms[0] = new Room[] {upperLeftRoom, startRoom, trickRoom};
-        rooms[1] = new Room[] {centerLeftRoom, centerRoom};
-        rooms[2] = new Room[] {finalRoom}; 
-
-        this.room = rooms[i][j];
-        
-        // Add enemies and boulders to rooms
-        
-        // Upper Left Room
-        upperLeftRoom.addEnemy(new PatrollingEnemy(7, 0, Direction.RIGHT));
-		upperLeftRoom.addBoulder(new Boulder (300, 150));
-		
-		// Upper Right Room
-		Enemy rightWallEnemy = new SprinklerEnemy(0, 0, Direction.LEFT);
-		rightWallEnemy.moveToEdge(Direction.RIGHT);
-		trickRoom.addEnemy(rightWallEnemy);
-		Enemy topWallEnemy = new SprinklerEnemy(0, 0, Direction.DOWN);
-		topWallEnemy.moveToEdge(Direction.UP);
-		trickRoom.addEnemy(topWallEnemy);
-		Enemy lowerWallEnemy = new SprinklerEnemy(0, 0, Direction.UP);
-		lowerWallEnemy.moveToEdge(Direction.DOWN);
-		trickRoom.addEnemy(lowerWallEnemy);
-		
-		// Center Room
-		centerRoom.addEnemy(new SnipingEnemy(7, courtHeight - RegularEnemy.SIZE - 7,
-				 Direction.RIGHT, null, 0.5, true));
-		centerRoom.addBoulder(new Boulder(10, 270));
-		centerRoom.addEnemy(new SnipingEnemy(courtWidth - 67, 7, Direction.DOWN, null, 0.7, 
-				false));
-		centerRoom.addBoulder(new Boulder(courtWidth - 165, 7));
-		centerRoom.addEnemy(new SnipingEnemy(450, courtHeight - RegularEnemy.SIZE - 7, 
-				Direction.UP, null, 0.4, true));
-		RegularEnemy opposingEnemy = new SnipingEnemy(195, 7, Direction.LEFT, Direction.DOWN, 
-				0.2, false);
-		opposingEnemy.setDirectionLeft();
-		centerRoom.addEnemy(opposingEnemy);
-		centerRoom.addBoulder(new Boulder(262, 0));
-		
-		// Center Left Room
-		Enemy followingEnemy1 = new FollowingEnemy(0, 0);
-		Enemy followingEnemy2 = new FollowingEnemy(0, 0);
-		Enemy followingEnemy3 = new FollowingEnemy(240, 260);
-		followingEnemy1.moveToEdge(Direction.LEFT);
-		followingEnemy2.moveToEdge(Direction.DOWN);
-		centerLeftRoom.addEnemy(followingEnemy1);
-		centerLeftRoom.addEnemy(followingEnemy2);
-		centerLeftRoom.addEnemy(followingEnemy3);
+        this(new Random());
+    }
+    
+    /**
+    * Constructor
+    * 
+    * @param random source of randomness for everything in the rooms, seeded for reproducible games
+    */
+    public RoomHandler(Random random) {
+        this(getDefaultLevel(), random);
+    }
+    
+    /**
+    * Constructor
+    * 
+    * @param level layout of the rooms
+    *        random source of randomness for everything in the rooms, seeded for reproducible games
+    */
+    public RoomHandler(Level level, Random random) {
+        this(level, random, RESIDENT_RADIUS);
+    }
+    
+    /**
+    * Constructor
+    * 
+    * @param level layout of the rooms
+    *        random source of randomness for everything in the rooms, seeded for reproducible games
+    *        residentRadius number of rows and columns around the current room to keep in memory
+    */
+    public RoomHandler(Level level, Random random, int residentRadius) {
+        this.level = level;
+        this.rooms = new WorldMap(level, random);
+        this.residentRadius = residentRadius;
+        i = level.getStartRow();
+        j = level.getStartColumn();
+        this.room = rooms.get(i, j);
+        prefetchBackgrounds();
+    }
+    
+	/**
+     * @return The level in LEVEL_FILE, read the first time it is needed
+     */
+    public static synchronized Level getDefaultLevel() {
+        if (defaultLevel == null) {
+            try {
+                defaultLevel = Level.load(new File(LEVEL_FILE));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return defaultLevel;
+    }
+    
+	/**
+     * @return Whether the room at the given position is in memory
+     */
+    public boolean isRoomResident(int row, int column) {
+        return rooms.getResident(row, column) != null;
+    }
+    
+	/**
+     * @return The rooms of the level that are in memory
+     */
+    public WorldMap getWorldMap() {
+        return rooms;
     }
 
 	/**
@@ -104,6 +146,13 @@ public class RoomHandler {
      * @param blob the main character of the game
      */
     public boolean advance(Blob blob) {
+        long tickStart = TickProfiler.start();
+        long phase = tickStart;
+        GameEvents.Tick event = null;
+        if (GameEvents.isRecorderRunning()) {
+            event = new GameEvents.Tick();
+            event.begin();
+        }
         
         // return whether game has been won (in final room and hit the portal and defeated boss)
         if (room.getClass().equals(FinalRoom.class)) {
@@ -116,7 +165,7 @@ public class RoomHandler {
 				} else if (!finalRoom.isPortalActivated()){
 					blob.moveToEdge(Direction.RIGHT);
 					finalRoom.activatePortal();
-					Room.clearProjectiles();
+					finalRoom.clearProjectiles();
 					
 				}
 			} else {
@@ -125,25 +174,189 @@ public class RoomHandler {
 					finalRoom.deactivatePortal();
 				}
 			}
+			phase = TickProfiler.record(TickProfiler.PORTAL, phase);
 		}
     	// change room and clear projectiles if blob moves into door
         changeRoom(blob);
+		phase = TickProfiler.record(TickProfiler.CHANGE_ROOM, phase);
 		
-		// advance everything in the room with reference to the projectiles and each other
+		// advance everything in the room with reference to the projectiles and each other, while
+		// the other rooms are advanced in the background if it is their turn
+		List<ForkJoinTask<?>> background = startBackgroundRooms();
 		room.advance(blob);
+		projectilesBlocked += room.getProjectilesBlocked();
+		shotsSkipped += room.getShotsSkipped();
+		joinBackgroundRooms(background);
+		TickProfiler.record(TickProfiler.ROOMS, phase);
+		tickCount++;
         
 		// move blob
         blob.move();    
+		TickProfiler.record(TickProfiler.TICK, tickStart);
+		if (event != null && event.shouldCommit()) {
+			event.tick = tickCount;
+			event.projectiles = room.getProjectileCount();
+			event.enemies = room.getEnemyCount();
+			event.boulders = room.getBoulderCount();
+			event.projectilesBlocked = room.getProjectilesBlocked();
+			event.shotsSkipped = room.getShotsSkipped();
+			event.commit();
+		}
 		return hasWon;
     }
 	
 	/**
-     * Adds projectile to game
+     * Starts advancing every room other than the current one in the background, if background
+     * simulation is on and it is their turn
+     * 
+     * @return Tasks advancing the rooms, null if no rooms are advanced this time step
+     */
+    private List<ForkJoinTask<?>> startBackgroundRooms() {
+        if (!backgroundSimulation || (tickCount % BACKGROUND_INTERVAL) != 0) {
+            return null;
+        }
+        lastBackgroundNanos = System.nanoTime();
+        List<Room> resident = new LinkedList<>();
+        rooms.addResidentRooms(resident);
+        List<ForkJoinTask<?>> tasks = new LinkedList<>();
+        for (final Room r : resident) {
+            if (r != room) {
+                tasks.add(BACKGROUND_POOL.submit(new Runnable() {
+                    public void run() {
+                        r.advance(null);
+                    }
+                }));
+            }
+        }
+        return tasks;
+    }
+    
+	/**
+     * Waits for the rooms advancing in the background to finish
+     * 
+     * @param tasks tasks returned by startBackgroundRooms()
+     */
+    private void joinBackgroundRooms(List<ForkJoinTask<?>> tasks) {
+        if (tasks == null) {
+            return;
+        }
+        Iterator<ForkJoinTask<?>> iterTask = tasks.iterator();
+        while (iterTask.hasNext()) {
+            iterTask.next().join();
+        }
+        lastBackgroundNanos = System.nanoTime() - lastBackgroundNanos;
+    }
+    
+	/**
+     * Turns advancing the rooms that the main character is not in on or off. Only the rooms in
+     * memory are advanced, which while it is on are all rooms near the current room.
      * 
-     * @param projectile to be added to game
+     * @param on whether the other rooms should be advanced in the background
+     */
+    public void setBackgroundSimulation(boolean on) {
+        this.backgroundSimulation = on;
+        if (on) {
+            loadNearbyRooms();
+        }
+    }
+    
+	/**
+     * Makes or restores every room near the current room, so that they are advanced in the
+     * background
+     */
+    private void loadNearbyRooms() {
+        for (int row = i - residentRadius; row <= i + residentRadius; row++) {
+            for (int column = j - residentRadius; column <= j + residentRadius; column++) {
+                rooms.get(row, column);
+            }
+        }
+    }
+    
+    public boolean isBackgroundSimulation() {
+        return backgroundSimulation;
+    }
+    
+	/**
+     * @param row row of the room
+     *        col column of the room
+     * @return Time taken by the last time step of the room, in nanoseconds; 0 if it is not in
+     *         memory
      */
-    public void addProjectile(Projectile p) {
-        Room.addProjectile(p);
+    public long getRoomTickNanos(int row, int col) {
+        Room r = rooms.getResident(row, col);
+        return (r != null) ? r.getLastAdvanceNanos() : 0;
+    }
+    
+	/**
+     * @return Real time taken to advance all other rooms in the background the last time they
+     *         were due, in nanoseconds
+     */
+    public long getBackgroundTickNanos() {
+        return lastBackgroundNanos;
+    }
+    
+	/**
+     * @return Number of enemy projectiles stopped by a boulder in the rooms the main character was
+     *         in, since the game started
+     */
+    public long getProjectilesBlocked() {
+        return projectilesBlocked;
+    }
+    
+	/**
+     * @return Number of shots enemies did not fire because a boulder was in the way, in the rooms
+     *         the main character was in, since the game started
+     */
+    public long getShotsSkipped() {
+        return shotsSkipped;
+    }
+    
+	/**
+     * @return Row of the current room
+     */
+    public int getRow() {
+        return i;
+    }
+    
+	/**
+     * @return Column of the current room
+     */
+    public int getColumn() {
+        return j;
+    }
+    
+	/**
+     * Fires a projectile in the current room
+     * 
+     * @param owner type of the object firing the projectile (see ProjectileStore)
+     *        x x coordinate of the center of the projectile
+     *        y y coordinate of the center of the projectile
+     *        d1 main direction that the projectile should be fired in
+     *        d2 secondary direction that the projectile should be fired in (can be null)
+     */
+    public void spawnProjectile(int owner, int x, int y, Direction d1, Direction d2) {
+        room.spawnProjectile(owner, null, x, y, d1, d2);
+    }
+    
+	/**
+     * Fires a projectile in the current room that never hits the character firing it
+     * 
+     * @param owner type of the object firing the projectile (see ProjectileStore)
+     *        from the character firing the projectile
+     *        x x coordinate of the center of the projectile
+     *        y y coordinate of the center of the projectile
+     *        d1 main direction that the projectile should be fired in
+     *        d2 secondary direction that the projectile should be fired in (can be null)
+     */
+    public void spawnProjectile(int owner, GameObj from, int x, int y, Direction d1, Direction d2) {
+        room.spawnProjectile(owner, from, x, y, d1, d2);
+    }
+    
+	/**
+     * @return The room that the main character is currently in
+     */
+    public Room getRoom() {
+        return room;
     }
     
 	/**
@@ -157,34 +370,61 @@ public class RoomHandler {
         if (d == null || !room.isOpen() || hasWon) {
             return;
         }
-        Room.clearProjectiles();
-        switch (d) {
-        case UP:
-            if ((i - 1) >= 0) {
-                i--;
-                blob.moveToEdge(Direction.DOWN);
-            }
-            break;  
-        case DOWN:
-            if ((i + 1) < rooms.length) {
-                i++;
-                blob.moveToEdge(Direction.UP);
-            }
-            break;
-        case LEFT:
-            if ((j - 1) >= 0) {
-                j--;
-                blob.moveToEdge(Direction.RIGHT);
+        // projectiles do not follow the main character out of a room
+        room.clearProjectiles();
+        int fromRow = i;
+        int fromColumn = j;
+        if (level.hasDoor(i, j, d)) {
+            i += Level.getRowStep(d);
+            j += Level.getColumnStep(d);
+            blob.moveToEdge(OPPOSITE[d.ordinal()]);
+            room = rooms.get(i, j);
+            rooms.evictFarFrom(i, j, residentRadius);
+            if (backgroundSimulation) {
+                loadNearbyRooms();
             }
-            break;
-        case RIGHT:
-            if ((j + 1) < rooms[i].length) {
-                j++;
-                blob.moveToEdge(Direction.LEFT);
+            prefetchBackgrounds();
+            if (GameEvents.isRecorderRunning()) {
+                GameEvents.RoomTransition event = new GameEvents.RoomTransition();
+                if (event.shouldCommit()) {
+                    event.door = d.name();
+                    event.fromRow = fromRow;
+                    event.fromColumn = fromColumn;
+                    event.toRow = i;
+                    event.toColumn = j;
+                    event.commit();
+                }
             }
-            break;
         }
-        room = rooms[i][j];
+    }
+    
+	/**
+     * Starts loading the backgrounds of the current room and of the rooms next to it, so that
+     * they are decoded before the main character walks through a door. The current room may
+     * open its doors, so both of its backgrounds are loaded.
+     */
+    private void prefetchBackgrounds() {
+        room.prefetchBackgrounds(true);
+        prefetchBackground(i - 1, j);
+        prefetchBackground(i + 1, j);
+        prefetchBackground(i, j - 1);
+        prefetchBackground(i, j + 1);
+    }
+    
+	/**
+     * Starts loading the background a room will be drawn with when it is entered, if there is a
+     * room at the given position, without making the room
+     */
+    private void prefetchBackground(int row, int column) {
+        if (!level.contains(row, column)) {
+            return;
+        }
+        Room r = rooms.getResident(row, column);
+        if (r != null) {
+            r.prefetchBackgrounds(false);
+        } else {
+            BackgroundCache.get().prefetch(level.getEntryBackground(row, column));
+        }
     }
     
 }
@@ -0,0 +1,143 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Copies of images scaled to the size they are drawn at and converted to the pixel format of the
+ * display, so that drawing them is a plain copy that Java2D can keep in video memory instead of
+ * scaling and converting the image on every frame. Images without transparent pixels are copied
+ * into opaque images, which are the fastest to draw.
+ *
+ * The copies are made for one GraphicsConfiguration at a time. When an image is drawn on a
+ * different configuration, for example after the window has been moved to another screen or the
+ * display mode has changed, all copies are thrown away and made again for the new one.
+ */
+public class ScaledImageCache {
+
+    private static final ScaledImageCache INSTANCE = new ScaledImageCache();
+
+    /* Scaled copies of each source image, one per size; dropped with the source image */
+    private final Map<BufferedImage, List<BufferedImage>> copies = new WeakHashMap<>();
+
+    /* Configuration the copies were made for */
+    private GraphicsConfiguration config;
+
+    public static ScaledImageCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param gc configuration of the surface the image is drawn on
+     *        src image to draw
+     *        width width to draw the image at
+     *        height height to draw the image at
+     * @return Copy of the image at the given size in the format of the configuration
+     */
+    public synchronized BufferedImage get(GraphicsConfiguration gc, BufferedImage src, int width,
+                                          int height) {
+        if (gc != config) {
+            copies.clear();
+            config = gc;
+        }
+        List<BufferedImage> sizes = copies.computeIfAbsent(src, s -> new ArrayList<>(1));
+        for (BufferedImage copy : sizes) {
+            if (copy.getWidth() == width && copy.getHeight() == height) {
+                return copy;
+            }
+        }
+        BufferedImage copy = toCompatible(gc, src, width, height);
+        sizes.add(copy);
+        return copy;
+    }
+
+    /**
+     * Throws away every copy
+     */
+    public synchronized void invalidate() {
+        copies.clear();
+        config = null;
+    }
+
+    /**
+     * @return Number of copies in the cache
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (List<BufferedImage> sizes : copies.values()) {
+            size += sizes.size();
+        }
+        return size;
+    }
+
+    /**
+     * Scales an image and copies it into an image in the format of a configuration, opaque if no
+     * pixel of the scaled image is transparent
+     *
+     * @param gc configuration to copy the image for, null for a plain BufferedImage
+     *        src image to copy
+     *        width width of the copy
+     *        height height of the copy
+     */
+    static BufferedImage toCompatible(GraphicsConfiguration gc, BufferedImage src, int width,
+                                      int height) {
+        BufferedImage scaled = (src.getWidth() == width && src.getHeight() == height)
+                ? src : scale(src, width, height);
+        boolean opaque = isOpaque(scaled);
+        BufferedImage copy;
+        if (gc != null) {
+            copy = gc.createCompatibleImage(width, height,
+                    opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+        } else {
+            copy = new BufferedImage(width, height,
+                    opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        Graphics2D g = copy.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(scaled, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    /**
+     * @return Whether every pixel of an image is fully opaque
+     */
+    static boolean isOpaque(BufferedImage img) {
+        if (!img.getColorModel().hasAlpha()) {
+            return true;
+        }
+        int[] row = new int[img.getWidth()];
+        for (int y = 0; y < img.getHeight(); y++) {
+            img.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int argb : row) {
+                if ((argb >>> 24) != 0xff) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scales an image to the given size. Images are halved with bilinear filtering as long as they
+     * are more than twice as large, so that no detail is skipped over.
+     */
+    static BufferedImage scale(BufferedImage img, int width, int height) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        do {
+            w = (w > 2 * width) ? w / 2 : width;
+            h = (h > 2 * height) ? h / 2 : height;
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                               RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(img, 0, 0, w, h, null);
+            g.dispose();
+            img = next;
+        } while (w != width || h != height);
+        return img;
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.Random;
+
+/**
+ * Builds rooms filled with far more objects than the hand-built rooms of RoomHandler, to see how
+ * the engine scales with the number of objects in a room. A scenario holds the same number of each
+ * kind of enemy (including an activated Boss), a number of boulders and a number of projectiles
+ * already in flight, all placed at random positions drawn from a seed, so the same seed always
+ * gives the same room.
+ */
+public class ScenarioGenerator {
+
+    /* Enemy kinds created for each count given to generate() */
+    public static final int ENEMY_KINDS = 5;
+
+    private static final String IMG_FILE_OPEN = "files/Bkgrnd2LeftTop.png";
+    private static final String IMG_FILE_CLOSED = "files/Bkgrnd2LeftTopClosed.png";
+
+    private final Random random;
+
+    /**
+     * Constructor
+     *
+     * @param seed seed for the positions, directions and boss attack order of the scenarios
+     */
+    public ScenarioGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Builds a room. Enemies and boulders may overlap each other; the room sorts that out in the
+     * same way as it does during play.
+     *
+     * @param enemiesPerKind number of PatrollingEnemy, SnipingEnemy, FollowingEnemy,
+     *                       SprinklerEnemy and Boss each
+     *        boulders number of boulders
+     *        projectiles number of projectiles in flight, fired by random owners in random
+     *                    directions
+     * @return The room, with its doors closed while any enemy is alive
+     */
+    public Room generate(int enemiesPerKind, int boulders, int projectiles) {
+        Room room = new Room(IMG_FILE_OPEN, IMG_FILE_CLOSED);
+        for (int k = 0; k < enemiesPerKind; k++) {
+            room.addEnemy(new PatrollingEnemy(x(RegularEnemy.SIZE), y(RegularEnemy.SIZE),
+                                              direction()));
+            room.addEnemy(new SnipingEnemy(x(RegularEnemy.SIZE), y(RegularEnemy.SIZE), direction(),
+                                           random.nextBoolean() ? direction() : null,
+                                           random.nextDouble(), random.nextBoolean()));
+            room.addEnemy(new FollowingEnemy(x(RegularEnemy.SIZE), y(RegularEnemy.SIZE)));
+            room.addEnemy(new SprinklerEnemy(x(RegularEnemy.SIZE), y(RegularEnemy.SIZE),
+                                             direction()));
+            Boss boss = new Boss(x(Boss.SIZE), y(Boss.SIZE), random);
+            boss.activate();
+            room.addEnemy(boss);
+        }
+        for (int k = 0; k < boulders; k++) {
+            room.addBoulder(x(Boulder.SIZE), y(Boulder.SIZE));
+        }
+        topUpProjectiles(room, projectiles);
+        return room;
+    }
+
+    /**
+     * Fires projectiles into a room until it holds at least the given number, so that a room can
+     * be kept at the same load while it is advanced
+     *
+     * @param room room to fire projectiles into
+     *        projectiles number of projectiles the room should hold
+     */
+    public void topUpProjectiles(Room room, int projectiles) {
+        Direction[] directions = Direction.values();
+        while (room.getProjectileCount() < projectiles) {
+            int owner = random.nextInt(3);
+            Direction d1 = direction();
+            // half of the projectiles move diagonally
+            Direction d2 = random.nextBoolean() ? directions[(d1.ordinal() + 2) % 4] : null;
+            room.spawnProjectile(owner, x(0), y(0), d1, d2);
+        }
+    }
+
+    /**
+     * @return A main character standing in the center of the court
+     */
+    public Blob createBlob() {
+        Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+        blob.moveToCenter();
+        return blob;
+    }
+
+    private Direction direction() {
+        return Direction.values()[random.nextInt(4)];
+    }
+
+    private int x(int size) {
+        return random.nextInt(GameCourt.COURT_WIDTH - size + 1);
+    }
+
+    private int y(int size) {
+        return random.nextInt(GameCourt.COURT_HEIGHT - size + 1);
+    }
+}
@@ -1,6 +1,8 @@
 /**
- * Enemy that stays still and shoots bursts of projectiles 
+ * Enemy that stays still and shoots bursts of projectiles, holding back the ones a boulder would
+ * stop before they get near the main character
  */
+@SuppressWarnings("serial")
 public class SnipingEnemy extends RegularEnemy {
     
 	/* Interval in seconds at which SnipingEnemy fires projectiles 
@@ -36,9 +38,9 @@ public class SnipingEnemy extends RegularEnemy {
     public void advance(Blob blob) {
  		if (firingMode) {
  			if (counterFire % firingFreq == 0) {
- 				this.fire(projDirection1, null);
+ 				this.fireUnlessBlocked(projDirection1, null, blob);
 				if (projDirection2 != null) {
-					this.fire(projDirection2, null);
+					this.fireUnlessBlocked(projDirection2, null, blob);
 				}
  			}
 			counterFire++;
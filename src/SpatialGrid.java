@@ -0,0 +1,237 @@
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the game court used to quickly find which objects might collide with a given
+ * area (broadphase collision detection). Objects are put into every cell that their bounding box
+ * overlaps, so a query only has to look at the objects in the cells that the queried area
+ * overlaps instead of at every object in the room. Objects found this way still have to be tested
+ * exactly with GameObj.intersects() (narrowphase).
+ *
+ * The grid is meant to be cleared and refilled every time step. Its arrays grow when needed and
+ * are reused afterwards, so filling and querying it does not create any objects.
+ */
+public class SpatialGrid {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    private final int cellSize;
+    private final int cols;
+    private final int rows;
+
+    /* Indices of the objects in each cell */
+    private final int[][] cells;
+    private final int[] cellCounts;
+
+    /*
+     * Objects stored in the grid, in the order they were added, with their collision layers; things
+     * that are not objects, like projectiles, are stored by a number instead, and removed objects
+     * are on no layer
+     */
+    private GameObj[] objects = new GameObj[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] layers = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /* Query number in which each object was last found, used to report each object only once */
+    private int[] seen = new int[INITIAL_CAPACITY];
+    private int queryNumber;
+
+    /* Indices of the objects found by the last query */
+    private int[] results = new int[INITIAL_CAPACITY];
+    private int resultCount;
+
+    /**
+     * Constructor
+     *
+     * @param width width of the area covered by the grid
+     *        height height of the area covered by the grid
+     *        cellSize width and height of each cell
+     */
+    public SpatialGrid(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+        this.cells = new int[cols * rows][INITIAL_CELL_CAPACITY];
+        this.cellCounts = new int[cols * rows];
+    }
+
+    /**
+     * Removes all objects from the grid
+     */
+    public void clear() {
+        Arrays.fill(cellCounts, 0);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Adds an object to every cell its bounding box overlaps
+     *
+     * @param obj object to add
+     *        layer collision layer of the object (see CollisionLayers)
+     * @return Index of the object in the grid
+     */
+    public int add(GameObj obj, int layer) {
+        return add(obj, obj.getPx(), obj.getPy(), obj.getRadius(), layer);
+    }
+
+    /**
+     * Adds an object to every cell its bounding box overlaps, given where it is, e.g. read
+     * straight from an EntityStore
+     *
+     * @param obj object to add
+     *        px x coordinate of the upper-left corner of the object
+     *        py y coordinate of the upper-left corner of the object
+     *        radius radius of the object used for collisions
+     *        layer collision layer of the object (see CollisionLayers)
+     * @return Index of the object in the grid
+     */
+    public int add(GameObj obj, int px, int py, int radius, int layer) {
+        return add(obj, -1, px, py, radius, layer);
+    }
+
+    /**
+     * Adds something that is not a game object, such as a projectile of a ProjectileStore, to every
+     * cell its bounding box overlaps
+     *
+     * @param id number of the thing, e.g. the index of the projectile, see getId()
+     *        px x coordinate of the upper-left corner of the thing
+     *        py y coordinate of the upper-left corner of the thing
+     *        radius radius of the thing used for collisions
+     *        layer collision layer of the thing (see CollisionLayers)
+     * @return Index of the thing in the grid
+     */
+    public int add(int id, int px, int py, int radius, int layer) {
+        return add(null, id, px, py, radius, layer);
+    }
+
+    private int add(GameObj obj, int id, int px, int py, int radius, int layer) {
+        if (size == objects.length) {
+            int capacity = size * 2;
+            objects = Arrays.copyOf(objects, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            layers = Arrays.copyOf(layers, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            results = Arrays.copyOf(results, capacity);
+        }
+        int index = size++;
+        objects[index] = obj;
+        ids[index] = id;
+        layers[index] = layer;
+        seen[index] = queryNumber;
+
+        int diameter = 2 * radius;
+        int minCol = col(px);
+        int maxCol = col(px + diameter);
+        int minRow = row(py);
+        int maxRow = row(py + diameter);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int cell = r * cols + c;
+                int count = cellCounts[cell];
+                if (count == cells[cell].length) {
+                    cells[cell] = Arrays.copyOf(cells[cell], count * 2);
+                }
+                cells[cell][count] = index;
+                cellCounts[cell] = count + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Removes an object from the grid so that it is no longer found by queries
+     *
+     * @param index index of the object returned by add()
+     */
+    public void remove(int index) {
+        objects[index] = null;
+        layers[index] = CollisionLayers.NONE;
+    }
+
+    /**
+     * Finds every object on the given layers in the cells that an area overlaps. The objects found
+     * can be read with getResultCount() and getResult() until the next query.
+     *
+     * @param x x coordinate of the upper-left corner of the area
+     *        y y coordinate of the upper-left corner of the area
+     *        width width of the area
+     *        height height of the area
+     *        layerMask bit mask of the collision layers of objects to find
+     * @return Number of objects found
+     */
+    public int query(int x, int y, int width, int height, int layerMask) {
+        queryNumber++;
+        resultCount = 0;
+        int minCol = col(x);
+        int maxCol = col(x + width);
+        int minRow = row(y);
+        int maxRow = row(y + height);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int cell = r * cols + c;
+                int[] items = cells[cell];
+                int count = cellCounts[cell];
+                for (int k = 0; k < count; k++) {
+                    int index = items[k];
+                    if (seen[index] != queryNumber) {
+                        seen[index] = queryNumber;
+                        if ((layers[index] & layerMask) != 0) {
+                            results[resultCount++] = index;
+                        }
+                    }
+                }
+            }
+        }
+        return resultCount;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    /**
+     * @param i number of the result, from 0 to getResultCount() - 1
+     * @return Index in the grid of the i-th object found by the last query
+     */
+    public int getResult(int i) {
+        return results[i];
+    }
+
+    /**
+     * @param index index of an object in the grid
+     * @return The object, null if it has been removed or is not a game object
+     */
+    public GameObj get(int index) {
+        return objects[index];
+    }
+
+    /**
+     * @param index index of a thing in the grid that is not a game object
+     * @return Number it was added with, -1 for game objects
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index index of the object returned by add()
+     * @return Collision layer of the object, NONE once it has been removed
+     */
+    public int getLayer(int index) {
+        return layers[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int col(int x) {
+        return Math.min(Math.max(x / cellSize, 0), cols - 1);
+    }
+
+    private int row(int y) {
+        return Math.min(Math.max(y / cellSize, 0), rows - 1);
+    }
+}
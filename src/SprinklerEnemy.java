@@ -1,6 +1,7 @@
 /**
  * Enemy that rotates in range of -180 to 180 degrees and shoots projectiles
  */
+@SuppressWarnings("serial")
 public class SprinklerEnemy extends RegularEnemy {
     
 	/* Interval in seconds at which FollowingEnemy fires projectiles 
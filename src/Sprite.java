@@ -0,0 +1,52 @@
+/**
+ * Every image drawn in the game except for the room backgrounds, with the file it is loaded from
+ * and the size it is always drawn at. The images are packed into a SpriteAtlas at that size.
+ */
+public enum Sprite {
+    BLOB_RIGHT("files/BlobRight.png", Blob.SIZE),
+    BLOB_LEFT("files/BlobLeft.png", Blob.SIZE),
+    BLOB_RIGHT_SQUISHED("files/BlobRightSquished.png", Blob.SIZE),
+    BLOB_LEFT_SQUISHED("files/BlobLeftSquished.png", Blob.SIZE),
+    BLOB_RIGHT_HIT("files/BlobRightHit.png", Blob.SIZE),
+    BLOB_LEFT_HIT("files/BlobLeftHit.png", Blob.SIZE),
+    BLOB_RIGHT_SQUISHED_HIT("files/BlobRightSquishedHit.png", Blob.SIZE),
+    BLOB_LEFT_SQUISHED_HIT("files/BlobLeftSquishedHit.png", Blob.SIZE),
+    BLOB_DEAD("files/BloodSplatGreen.png", Blob.SIZE),
+    BLOB_90("files/Blob90.png", Blob.SIZE),
+    BLOB_180("files/Blob180.png", Blob.SIZE),
+    BLOB_270("files/Blob270.png", Blob.SIZE),
+    ENEMY_RIGHT("files/EnemyRight.png", RegularEnemy.SIZE),
+    ENEMY_LEFT("files/EnemyLeft.png", RegularEnemy.SIZE),
+    ENEMY_RIGHT_HIT("files/EnemyRightHit.png", RegularEnemy.SIZE),
+    ENEMY_LEFT_HIT("files/EnemyLeftHit.png", RegularEnemy.SIZE),
+    BOSS("files/Boss.png", Boss.SIZE),
+    BOSS_HIT("files/BossHit.png", Boss.SIZE),
+    BOULDER("files/Boulder.png", Boulder.SIZE),
+    PORTAL("files/Portal.png", FinalRoom.Portal.SIZE),
+    ENEMY_BLOOD_SPLAT("files/BloodSplatRed.png", Room.EnemyBloodSplat.SIZE),
+    HEART_EMPTY("files/HeartEmpty.png", HealthBar.HEART_SIZE),
+    HEART_HALF("files/HeartHalf.png", HealthBar.HEART_SIZE),
+    HEART_FULL("files/HeartFull.png", HealthBar.HEART_SIZE),
+    BLOB_PROJECTILE("files/BlobProjectile.png", 16),
+    ENEMY_PROJECTILE("files/EnemyProjectile.png", 16),
+    BOSS_PROJECTILE("files/BossProjectile.png", 20);
+
+    private final String file;
+    private final int size;
+
+    Sprite(String file, int size) {
+        this.file = file;
+        this.size = size;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return Width and height that the image is drawn at
+     */
+    public int getSize() {
+        return size;
+    }
+}
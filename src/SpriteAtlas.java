@@ -0,0 +1,180 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * All sprites of the game packed into a few large images (pages), so that drawing any sprite
+ * copies a region of an image that Java2D has already prepared for the screen instead of scaling
+ * a separate full-size image every time.
+ *
+ * The images are taken from the AssetManager, which may already have decoded them in the
+ * background. Every sprite is scaled to the size it is drawn at once, when the atlas is built, and
+ * placed on a page by shelf packing: sprites are sorted by height and put next to each other in
+ * rows (shelves), starting a new shelf when a row is full and a new page when a page is full. A
+ * table holds the page and the region of each sprite.
+ *
+ * Sprites are drawn on the screen from copies of the pages made for its GraphicsConfiguration,
+ * which are made again if it changes, for example when the window is moved to another screen.
+ * Sprites drawn into images, such as the static layer of a room, are drawn from the pages.
+ */
+public class SpriteAtlas {
+
+    /* Width and height of a page; a sprite larger than this gets a page of its own */
+    public static final int PAGE_SIZE = 512;
+
+    /* Empty pixels around each sprite so that neighbours never bleed into each other */
+    private static final int PADDING = 1;
+
+    private final BufferedImage[] pages;
+
+    /* Copies of the pages in the format of the surface last drawn on, see draw() */
+    private BufferedImage[] drawnPages;
+    private GraphicsConfiguration drawnConfig;
+
+    /* Page and upper-left corner of each sprite, indexed by ordinal; size is Sprite.getSize() */
+    private final int[] pageOf;
+    private final int[] xOf;
+    private final int[] yOf;
+
+    /* Whether the image of each sprite could be loaded */
+    private final boolean[] loaded;
+
+    /* Built the first time it is used, see get() */
+    private static class Holder {
+        static final SpriteAtlas INSTANCE = new SpriteAtlas(Sprite.values(), PAGE_SIZE);
+    }
+
+    /**
+     * @return The atlas of all sprites, loading and packing them on the first call
+     */
+    public static SpriteAtlas get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Loads and packs sprites
+     *
+     * @param sprites sprites to pack
+     *        pageSize width and height of a page
+     */
+    public SpriteAtlas(Sprite[] sprites, int pageSize) {
+        int count = Sprite.values().length;
+        pageOf = new int[count];
+        xOf = new int[count];
+        yOf = new int[count];
+        loaded = new boolean[count];
+        Arrays.fill(pageOf, -1);
+
+        // place the sprites, tallest first, and remember how much of each page is used
+        Sprite[] sorted = sprites.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(Sprite::getSize).reversed());
+        int[] pageWidths = new int[sorted.length + 1];
+        int[] pageHeights = new int[sorted.length + 1];
+        int page = -1;
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (Sprite s : sorted) {
+            int size = s.getSize() + 2 * PADDING;
+            if (page == -1 || x + size > pageSize) {
+                // start a new shelf below the current one
+                y += shelfHeight;
+                x = 0;
+                shelfHeight = 0;
+            }
+            if (page == -1 || y + size > pageSize) {
+                page++;
+                y = 0;
+                x = 0;
+                shelfHeight = 0;
+            }
+            pageOf[s.ordinal()] = page;
+            xOf[s.ordinal()] = x + PADDING;
+            yOf[s.ordinal()] = y + PADDING;
+            x += size;
+            shelfHeight = Math.max(shelfHeight, size);
+            pageWidths[page] = Math.max(pageWidths[page], x);
+            pageHeights[page] = Math.max(pageHeights[page], y + shelfHeight);
+        }
+
+        pages = new BufferedImage[page + 1];
+        for (int p = 0; p < pages.length; p++) {
+            pages[p] = new BufferedImage(pageWidths[p], pageHeights[p],
+                                         BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        for (Sprite s : sprites) {
+            BufferedImage img = AssetManager.get().takeImage(s.getFile());
+            if (img != null) {
+                Graphics2D g = pages[pageOf[s.ordinal()]].createGraphics();
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(ScaledImageCache.scale(img, s.getSize(), s.getSize()),
+                            xOf[s.ordinal()], yOf[s.ordinal()], null);
+                g.dispose();
+                loaded[s.ordinal()] = true;
+            }
+        }
+    }
+
+    /**
+     * Draws a sprite at its size
+     *
+     * @param g The <code>Graphics</code> context used for drawing the sprite
+     *        s sprite to draw
+     *        x x coordinate of the upper-left corner of the sprite
+     *        y y coordinate of the upper-left corner of the sprite
+     */
+    public void draw(Graphics g, Sprite s, int x, int y) {
+        int i = s.ordinal();
+        if (!loaded[i]) {
+            return;
+        }
+        GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+        BufferedImage[] source = drawnPages;
+        if (gc.getDevice().getType() == GraphicsDevice.TYPE_IMAGE_BUFFER) {
+            source = pages;
+        } else if (gc != drawnConfig) {
+            BufferedImage[] copies = new BufferedImage[pages.length];
+            for (int p = 0; p < pages.length; p++) {
+                copies[p] = ScaledImageCache.toCompatible(gc, pages[p], pages[p].getWidth(),
+                                                          pages[p].getHeight());
+            }
+            drawnPages = copies;
+            drawnConfig = gc;
+            source = copies;
+        }
+        int size = s.getSize();
+        int sx = xOf[i];
+        int sy = yOf[i];
+        g.drawImage(source[pageOf[i]], x, y, x + size, y + size, sx, sy, sx + size, sy + size, null);
+    }
+
+    /**
+     * @return Whether the image of a sprite could be loaded and will be drawn
+     */
+    public boolean isLoaded(Sprite s) {
+        return loaded[s.ordinal()];
+    }
+
+    public int getPageCount() {
+        return pages.length;
+    }
+
+    public BufferedImage getPage(int page) {
+        return pages[page];
+    }
+
+    /**
+     * @return Page that a sprite is on, -1 if it is not in this atlas
+     */
+    public int getPageIndex(Sprite s) {
+        return pageOf[s.ordinal()];
+    }
+
+    /**
+     * @return Region of its page that a sprite is drawn from
+     */
+    public Rectangle getBounds(Sprite s) {
+        return new Rectangle(xOf[s.ordinal()], yOf[s.ordinal()], s.getSize(), s.getSize());
+    }
+}
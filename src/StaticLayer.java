@@ -0,0 +1,78 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The background of a room and everything in it that does not move (blood splats and boulders),
+ * drawn into one opaque image in the format of the display so that they are copied with a single
+ * drawImage() per frame. The image is drawn again only when another room is drawn, when the
+ * static version of the room changes or when the display configuration changes.
+ *
+ * A layer is drawn on by one thread only. Rooms drawn on the event dispatch thread share one
+ * layer, and the render thread has its own.
+ */
+public class StaticLayer {
+
+    private BufferedImage image;
+    private GraphicsConfiguration config;
+
+    /* Room and static version of the room the image shows */
+    private Object owner;
+    private int version;
+
+    /**
+     * @param gc configuration of the surface the layer is drawn on
+     *        owner room to draw
+     *        version static version of the room, see Room.getStaticVersion()
+     * @return Whether the image already shows this version of the room
+     */
+    public boolean isCurrent(GraphicsConfiguration gc, Object owner, int version) {
+        return gc == config && owner == this.owner && version == this.version;
+    }
+
+    /**
+     * Starts drawing the layer again with only the background
+     *
+     * @param gc configuration of the surface the layer is drawn on
+     *        background image file of the background of the room, scaled to the size of the
+     *                   room; can be null
+     * @return Graphics translated to the upper-left corner of the court, to draw the objects
+     *         that do not move with; pass it to end() when done
+     */
+    public Graphics2D begin(GraphicsConfiguration gc, String background) {
+        if (gc != config) {
+            image = gc.createCompatibleImage(GameCourt.ROOM_WIDTH, GameCourt.ROOM_HEIGHT,
+                                             Transparency.OPAQUE);
+            config = gc;
+        }
+        Graphics2D g = image.createGraphics();
+        g.clearRect(0, 0, GameCourt.ROOM_WIDTH, GameCourt.ROOM_HEIGHT);
+        BufferedImage img = (background != null) ? BackgroundCache.get().get(background) : null;
+        if (img != null) {
+            // drawn from a copy already at the size of the room and in the format of the screen
+            g.drawImage(ScaledImageCache.get().get(gc, img, GameCourt.ROOM_WIDTH,
+                                                   GameCourt.ROOM_HEIGHT), 0, 0, null);
+        }
+        g.translate(GameCourt.BORDER, GameCourt.BORDER);
+        return g;
+    }
+
+    /**
+     * Finishes drawing the layer
+     *
+     * @param g value returned by begin()
+     *        owner room that was drawn
+     *        version static version of the room that was drawn
+     */
+    public void end(Graphics2D g, Object owner, int version) {
+        g.dispose();
+        this.owner = owner;
+        this.version = version;
+    }
+
+    /**
+     * Draws the layer over the whole room
+     */
+    public void draw(Graphics g) {
+        g.drawImage(image, 0, 0, null);
+    }
+}
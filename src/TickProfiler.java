@@ -0,0 +1,109 @@
+/**
+ * Measures how long each phase of a time step and of drawing takes, to find out which phase is to
+ * blame when a frame hitches. Each phase has a LatencyHistogram, so recording creates no objects.
+ *
+ * Profiling is off unless the game is started with -Dblob.profile=true, and can be switched on
+ * and off while the game runs. While it is off, start() and record() only read a flag.
+ *
+ * A phase is measured like this:
+ *   long t = TickProfiler.start();
+ *   ...
+ *   t = TickProfiler.record(TickProfiler.SOME_PHASE, t);
+ *   ...
+ *   TickProfiler.record(TickProfiler.NEXT_PHASE, t);
+ *
+ * Each phase should be recorded by one thread only: the phases of a time step by the game thread
+ * (rooms advanced in the background are not measured), PAINT by the thread that draws.
+ */
+public class TickProfiler {
+
+    /* Phases that are measured */
+    public static final int TICK = 0;            // all of RoomHandler.advance()
+    public static final int PORTAL = 1;          // FinalRoom portal and boss logic
+    public static final int CHANGE_ROOM = 2;     // moving through doors
+    public static final int ROOMS = 3;           // advancing the current and background rooms
+    public static final int PROJECTILES = 4;     // Room.advanceProjectiles()
+    public static final int BOULDERS = 5;        // Room.advanceBoulders()
+    public static final int ENEMIES = 6;         // Room.advanceEnemies()
+    public static final int PAINT = 7;           // GameCourt.paintComponent()
+
+    private static final String[] NAMES = {
+        "tick", "portal", "changeRoom", "rooms", "projectiles", "boulders", "enemies", "paint"
+    };
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean("blob.profile");
+
+    private TickProfiler() {
+    }
+
+    /**
+     * @return Current time to pass to record() at the end of a phase, 0 if profiling is off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of a phase
+     *
+     * @param phase phase that ended
+     *        start value returned by start() or record() when the phase started
+     * @return Current time, to be used as the start of the next phase, 0 if profiling is off
+     */
+    public static long record(int phase, long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        histograms[phase].record(now - start);
+        return now;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Removes everything recorded so far
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @param phase one of the phase constants
+     * @return Histogram of the durations recorded for the phase
+     */
+    public static LatencyHistogram getHistogram(int phase) {
+        return histograms[phase];
+    }
+
+    /**
+     * @return One line per phase with the number of samples and the p50, p99 and max duration in
+     *         microseconds
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram h = histograms[i];
+            report.append(String.format("%-12s n=%-8d p50=%8.1f us  p99=%8.1f us  max=%8.1f us%n",
+                                        NAMES[i], h.getCount(), h.getPercentile(50) / 1e3,
+                                        h.getPercentile(99) / 1e3, h.getMax() / 1e3));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands values from one writer thread to one reader thread without locks and without either of
+ * them ever waiting. There are three slots: the writer fills its back slot and publishes it by
+ * swapping it with the middle slot, and the reader takes the newest value by swapping the middle
+ * slot with its front slot if something was published since it last did. Neither thread ever
+ * touches a slot the other one is using, so a published value can be read without copying it.
+ *
+ * Values the reader was too slow to take are overwritten, so the reader always gets the newest.
+ *
+ * @param <T> type of the values, which are reused
+ */
+public class TripleBuffer<T> {
+
+    /* Set in middle when the middle slot holds a value the reader has not taken yet */
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final Object[] slots;
+
+    /* Index of the middle slot, plus FRESH */
+    private final AtomicInteger middle = new AtomicInteger(2);
+
+    /* Slot only the writer uses, and slot only the reader uses */
+    private int back = 0;
+    private int front = 1;
+
+    /**
+     * Constructor
+     *
+     * @param a b c the three values to fill and read
+     */
+    public TripleBuffer(T a, T b, T c) {
+        slots = new Object[] {a, b, c};
+    }
+
+    /**
+     * @return The value for the writer to fill, which no other thread uses until it is published
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) slots[back];
+    }
+
+    /**
+     * Publishes the value returned by getBack(); getBack() returns another value afterwards
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * @return The newest published value, or the one returned last time if nothing was published
+     *         since. It stays untouched until the next call.
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return (T) slots[front];
+    }
+}
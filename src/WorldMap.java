@@ -0,0 +1,375 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The rooms of a level that are in memory, by their position. Rooms are kept in chunks of
+ * CHUNK_SIZE by CHUNK_SIZE rooms, found by the position of the chunk in a hash map, so that only
+ * the parts of the world near the main character take memory and finding a room takes constant
+ * time however large the world is.
+ *
+ * A room is made from the level the first time it is needed. Rooms far from the main character
+ * are evicted: their state is serialized into a compact byte array and the room is dropped, to be
+ * restored exactly as it was when it is needed again. Rooms that were never entered take no memory
+ * at all, and rooms that were take only their saved state once they are evicted. Once the saved
+ * states take more than maxSavedBytes, the oldest are moved to a temporary file, keeping only their
+ * place in the file in memory. Restoring a room leaves a gap in the file; once the gaps add up to
+ * more than the states still in it, the file is compacted, so it never takes more than twice the
+ * bytes of the rooms saved in it.
+ *
+ * Every room has a Random of its own, seeded from the seed of the map and the position of the
+ * room, so that rooms advanced on different threads do not share one and a room is the same
+ * whichever order the rooms are made in.
+ */
+public class WorldMap {
+
+    /* Number of rows and columns of rooms in a chunk, a power of two */
+    public static final int CHUNK_BITS = 2;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /* Number of bytes of saved state kept in memory by default */
+    public static final long MAX_SAVED_BYTES = 4 << 20;
+
+    private final Level level;
+    private final long seed;
+    private final long maxSavedBytes;
+
+    /* Rooms in memory, by the position of their chunk */
+    private final Map<Long, Chunk> chunks = new HashMap<>();
+
+    /* Saved state of the evicted rooms in memory, by position, the oldest first */
+    private final LinkedHashMap<Long, byte[]> saved = new LinkedHashMap<>();
+
+    /* Place of the saved state of the other evicted rooms in spillFile, by position: offset and
+     * length; the file is made the first time it is needed and deleted when the JVM exits. Only
+     * liveBytes of its spillLength bytes belong to rooms still in it, the rest are gaps left by
+     * restored rooms. */
+    private final Map<Long, long[]> spilled = new HashMap<>();
+    private File spillFile;
+    private long spillLength;
+    private long liveBytes;
+
+    private int residentCount;
+    private int createdCount;
+    private int evictedCount;
+    private int restoredCount;
+    private long savedBytes;
+    private int spilledCount;
+
+    /**
+     * Constructor
+     *
+     * @param level layout of the rooms
+     *        random source of randomness for the rooms, seeded for reproducible games
+     */
+    public WorldMap(Level level, Random random) {
+        this(level, random, MAX_SAVED_BYTES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param level layout of the rooms
+     *        random source of randomness for the rooms, seeded for reproducible games
+     *        maxSavedBytes number of bytes of saved state to keep in memory before moving the
+     *                      oldest to a file
+     */
+    public WorldMap(Level level, Random random, long maxSavedBytes) {
+        this.level = level;
+        this.seed = random.nextLong();
+        this.maxSavedBytes = maxSavedBytes;
+    }
+
+    /**
+     * @return The room at the given position if it is in memory, otherwise null
+     */
+    public Room getResident(int row, int column) {
+        Chunk chunk = chunks.get(Level.position(row >> CHUNK_BITS, column >> CHUNK_BITS));
+        return (chunk != null) ? chunk.rooms[slot(row, column)] : null;
+    }
+
+    /**
+     * @return The room at the given position, restored or made from the level if it is not in
+     *         memory; null if the level has no room there
+     */
+    public Room get(int row, int column) {
+        Room room = getResident(row, column);
+        if (room != null) {
+            return room;
+        }
+        long position = Level.position(row, column);
+        byte[] state = saved.remove(position);
+        if (state != null) {
+            savedBytes -= state.length;
+        } else if (spilled.containsKey(position)) {
+            long[] place = spilled.remove(position);
+            state = readSpilled(place);
+            liveBytes -= place[1];
+            if (spillLength - liveBytes > liveBytes) {
+                compactSpillFile();
+            }
+        }
+        if (state != null) {
+            room = restore(state);
+            restoredCount++;
+        } else if (level.contains(row, column)) {
+            room = level.createRoom(row, column, createRandom(row, column));
+            createdCount++;
+        } else {
+            return null;
+        }
+        long key = Level.position(row >> CHUNK_BITS, column >> CHUNK_BITS);
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new Chunk();
+            chunks.put(key, chunk);
+        }
+        chunk.rooms[slot(row, column)] = room;
+        chunk.count++;
+        residentCount++;
+        return room;
+    }
+
+    /**
+     * Evicts every room more than the given number of rows or columns away from a position. The
+     * work done depends on the number of rooms in memory, not on the size of the level.
+     *
+     * @param row row of the room the main character is in
+     *        column column of the room the main character is in
+     *        radius number of rows and columns around it to keep in memory
+     */
+    public void evictFarFrom(int row, int column, int radius) {
+        Iterator<Map.Entry<Long, Chunk>> iterChunk = chunks.entrySet().iterator();
+        while (iterChunk.hasNext()) {
+            Map.Entry<Long, Chunk> entry = iterChunk.next();
+            int chunkRow = (int) (entry.getKey() >> 32);
+            int chunkColumn = (int) (long) entry.getKey();
+            Chunk chunk = entry.getValue();
+            for (int k = 0; k < chunk.rooms.length; k++) {
+                if (chunk.rooms[k] == null) {
+                    continue;
+                }
+                int r = (chunkRow << CHUNK_BITS) | (k >> CHUNK_BITS);
+                int c = (chunkColumn << CHUNK_BITS) | (k & CHUNK_MASK);
+                if (Math.abs(r - row) > radius || Math.abs(c - column) > radius) {
+                    byte[] state = save(chunk.rooms[k]);
+                    saved.put(Level.position(r, c), state);
+                    savedBytes += state.length;
+                    chunk.rooms[k] = null;
+                    chunk.count--;
+                    residentCount--;
+                    evictedCount++;
+                }
+            }
+            if (chunk.count == 0) {
+                iterChunk.remove();
+            }
+        }
+        while (savedBytes > maxSavedBytes) {
+            spillOldest();
+        }
+    }
+
+    /**
+     * @return Random of the room at a position, the same for every map with the same seed
+     */
+    private Random createRandom(int row, int column) {
+        return new Random(seed ^ (Level.position(row, column) * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * Moves the saved state that has been in memory the longest to the end of the spill file
+     */
+    private void spillOldest() {
+        Iterator<Map.Entry<Long, byte[]>> iterSaved = saved.entrySet().iterator();
+        Map.Entry<Long, byte[]> oldest = iterSaved.next();
+        byte[] state = oldest.getValue();
+        try {
+            if (spillFile == null) {
+                spillFile = File.createTempFile("rooms", ".bin");
+                spillFile.deleteOnExit();
+            }
+            try (RandomAccessFile file = new RandomAccessFile(spillFile, "rw")) {
+                file.seek(spillLength);
+                file.write(state);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Room could not be saved", e);
+        }
+        spilled.put(oldest.getKey(), new long[] {spillLength, state.length});
+        spillLength += state.length;
+        liveBytes += state.length;
+        savedBytes -= state.length;
+        spilledCount++;
+        iterSaved.remove();
+    }
+
+    /**
+     * @param place offset and length of a saved state in the spill file
+     * @return The saved state
+     */
+    private byte[] readSpilled(long[] place) {
+        byte[] state = new byte[(int) place[1]];
+        try (RandomAccessFile file = new RandomAccessFile(spillFile, "r")) {
+            file.seek(place[0]);
+            file.readFully(state);
+        } catch (IOException e) {
+            throw new IllegalStateException("Room could not be restored", e);
+        }
+        return state;
+    }
+
+    /**
+     * Moves the saved states still in the spill file to its start, in the order they are in the
+     * file, and cuts off the rest. Only one state is read into memory at a time.
+     */
+    private void compactSpillFile() {
+        List<long[]> places = new ArrayList<>(spilled.values());
+        places.sort((a, b) -> Long.compare(a[0], b[0]));
+        long end = 0;
+        try (RandomAccessFile file = new RandomAccessFile(spillFile, "rw")) {
+            for (long[] place : places) {
+                if (place[0] != end) {
+                    byte[] state = new byte[(int) place[1]];
+                    file.seek(place[0]);
+                    file.readFully(state);
+                    file.seek(end);
+                    file.write(state);
+                    place[0] = end;
+                }
+                end += place[1];
+            }
+            file.setLength(end);
+        } catch (IOException e) {
+            throw new IllegalStateException("Rooms could not be moved in their file", e);
+        }
+        spillLength = end;
+    }
+
+    /**
+     * Adds every room in memory to a list
+     */
+    public void addResidentRooms(List<Room> rooms) {
+        for (Chunk chunk : chunks.values()) {
+            for (Room room : chunk.rooms) {
+                if (room != null) {
+                    rooms.add(room);
+                }
+            }
+        }
+    }
+
+    /**
+     * CHUNK_SIZE by CHUNK_SIZE rooms, row by row, and the number of them in memory
+     */
+    private static class Chunk {
+        final Room[] rooms = new Room[CHUNK_SIZE * CHUNK_SIZE];
+        int count;
+    }
+
+    /**
+     * @return Index of a room in its chunk
+     */
+    private static int slot(int row, int column) {
+        return ((row & CHUNK_MASK) << CHUNK_BITS) | (column & CHUNK_MASK);
+    }
+
+    /**
+     * @return The state of a room and everything in it as bytes
+     */
+    static byte[] save(Room room) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(room);
+        } catch (IOException e) {
+            throw new IllegalStateException("Room could not be saved", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return The room saved by save()
+     */
+    static Room restore(byte[] state) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            return (Room) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Room could not be restored", e);
+        }
+    }
+
+    /**
+     * @return Number of rooms in memory
+     */
+    public int getResidentCount() {
+        return residentCount;
+    }
+
+    /**
+     * @return Number of chunks in memory
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * @return Number of rooms made from the level
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * @return Number of times a room was evicted
+     */
+    public int getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * @return Number of times an evicted room was restored
+     */
+    public int getRestoredCount() {
+        return restoredCount;
+    }
+
+    /**
+     * @return Number of bytes of the saved state of the evicted rooms kept in memory
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * @return Number of times the saved state of a room was moved to the spill file
+     */
+    public int getSpilledCount() {
+        return spilledCount;
+    }
+
+    /**
+     * @return Number of bytes of the spill file, including the gaps left by restored rooms
+     */
+    public long getSpillFileBytes() {
+        return spillLength;
+    }
+
+    /**
+     * @return Number of bytes of the saved state of the rooms in the spill file
+     */
+    public long getSpilledBytes() {
+        return liveBytes;
+    }
+}
@@ -0,0 +1,211 @@
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Everything needed to draw one time step of the game, copied out of the game objects so that
+ * another thread can draw it while the simulation goes on: the background of the room and the
+ * sprites that do not move, and for every other sprite its previous and current position so that
+ * it can be drawn in between. Sprites are kept in the order they are drawn in, as parallel arrays
+ * that only grow, so filling a snapshot creates no objects.
+ *
+ * A snapshot is filled by the simulation with GameEngine.addTo() and handed to the render thread
+ * through a TripleBuffer, after which it is not changed until the render thread is done with it.
+ */
+public class WorldSnapshot {
+
+    private static final Sprite[] SPRITES = Sprite.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    /* Number of the time step, increased by every fill; 0 if the snapshot was never filled */
+    private long sequence;
+
+    /* System.nanoTime() at which the current positions are due, see getAlpha() */
+    private long stateNanos;
+
+    /* Room the snapshot was taken of, only compared, and its static version and background */
+    private Object room;
+    private int staticVersion;
+    private String background;
+
+    /* Sprites that do not move, in room coordinates */
+    private int staticCount;
+    private int[] staticSprites = new int[INITIAL_CAPACITY];
+    private int[] staticX = new int[INITIAL_CAPACITY];
+    private int[] staticY = new int[INITIAL_CAPACITY];
+
+    /* Sprites that move, with their previous and current positions in room coordinates */
+    private int count;
+    private int[] sprites = new int[INITIAL_CAPACITY];
+    private int[] prevX = new int[INITIAL_CAPACITY];
+    private int[] prevY = new int[INITIAL_CAPACITY];
+    private int[] x = new int[INITIAL_CAPACITY];
+    private int[] y = new int[INITIAL_CAPACITY];
+
+    /* Numbers shown by the performance HUD */
+    private int projectileCount;
+    private int enemyCount;
+    private long totalTicks;
+    private long totalTickNanos;
+    private long allocatedBytes;
+
+    /**
+     * Empties the snapshot to fill it with a new time step
+     *
+     * @param sequence number of the time step
+     *        stateNanos System.nanoTime() at which the current positions are due
+     */
+    public void clear(long sequence, long stateNanos) {
+        this.sequence = sequence;
+        this.stateNanos = stateNanos;
+        room = null;
+        background = null;
+        staticCount = 0;
+        count = 0;
+    }
+
+    /**
+     * Sets the room the snapshot is taken of
+     *
+     * @param room room, only compared to find out whether another room is drawn
+     *        staticVersion see Room.getStaticVersion()
+     *        background image file of the background of the room, can be null
+     */
+    public void setRoom(Object room, int staticVersion, String background) {
+        this.room = room;
+        this.staticVersion = staticVersion;
+        this.background = background;
+    }
+
+    /**
+     * Adds a sprite that does not move
+     *
+     * @param s sprite
+     *        px x coordinate of its upper-left corner in the room
+     *        py y coordinate of its upper-left corner in the room
+     */
+    public void addStatic(Sprite s, int px, int py) {
+        if (staticCount == staticSprites.length) {
+            int capacity = 2 * staticSprites.length;
+            staticSprites = Arrays.copyOf(staticSprites, capacity);
+            staticX = Arrays.copyOf(staticX, capacity);
+            staticY = Arrays.copyOf(staticY, capacity);
+        }
+        staticSprites[staticCount] = s.ordinal();
+        staticX[staticCount] = px;
+        staticY[staticCount] = py;
+        staticCount++;
+    }
+
+    /**
+     * Adds a sprite drawn between two positions
+     *
+     * @param s sprite
+     *        px0 x coordinate of its upper-left corner in the room before the time step
+     *        py0 y coordinate of its upper-left corner in the room before the time step
+     *        px1 x coordinate of its upper-left corner in the room after the time step
+     *        py1 y coordinate of its upper-left corner in the room after the time step
+     */
+    public void add(Sprite s, int px0, int py0, int px1, int py1) {
+        if (count == sprites.length) {
+            int capacity = 2 * sprites.length;
+            sprites = Arrays.copyOf(sprites, capacity);
+            prevX = Arrays.copyOf(prevX, capacity);
+            prevY = Arrays.copyOf(prevY, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+        }
+        sprites[count] = s.ordinal();
+        prevX[count] = px0;
+        prevY[count] = py0;
+        x[count] = px1;
+        y[count] = py1;
+        count++;
+    }
+
+    /**
+     * Sets the numbers shown by the performance HUD
+     *
+     * @param projectiles number of projectiles in the room
+     *        enemies number of enemies in the room
+     *        ticks number of time steps run since the game started
+     *        tickNanos total time those time steps took
+     *        allocated bytes allocated by the game thread so far, -1 if not known
+     */
+    public void setStats(int projectiles, int enemies, long ticks, long tickNanos,
+                         long allocated) {
+        this.projectileCount = projectiles;
+        this.enemyCount = enemies;
+        this.totalTicks = ticks;
+        this.totalTickNanos = tickNanos;
+        this.allocatedBytes = allocated;
+    }
+
+    /**
+     * Draws the snapshot
+     *
+     * @param g The <code>Graphics</code> context used for drawing the snapshot
+     *        alpha fraction of the time step between the previous and current positions to draw
+     *              the moving sprites at
+     *        layer static layer of the thread drawing the snapshot
+     */
+    public void draw(Graphics g, double alpha, StaticLayer layer) {
+        SpriteAtlas atlas = SpriteAtlas.get();
+        GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+        if (!layer.isCurrent(gc, room, staticVersion)) {
+            Graphics2D lg = layer.begin(gc, background);
+            lg.translate(-GameCourt.BORDER, -GameCourt.BORDER);
+            for (int i = 0; i < staticCount; i++) {
+                atlas.draw(lg, SPRITES[staticSprites[i]], staticX[i], staticY[i]);
+            }
+            layer.end(lg, room, staticVersion);
+        }
+        layer.draw(g);
+        for (int i = 0; i < count; i++) {
+            atlas.draw(g, SPRITES[sprites[i]], GameObj.interpolate(prevX[i], x[i], alpha),
+                       GameObj.interpolate(prevY[i], y[i], alpha));
+        }
+    }
+
+    /**
+     * @param now current value of System.nanoTime()
+     *        stepNanos length of a time step
+     * @return Fraction of the time step to draw the moving sprites at: the current positions are
+     *         reached one time step after they are due, so that drawing never runs ahead of them
+     */
+    public double getAlpha(long now, long stepNanos) {
+        double alpha = (double) (now - stateNanos) / stepNanos;
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getSpriteCount() {
+        return count;
+    }
+
+    public int getStaticSpriteCount() {
+        return staticCount;
+    }
+
+    public int getProjectileCount() {
+        return projectileCount;
+    }
+
+    public int getEnemyCount() {
+        return enemyCount;
+    }
+
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    public long getTotalTickNanos() {
+        return totalTickNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
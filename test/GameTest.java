@@ -4,7 +4,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 /** Put your OWN test cases in this file, for all classes in the assignment. */
 public class GameTest {
@@ -83,6 +88,31 @@ public class GameTest {
 		assertFalse(room.isOpen());
 	}
 
+	@Test
+	public void testRoomProjectilesAreOwnedByRoom() {
+		Room room1 = new Room("Bkgrnd1Left", "Bkgrnd1LeftClosed.png");
+		Room room2 = new Room("Bkgrnd1Left", "Bkgrnd1LeftClosed.png");
+		room1.spawnProjectile(ProjectileStore.BLOB, 100, 100, Direction.UP, null);
+		assertEquals(1, room1.getProjectileCount());
+		assertEquals(0, room2.getProjectileCount());
+		room1.clearProjectiles();
+		assertEquals(0, room1.getProjectileCount());
+	}
+
+	@Test
+	public void testRoomEnemyFiresIntoItsRoom() {
+		Room room1 = new Room("Bkgrnd1Left", "Bkgrnd1LeftClosed.png");
+		Room room2 = new Room("Bkgrnd1Left", "Bkgrnd1LeftClosed.png");
+		PatrollingEnemy enemy = new PatrollingEnemy(200, 200, Direction.RIGHT);
+		room1.addEnemy(enemy);
+		assertTrue(enemy.getRoom() == room1);
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		room1.advance(blob);
+		room1.advance(blob);
+		assertEquals(1, room1.getProjectileCount());
+		assertEquals(0, room2.getProjectileCount());
+	}
+
 	// HEALTHBAR TESTS
 
 	@Test
@@ -130,4 +160,1145 @@ public class GameTest {
 		assertTrue(healthBar.removeFullHeart());
 	}
 	
-}
\ No newline at end of file
+	// GAME LOOP TESTS
+
+	private int loopSteps;
+
+	private GameLoop newCountingLoop() {
+		loopSteps = 0;
+		return new GameLoop(10, 10, new Runnable() {
+			public void run() {
+				loopSteps++;
+			}
+		}, new Runnable() {
+			public void run() {}
+		});
+	}
+
+	@Test
+	public void testGameLoopRunsOneStepPerInterval() {
+		GameLoop loop = newCountingLoop();
+		loop.start();
+		loop.frame(System.nanoTime() + 100000000L);
+		assertEquals(1, loopSteps);
+		assertEquals(0, loop.getCatchUpSteps());
+		assertEquals(0, loop.getDroppedSteps());
+		loop.stop();
+	}
+
+	@Test
+	public void testGameLoopCatchesUpWhenBehind() {
+		GameLoop loop = newCountingLoop();
+		loop.start();
+		loop.frame(System.nanoTime() + 350000000L);
+		assertEquals(3, loopSteps);
+		assertEquals(2, loop.getCatchUpSteps());
+		assertTrue(loop.getAlpha() > 0.4 && loop.getAlpha() < 0.6);
+		loop.stop();
+	}
+
+	@Test
+	public void testGameLoopDropsFramesWhenTooFarBehind() {
+		GameLoop loop = newCountingLoop();
+		loop.start();
+		loop.frame(System.nanoTime() + 1000000000L);
+		assertEquals(GameLoop.MAX_STEPS_PER_FRAME, loopSteps);
+		assertTrue(loop.getDroppedSteps() >= 10 - GameLoop.MAX_STEPS_PER_FRAME - 1);
+		loop.stop();
+	}
+
+	@Test
+	public void testGameLoopPacedRunsFramesOnEventThread() throws InterruptedException {
+		final boolean[] offEventThread = {false};
+		GameLoop loop = new GameLoop(10, 20, new Runnable() {
+			public void run() {}
+		}, new Runnable() {
+			public void run() {
+				offEventThread[0] |= !java.awt.EventQueue.isDispatchThread();
+			}
+		});
+		loop.startPaced();
+		Thread.sleep(300);
+		loop.stop();
+		assertTrue(loop.getTotalFrames() >= 2);
+		assertFalse(offEventThread[0]);
+	}
+
+	@Test
+	public void testFrameJitterMeasuresDistanceFromTarget() {
+		FrameJitter jitter = new FrameJitter(50); // one frame every 20 ms
+		jitter.record(1000000000L);
+		jitter.record(1020000000L);
+		jitter.record(1050000000L);
+		jitter.restart();
+		jitter.record(2000000000L); // after a pause, not an interval
+		assertEquals(2, jitter.getIntervals().getCount());
+		assertEquals(0, jitter.getJitter().getPercentile(50));
+		assertTrue(jitter.getJitter().getMax() >= 10000000L);
+	}
+	
+	// GAME ENGINE TESTS
+
+	@Test
+	public void testEngineStartsPlayingAtCenter() {
+		GameEngine engine = new GameEngine();
+		assertTrue(engine.isPlaying());
+		assertTrue(engine.getBlob().isAtCenter());
+		assertEquals(GameEngine.STATUS_PLAYING, engine.getStatus());
+	}
+
+	@Test
+	public void testEngineMovesBlobWhileKeyPressed() {
+		GameEngine engine = new GameEngine();
+		int x = engine.getBlob().getPx();
+		engine.pressMove(Direction.RIGHT);
+		engine.tick();
+		assertEquals(x + GameCourt.BLOB_VELOCITY, engine.getBlob().getPx());
+		engine.releaseMove(Direction.RIGHT);
+		engine.tick();
+		assertEquals(x + GameCourt.BLOB_VELOCITY, engine.getBlob().getPx());
+		assertFalse(engine.isMoveKeyPressed());
+	}
+
+	@Test
+	public void testEngineOppositeKeyTakesOverOnRelease() {
+		GameEngine engine = new GameEngine();
+		engine.pressMove(Direction.LEFT);
+		engine.pressMove(Direction.RIGHT);
+		engine.releaseMove(Direction.RIGHT);
+		assertEquals(-GameCourt.BLOB_VELOCITY, engine.getBlob().getVx());
+		assertEquals(Direction.LEFT, engine.getBlobDirection());
+	}
+
+	@Test
+	public void testEnginePauseStopsTicks() {
+		GameEngine engine = new GameEngine();
+		engine.togglePause();
+		assertEquals(GameEngine.STATUS_PAUSED, engine.getStatus());
+		int x = engine.getBlob().getPx();
+		engine.pressMove(Direction.RIGHT);
+		engine.tick();
+		assertEquals(x, engine.getBlob().getPx());
+		engine.togglePause();
+		assertTrue(engine.isPlaying());
+	}
+
+	@Test
+	public void testHeadlessRunsWithTheSameSeedPlayTheSameGames() {
+		HeadlessRunner first = new HeadlessRunner(7);
+		HeadlessRunner second = new HeadlessRunner(7);
+		assertEquals(7, first.getEngine().getSeed());
+		first.run(3000);
+		second.run(3000);
+		assertEquals(first.getEngine().getSeed(), second.getEngine().getSeed());
+		assertEquals(first.getEngine().getTickCount(), second.getEngine().getTickCount());
+		assertEquals(first.getEngine().getBlob().getPx(), second.getEngine().getBlob().getPx());
+		assertEquals(first.getEngine().getBlob().getPy(), second.getEngine().getBlob().getPy());
+	}
+	
+	// REPLAY TESTS
+
+	@Test
+	public void testReplayReproducesGame() throws IOException {
+		GameEngine engine = new GameEngine(42);
+		ReplayRecorder recorder = new ReplayRecorder();
+		engine.setRecorder(recorder);
+		Random random = new Random(7);
+		Direction[] directions = Direction.values();
+		for (int t = 0; t < 2000 && !engine.isOver(); t++) {
+			if (t % 10 == 0) {
+				engine.pressMove(directions[random.nextInt(4)]);
+			} else if (t % 10 == 5) {
+				engine.releaseMove(directions[random.nextInt(4)]);
+			}
+			if (t % 3 == 0) {
+				engine.fire(directions[random.nextInt(4)]);
+			}
+			engine.tick();
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		recorder.write(out, engine.getTickCount());
+
+		ReplayPlayer player = new ReplayPlayer(new ByteArrayInputStream(out.toByteArray()));
+		GameEngine replayed = new GameEngine(0);
+		player.play(replayed);
+		assertEquals(42, player.getSeed());
+		assertEquals(engine.getTickCount(), replayed.getTickCount());
+		assertEquals(engine.getBlob().getPx(), replayed.getBlob().getPx());
+		assertEquals(engine.getBlob().getPy(), replayed.getBlob().getPy());
+		assertEquals(engine.getStatus(), replayed.getStatus());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReplayRejectsOtherFiles() throws IOException {
+		new ReplayPlayer(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}));
+	}
+	
+	// SPATIAL GRID TESTS
+
+	@Test
+	public void testSpatialGridFindsOnlyNearbyObjects() {
+		SpatialGrid grid = new SpatialGrid(GameCourt.COURT_WIDTH, GameCourt.COURT_HEIGHT, 64);
+		Boulder near = new Boulder(0, 0);
+		Boulder far = new Boulder(600, 300);
+		grid.add(near, CollisionLayers.BOULDER);
+		grid.add(far, CollisionLayers.BOULDER);
+		assertEquals(1, grid.query(10, 10, 16, 16, CollisionLayers.BOULDER));
+		assertTrue(grid.get(grid.getResult(0)) == near);
+	}
+
+	@Test
+	public void testSpatialGridReportsObjectInManyCellsOnce() {
+		SpatialGrid grid = new SpatialGrid(GameCourt.COURT_WIDTH, GameCourt.COURT_HEIGHT, 16);
+		grid.add(new Boulder(0, 0), CollisionLayers.BOULDER);
+		assertEquals(1, grid.query(0, 0, 90, 90, CollisionLayers.BOULDER));
+	}
+
+	@Test
+	public void testSpatialGridFiltersLayersAndRemoved() {
+		SpatialGrid grid = new SpatialGrid(GameCourt.COURT_WIDTH, GameCourt.COURT_HEIGHT, 64);
+		grid.add(new Boulder(0, 0), CollisionLayers.BOULDER);
+		int enemy = grid.add(new PatrollingEnemy(0, 0, Direction.RIGHT), CollisionLayers.ENEMY);
+		assertEquals(1, grid.query(0, 0, 16, 16, CollisionLayers.ENEMY));
+		assertEquals(2, grid.query(0, 0, 16, 16, CollisionLayers.ENEMY | CollisionLayers.BOULDER));
+		grid.remove(enemy);
+		assertEquals(0, grid.query(0, 0, 16, 16, CollisionLayers.ENEMY));
+	}
+	
+	// PROJECTILE STORE TESTS
+
+	@Test
+	public void testProjectileStoreSpawnDiagonal() {
+		ProjectileStore store = new ProjectileStore(4);
+		int p = store.spawn(ProjectileStore.BOSS, 100, 100, Direction.UP, Direction.LEFT);
+		assertEquals(-ProjectileStore.PROJECTILE_VELOCITY, store.getVx(p));
+		assertEquals(-ProjectileStore.PROJECTILE_VELOCITY, store.getVy(p));
+		assertEquals(100 - store.getRadius(p), store.getPx(p));
+	}
+
+	@Test
+	public void testProjectileStoreSwapRemove() {
+		ProjectileStore store = new ProjectileStore(4);
+		store.spawn(ProjectileStore.BLOB, 100, 100, Direction.UP, null);
+		store.spawn(ProjectileStore.ENEMY, 200, 200, Direction.DOWN, null);
+		store.spawn(ProjectileStore.BOSS, 300, 300, Direction.LEFT, null);
+		store.remove(0);
+		assertEquals(2, store.size());
+		assertEquals(ProjectileStore.BOSS, store.getOwner(0));
+		assertEquals(ProjectileStore.ENEMY, store.getOwner(1));
+	}
+
+	@Test
+	public void testProjectileStoreGrowsPastCapacity() {
+		ProjectileStore store = new ProjectileStore(2);
+		for (int i = 0; i < 5; i++) {
+			store.spawn(ProjectileStore.BLOB, 100, 100, Direction.UP, null);
+		}
+		assertEquals(5, store.size());
+		assertTrue(store.getCapacity() >= 5);
+	}
+
+	@Test
+	public void testProjectileStoreHitsWall() {
+		ProjectileStore store = new ProjectileStore(4);
+		int p = store.spawn(ProjectileStore.BLOB, 20, 100, Direction.LEFT, null);
+		assertFalse(store.hitsWall(p));
+		store.move(p);
+		assertTrue(store.hitsWall(p));
+	}
+	
+	// ROOM HANDLER TESTS
+
+	@Test
+	public void testRoomHandlerAdvancesOnlyCurrentRoomByDefault() {
+		RoomHandler roomHandler = new RoomHandler(new Random(1));
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.moveToCenter();
+		roomHandler.advance(blob);
+		assertTrue(roomHandler.getRoomTickNanos(0, 1) > 0);
+		assertEquals(0, roomHandler.getRoomTickNanos(1, 1));
+	}
+
+	@Test
+	public void testRoomHandlerBackgroundSimulationAdvancesOtherRooms() {
+		RoomHandler roomHandler = new RoomHandler(new Random(1));
+		roomHandler.setBackgroundSimulation(true);
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.moveToCenter();
+		for (int t = 0; t < RoomHandler.BACKGROUND_INTERVAL; t++) {
+			roomHandler.advance(blob);
+		}
+		assertTrue(roomHandler.getRoomTickNanos(1, 1) > 0);
+		assertTrue(roomHandler.getRoomTickNanos(0, 0) > 0);
+	}
+	
+	@Test
+	public void testRoomHandlerMakesRoomsOnFirstEntry() {
+		RoomHandler roomHandler = new RoomHandler(new Random(1));
+		assertTrue(roomHandler.isRoomResident(0, 1));
+		assertFalse(roomHandler.isRoomResident(0, 0));
+		assertFalse(roomHandler.isRoomResident(2, 0));
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.moveToEdge(Direction.LEFT);
+		blob.setVx(-GameCourt.BLOB_VELOCITY);
+		roomHandler.advance(blob);
+		assertTrue(roomHandler.isRoomResident(0, 0));
+		assertEquals(1, roomHandler.getRoom().getEnemyCount());
+		assertEquals(1, roomHandler.getRoom().getBoulderCount());
+	}
+	
+	// ENTITY STORE TESTS
+
+	@Test
+	public void testEnemiesShareTheStoreOfTheirRoomInOrder() {
+		Room room = new Room("", "");
+		PatrollingEnemy first = new PatrollingEnemy(100, 100, Direction.UP);
+		FollowingEnemy second = new FollowingEnemy(200, 100);
+		SnipingEnemy third = new SnipingEnemy(300, 100, Direction.LEFT, null, 0, false);
+		room.addEnemy(first);
+		room.addEnemy(second);
+		room.addEnemy(third);
+		EntityStore store = first.getStore();
+		assertTrue(second.getStore() == store && third.getStore() == store);
+		assertEquals(3, store.size());
+		room.removeEnemy();
+		assertEquals(2, store.size());
+		assertTrue(store.get(0) == second && store.get(1) == third);
+		assertEquals(1, third.getIndex());
+		assertEquals(300, third.getPx());
+		assertFalse(first.getStore() == store);
+		assertEquals(100, first.getPx());
+		third.setVx(3);
+		room.advance(null);
+		assertEquals(303, third.getPx());
+	}
+
+	@Test
+	public void testObjectsThatNeverMoveShareOneStorePerRoom() {
+		Room room = new Room("", "");
+		room.addBoulder(10, 10);
+		Boulder boulder = new Boulder(300, 300);
+		room.addBoulder(boulder);
+		assertTrue(boulder.getStore() == room.getStaticStore());
+		assertEquals(2, room.getStaticStore().size());
+		assertEquals(300, boulder.getPx());
+		FinalRoom finalRoom = new FinalRoom("", "", new Random(1));
+		assertEquals(1, finalRoom.getStaticStore().size());
+	}
+
+	@Test
+	public void testEnemyStateSurvivesSavingItsRoom() {
+		Room room = new Room("", "");
+		PatrollingEnemy patrolling = new PatrollingEnemy(100, 100, Direction.UP);
+		room.addEnemy(patrolling);
+		room.addEnemy(new FollowingEnemy(200, 100));
+		for (int t = 0; t < 10; t++) {
+			room.advance(null);
+		}
+		patrolling.removeHealth();
+		Room restored = WorldMap.restore(WorldMap.save(room));
+		assertEquals(2, restored.getEnemyCount());
+		restored.advance(null);
+		room.advance(null);
+		assertEquals(WorldMap.save(room).length, WorldMap.save(restored).length);
+		assertTrue(java.util.Arrays.equals(WorldMap.save(room), WorldMap.save(restored)));
+	}
+
+	// WORLD MAP TESTS
+
+	/**
+	 * @return A level with a corridor of the given number of rooms from column 0 to the right,
+	 *         each with an enemy and a boulder
+	 */
+	private static Level corridor(int rooms) throws IOException {
+		StringBuilder text = new StringBuilder("start 0 0\n");
+		for (int j = 0; j < rooms; j++) {
+			text.append("room 0 ").append(j).append(" a.png\n");
+			text.append("following 100 100\nboulder 300 200\n");
+		}
+		return Level.parse(new java.io.StringReader(text.toString()));
+	}
+
+	@Test
+	public void testWorldMapEvictsFarRoomsAndRestoresTheirState() throws IOException {
+		WorldMap map = new WorldMap(corridor(2000), new Random(1));
+		Room first = map.get(0, 0);
+		first.removeEnemy();
+		first.addBoulder(new Boulder(500, 100));
+		first.spawnProjectile(ProjectileStore.BLOB, new Blob(GameCourt.BLOB_VELOCITY), 400, 300,
+				Direction.UP, null);
+		for (int j = 1; j < 2000; j++) {
+			map.get(0, j);
+			map.evictFarFrom(0, j, 1);
+			assertTrue(map.getResidentCount() <= 2);
+		}
+		assertEquals(2000, map.getCreatedCount());
+		assertEquals(1998, map.getEvictedCount());
+		assertTrue(map.getChunkCount() <= 2);
+		assertTrue(map.getResident(0, 0) == null);
+		assertTrue(map.get(0, 5000) == null);
+		
+		Room restored = map.get(0, 0);
+		assertEquals(1, map.getRestoredCount());
+		assertEquals(2000, map.getCreatedCount());
+		assertEquals(0, restored.getEnemyCount());
+		assertEquals(2, restored.getBoulderCount());
+		assertEquals(1, restored.getProjectileCount());
+		assertEquals(first.getStaticVersion(), restored.getStaticVersion());
+		restored.advance(null);
+	}
+
+	@Test
+	public void testWorldMapMovesOldSavedRoomsToAFile() throws IOException {
+		WorldMap map = new WorldMap(corridor(50), new Random(1), 4000);
+		map.get(0, 0).removeEnemy();
+		for (int j = 1; j < 50; j++) {
+			map.get(0, j);
+			map.evictFarFrom(0, j, 0);
+			assertTrue(map.getSavedBytes() <= 4000);
+		}
+		assertTrue(map.getSpilledCount() > 0);
+		Room restored = map.get(0, 0);
+		assertEquals(0, restored.getEnemyCount());
+		assertEquals(1, restored.getBoulderCount());
+		assertEquals(1, map.get(0, 1).getEnemyCount());
+	}
+
+	@Test
+	public void testWorldMapSpillFileDoesNotGrowWhenRoomsComeBack() throws IOException {
+		WorldMap map = new WorldMap(corridor(20), new Random(1), 0);
+		map.get(0, 0).removeEnemy();
+		long firstPass = 0;
+		for (int pass = 0; pass < 20; pass++) {
+			for (int k = 0; k < 20; k++) {
+				int j = (pass % 2 == 0) ? k : 19 - k;
+				map.get(0, j);
+				map.evictFarFrom(0, j, 0);
+				assertTrue(map.getSpillFileBytes() <= 2 * map.getSpilledBytes());
+			}
+			if (pass == 0) {
+				firstPass = map.getSpillFileBytes();
+			}
+		}
+		assertTrue(map.getSpillFileBytes() <= 2 * firstPass);
+		assertEquals(0, map.get(0, 0).getEnemyCount());
+		assertEquals(1, map.get(0, 19).getEnemyCount());
+		assertEquals(1, map.get(0, 10).getBoulderCount());
+	}
+
+	/**
+	 * Advances a final room whose boss is fighting, writing down the number of projectiles after
+	 * each time step, which depends on the order the boss attacks in
+	 */
+	private static void fight(Room room, Blob blob, int[] projectiles, int from, int ticks) {
+		for (int t = from; t < from + ticks; t++) {
+			room.advance(blob);
+			projectiles[t] = room.getProjectileCount();
+		}
+	}
+
+	@Test
+	public void testFinalRoomsDoNotShareTheirRandom() throws IOException {
+		Level level = Level.parse(new java.io.StringReader(
+				"start 0 0\nfinal 0 0 a.png b.png\nfinal 0 1 a.png b.png\n"));
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		WorldMap alone = new WorldMap(level, new Random(1));
+		FinalRoom room = (FinalRoom) alone.get(0, 0);
+		room.activateBoss();
+		int[] expected = new int[3000];
+		fight(room, blob, expected, 0, 3000);
+		// the same room while another final room is advanced in between, and made after it
+		WorldMap together = new WorldMap(level, new Random(1));
+		FinalRoom other = (FinalRoom) together.get(0, 1);
+		room = (FinalRoom) together.get(0, 0);
+		other.activateBoss();
+		room.activateBoss();
+		int[] actual = new int[3000];
+		int[] ignored = new int[3000];
+		for (int from = 0; from < 3000; from += 100) {
+			fight(other, blob, ignored, from, 100);
+			fight(room, blob, actual, from, 100);
+		}
+		assertTrue(java.util.Arrays.equals(expected, actual));
+	}
+
+	@Test
+	public void testWorldMapFindsRoomsAtNegativePositions() throws IOException {
+		Level level = Level.parse(new java.io.StringReader(
+				"start -5 -1\nroom -5 -1 a.png\nroom -5 0 b.png\nroom -4 -1 c.png\n"));
+		WorldMap map = new WorldMap(level, new Random(1));
+		assertEquals("b.png", map.get(-5, 0).getBackgroundFile());
+		assertEquals("c.png", map.get(-4, -1).getBackgroundFile());
+		assertTrue(map.get(-6, -1) == null);
+		assertTrue(level.hasDoor(-5, -1, Direction.RIGHT));
+		assertTrue(level.hasDoor(-4, -1, Direction.UP));
+		assertFalse(level.hasDoor(-4, -1, Direction.RIGHT));
+		map.evictFarFrom(-5, 0, 0);
+		assertEquals(1, map.getResidentCount());
+		assertTrue(map.getResident(-5, 0) != null);
+	}
+
+	@Test
+	public void testRoomHandlerFollowsExplicitDoors() throws IOException {
+		Level level = Level.parse(new java.io.StringReader(
+				"start 0 0\nroom 0 0 a.png\ndoors DOWN\nroom 0 1 b.png\nroom 1 0 c.png\n"));
+		RoomHandler roomHandler = new RoomHandler(level, new Random(1), 0);
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.moveToEdge(Direction.RIGHT);
+		blob.setVx(GameCourt.BLOB_VELOCITY);
+		roomHandler.advance(blob);
+		assertEquals(0, roomHandler.getColumn());
+		blob.moveToEdge(Direction.DOWN);
+		blob.setVx(0);
+		blob.setVy(GameCourt.BLOB_VELOCITY);
+		roomHandler.advance(blob);
+		assertEquals(1, roomHandler.getRow());
+		assertFalse(roomHandler.isRoomResident(0, 0));
+	}
+
+	@Test
+	public void testOnlyDoorsThatLeadSomewhereRecordRoomTransitions() throws IOException {
+		Level level = Level.parse(new java.io.StringReader(
+				"start 0 0\nroom 0 0 a.png\ndoors DOWN\nroom 0 1 b.png\nroom 1 0 c.png\n"));
+		RoomHandler roomHandler = new RoomHandler(level, new Random(1), 0);
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("transitions", ".jfr");
+		try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+			recording.enable(GameEvents.RoomTransition.class);
+			recording.start();
+			blob.moveToEdge(Direction.RIGHT);
+			blob.setVx(GameCourt.BLOB_VELOCITY);
+			for (int t = 0; t < 5; t++) {
+				roomHandler.advance(blob);
+			}
+			blob.moveToEdge(Direction.DOWN);
+			blob.setVx(0);
+			blob.setVy(GameCourt.BLOB_VELOCITY);
+			roomHandler.advance(blob);
+			recording.stop();
+			recording.dump(file);
+			List<jdk.jfr.consumer.RecordedEvent> events =
+					jdk.jfr.consumer.RecordingFile.readAllEvents(file);
+			assertEquals(1, events.size());
+			assertEquals("DOWN", events.get(0).getString("door"));
+			assertEquals(1, events.get(0).getInt("toRow"));
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
+	
+	// FLOW FIELD TESTS
+
+	@Test
+	public void testFollowingEnemyGoesAroundBoulder() {
+		Room room = new Room("", "");
+		Boulder boulder = new Boulder(300, 150);
+		room.addBoulder(boulder);
+		FollowingEnemy follower = new FollowingEnemy(100, 165);
+		room.addEnemy(follower);
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.setPx(600);
+		blob.setPy(165);
+		int t = 0;
+		while (follower.getPx() < 550 && t < 1000) {
+			follower.advance(blob);
+			follower.move();
+			assertFalse(follower.intersects(boulder));
+			t++;
+		}
+		assertTrue(follower.getPx() >= 550);
+		assertEquals(1, room.getFlowField(blob).getSearchCount());
+	}
+
+	@Test
+	public void testFlowFieldIsSharedAndOnlySearchedWhenTargetChangesCell() {
+		Room room = new Room("", "");
+		room.addBoulder(new Boulder(300, 150));
+		for (int k = 0; k < 50; k++) {
+			room.addEnemy(new FollowingEnemy(10 * k, 20));
+		}
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.setPx(600);
+		blob.setPy(300);
+		room.advance(blob);
+		FlowField field = room.getFlowField(blob);
+		assertEquals(1, field.getSearchCount());
+		blob.setPx(600 + FlowField.CELL_SIZE - 1 - 600 % FlowField.CELL_SIZE);
+		room.advance(blob);
+		assertEquals(1, field.getSearchCount());
+		blob.setPx(blob.getPx() + 1);
+		room.advance(blob);
+		assertEquals(2, field.getSearchCount());
+		room.addBoulder(new Boulder(100, 100));
+		room.advance(blob);
+		assertEquals(3, field.getSearchCount());
+		assertEquals(-1, field.getDistance(110, 100));
+		assertEquals(0, field.getDistance(blob.getPx(), blob.getPy()));
+	}
+	
+	// LINE OF SIGHT TESTS
+
+	@Test
+	public void testSnipingEnemyHoldsFireWhenBoulderIsInTheWay() {
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.setPx(600);
+		blob.setPy(165);
+		Room blocked = new Room("", "");
+		blocked.addBoulder(new Boulder(300, 150));
+		blocked.addEnemy(new SnipingEnemy(100, 165, Direction.RIGHT, null, 0, true));
+		blocked.advance(blob);
+		assertEquals(0, blocked.getProjectileCount());
+		assertEquals(1, blocked.getShotsSkipped());
+		Room clear = new Room("", "");
+		clear.addBoulder(new Boulder(300, 350));
+		clear.addEnemy(new SnipingEnemy(100, 165, Direction.RIGHT, null, 0, true));
+		clear.advance(blob);
+		assertEquals(1, clear.getProjectileCount());
+		assertEquals(0, clear.getShotsSkipped());
+	}
+
+	@Test
+	public void testSnipingEnemyFiresPastBoulderJustOffItsPath() {
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.setPx(600);
+		blob.setPy(165);
+		Room room = new Room("", "");
+		// the shot passes 7 pixels clear of the boulder, the centers of the cells do not
+		room.addBoulder(new Boulder(300, 100));
+		room.addEnemy(new SnipingEnemy(100, 165, Direction.RIGHT, null, 0, true));
+		room.advance(blob);
+		assertEquals(1, room.getProjectileCount());
+		assertEquals(0, room.getShotsSkipped());
+		assertEquals(1, room.getLineOfSight().getExactCount());
+	}
+
+	@Test
+	public void testLineOfSightIsOnlyComputedOncePerPairOfCells() {
+		Room room = new Room("", "");
+		room.addBoulder(new Boulder(300, 150));
+		assertFalse(room.hasLineOfSight(100, 190, 600, 190));
+		assertFalse(room.hasLineOfSight(105, 195, 605, 195));
+		assertFalse(room.hasLineOfSight(600, 190, 100, 190));
+		assertTrue(room.hasLineOfSight(100, 400, 600, 400));
+		LineOfSight lineOfSight = room.getLineOfSight();
+		assertEquals(4, lineOfSight.getQueryCount());
+		assertEquals(2, lineOfSight.getComputedCount());
+		room.addBoulder(new Boulder(300, 350));
+		assertFalse(room.hasLineOfSight(100, 400, 600, 400));
+		assertEquals(3, lineOfSight.getComputedCount());
+	}
+	
+	// COLLISION LAYER TESTS
+
+	@Test
+	public void testDefaultCollisionLayersKeepFriendlyProjectilesApart() {
+		CollisionLayers layers = CollisionLayers.DEFAULT;
+		assertTrue(layers.interacts(CollisionLayers.BLOB_PROJECTILE, CollisionLayers.ENEMY));
+		assertTrue(layers.interacts(CollisionLayers.ENEMY, CollisionLayers.BLOB_PROJECTILE));
+		assertFalse(layers.interacts(CollisionLayers.BLOB_PROJECTILE, CollisionLayers.BLOB));
+		assertFalse(layers.interacts(CollisionLayers.ENEMY_PROJECTILE, CollisionLayers.ENEMY));
+		assertFalse(layers.interacts(CollisionLayers.ENEMY, CollisionLayers.ENEMY));
+		CollisionLayers changed = layers.withInteraction(CollisionLayers.ENEMY, CollisionLayers.ENEMY, true);
+		assertTrue(changed.interacts(CollisionLayers.ENEMY, CollisionLayers.ENEMY));
+		assertFalse(layers.interacts(CollisionLayers.ENEMY, CollisionLayers.ENEMY));
+		ProjectileStore store = new ProjectileStore(4);
+		int boss = store.spawn(ProjectileStore.BOSS, 100, 100, Direction.UP, null);
+		assertEquals(CollisionLayers.ENEMY_PROJECTILE, store.getLayer(boss));
+	}
+
+	@Test
+	public void testProjectilesStopEachOtherOnlyWhenTheirLayersInteract() {
+		Room room = new Room("", "");
+		room.spawnProjectile(ProjectileStore.BLOB, 200, 200, Direction.RIGHT, null);
+		room.spawnProjectile(ProjectileStore.ENEMY, 210, 200, Direction.LEFT, null);
+		room.advance(null);
+		assertEquals(2, room.getProjectileCount());
+		room.setCollisionLayers(CollisionLayers.DEFAULT.withInteraction(
+				CollisionLayers.BLOB_PROJECTILE, CollisionLayers.ENEMY_PROJECTILE, true));
+		room.spawnProjectile(ProjectileStore.BLOB, 400, 300, Direction.UP, null);
+		room.advance(null);
+		assertEquals(1, room.getProjectileCount());
+		assertEquals(CollisionLayers.DEFAULT, new Room("", "").getCollisionLayers());
+	}
+
+	@Test
+	public void testProjectileNeverHitsTheCharacterThatFiredIt() {
+		Room room = new Room("", "");
+		room.setCollisionLayers(CollisionLayers.DEFAULT.withInteraction(
+				CollisionLayers.BLOB_PROJECTILE, CollisionLayers.BLOB, true));
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		room.spawnProjectile(ProjectileStore.BLOB, blob, blob.getPxCenter(), blob.getPyCenter(),
+				Direction.UP, null);
+		room.advance(blob);
+		assertEquals(1, room.getProjectileCount());
+		room.spawnProjectile(ProjectileStore.BLOB, blob.getPxCenter(), blob.getPyCenter(),
+				Direction.UP, null);
+		room.advance(blob);
+		assertEquals(1, room.getProjectileCount());
+	}
+
+	@Test
+	public void testEnemiesStopInFrontOfEachOtherOnlyWhenTheirLayersInteract() {
+		Room room = new Room("", "");
+		PatrollingEnemy moving = new PatrollingEnemy(100, 100, Direction.RIGHT);
+		PatrollingEnemy standing = new PatrollingEnemy(100, 100 + 2 * moving.getRadius() + 2,
+				Direction.RIGHT);
+		room.addEnemy(moving);
+		room.addEnemy(standing);
+		standing.setVy(0);
+		room.advance(null);
+		assertEquals(100 + moving.getVy(), moving.getPy());
+		moving.setPy(100);
+		room.setCollisionLayers(CollisionLayers.DEFAULT.withInteraction(
+				CollisionLayers.ENEMY, CollisionLayers.ENEMY, true));
+		room.advance(null);
+		assertEquals(100, moving.getPy());
+		assertEquals(100, standing.getPx());
+	}
+	
+	// LEVEL TESTS
+
+	@Test
+	public void testLevelParsesRoomsAndObjects() throws IOException {
+		Level level = Level.parse(new java.io.StringReader(
+				"start 0 1  # comment\n"
+				+ "room 0 0 a.png a-closed.png\n"
+				+ "boulder 300 150\n"
+				+ "sniping 195 7 LEFT DOWN 0.2 waiting left\n"
+				+ "following 0 0 edge DOWN\n"
+				+ "\n"
+				+ "room 0 1 b.png\n"
+				+ "final 1 0 c.png c-closed.png\n"));
+		assertEquals(3, level.getRoomCount());
+		assertEquals(1, level.getStartColumn());
+		assertTrue(level.hasDoor(0, 0, Direction.RIGHT));
+		assertTrue(level.hasDoor(0, 0, Direction.DOWN));
+		assertFalse(level.hasDoor(0, 0, Direction.LEFT));
+		assertFalse(level.hasDoor(0, 1, Direction.DOWN));
+		assertEquals("a-closed.png", level.getEntryBackground(0, 0));
+		assertEquals("b.png", level.getEntryBackground(0, 1));
+		assertEquals("c-closed.png", level.getEntryBackground(1, 0));
+		Room room = level.createRoom(0, 0, new Random(1));
+		assertEquals(2, room.getEnemyCount());
+		assertEquals(1, room.getBoulderCount());
+		assertTrue(level.createRoom(1, 0, new Random(1)) instanceof FinalRoom);
+		assertFalse(level.contains(1, 1));
+	}
+	
+	@Test
+	public void testLevelReportsLineOfError() {
+		try {
+			Level.parse(new java.io.StringReader("start 0 0\nroom 0 0 a.png\nboulder 1\n"));
+			fail("missing coordinate not reported");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Line 3"));
+		}
+		try {
+			Level.parse(new java.io.StringReader("start 0 0\nroom 0 1 a.png\n"));
+			fail("missing start room not reported");
+		} catch (IOException e) {
+			assertEquals("No start room", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testLevelRejectsNumbersThatDoNotFitItsFormat() {
+		String[] lines = {"boulder 40000 10", "sniping 10 10 LEFT - 40 firing"};
+		for (String line : lines) {
+			try {
+				Level.parse(new java.io.StringReader("start 0 0\nroom 0 0 a.png\n" + line + "\n"));
+				fail(line + " not rejected");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Line 3"));
+				assertTrue(e.getMessage().endsWith("out of range"));
+			}
+		}
+	}
+
+	@Test
+	public void testCompiledLevelWithoutEmptySlotIsRejected() throws IOException {
+		Level level = Level.parse(new java.io.StringReader("start 0 0\nroom 0 0 a.png\n"));
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		level.write(out);
+		java.nio.ByteBuffer data = java.nio.ByteBuffer.wrap(out.toByteArray());
+		// header, the string "a.png" and the room count come before the number of slots
+		int slots = data.getInt(22);
+		for (int slot = 0; slot < slots; slot++) {
+			data.putShort(26 + 8 * slot, (short) 100);
+			data.putShort(28 + 8 * slot, (short) 100);
+			data.putInt(30 + 8 * slot, 1);
+		}
+		try {
+			new Level(data);
+			fail("full room table not rejected");
+		} catch (IOException e) {
+			assertEquals("Corrupt level", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testCompiledLevelIsMappedFromFile() throws IOException {
+		Level level = RoomHandler.getDefaultLevel();
+		java.io.File file = java.io.File.createTempFile("level", ".bin");
+		try {
+			try (java.io.OutputStream out = new java.io.FileOutputStream(file)) {
+				level.write(out);
+			}
+			Level compiled = Level.load(file);
+			assertEquals(level.getSize(), compiled.getSize());
+			assertEquals(level.getRoomCount(), compiled.getRoomCount());
+			for (int i = 0; i < 3; i++) {
+				for (int j = 0; j < 3; j++) {
+					if (!level.contains(i, j)) {
+						assertFalse(compiled.contains(i, j));
+						continue;
+					}
+					Room a = level.createRoom(i, j, new Random(1));
+					Room b = compiled.createRoom(i, j, new Random(1));
+					assertEquals(a.getEnemyCount(), b.getEnemyCount());
+					assertEquals(a.getBoulderCount(), b.getBoulderCount());
+					assertEquals(a.getBackgroundFile(), b.getBackgroundFile());
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	// SCENARIO TESTS
+
+	@Test
+	public void testScenarioGeneratorCounts() {
+		Room room = new ScenarioGenerator(3).generate(4, 6, 50);
+		assertEquals(4 * ScenarioGenerator.ENEMY_KINDS, room.getEnemyCount());
+		assertEquals(6, room.getBoulderCount());
+		assertEquals(50, room.getProjectileCount());
+		assertFalse(room.isOpen());
+	}
+
+	@Test
+	public void testScenarioGeneratorIsDeterministic() {
+		ScenarioGenerator generator1 = new ScenarioGenerator(7);
+		ScenarioGenerator generator2 = new ScenarioGenerator(7);
+		Room room1 = generator1.generate(3, 3, 100);
+		Room room2 = generator2.generate(3, 3, 100);
+		Blob blob1 = generator1.createBlob();
+		Blob blob2 = generator2.createBlob();
+		for (int t = 0; t < 100; t++) {
+			room1.advance(blob1);
+			room2.advance(blob2);
+			assertEquals(room1.getProjectileCount(), room2.getProjectileCount());
+			assertEquals(room1.getNarrowPhaseTests(), room2.getNarrowPhaseTests());
+		}
+		assertEquals(room1.getEnemyCount(), room2.getEnemyCount());
+		assertEquals(blob1.isDead(), blob2.isDead());
+	}
+	
+	// PROFILING TESTS
+
+	@Test
+	public void testLatencyHistogramPercentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			h.record(i * 1000L);
+		}
+		assertEquals(1000, h.getCount());
+		assertEquals(1000000L, h.getMax());
+		long p50 = h.getPercentile(50);
+		long p99 = h.getPercentile(99);
+		assertTrue(p50 >= 500000L && p50 <= 500000L * 9 / 8);
+		assertTrue(p99 >= 990000L && p99 <= 1000000L);
+		h.reset();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getPercentile(50));
+	}
+
+	@Test
+	public void testLatencyHistogramBucketsCoverValues() {
+		long[] values = {0, 1, 7, 8, 9, 15, 16, 1000, 123456789L, Long.MAX_VALUE};
+		for (long v : values) {
+			int b = LatencyHistogram.bucket(v);
+			assertTrue(LatencyHistogram.highestValue(b) >= v);
+			assertTrue(b == 0 || LatencyHistogram.highestValue(b - 1) < v);
+		}
+	}
+
+	@Test
+	public void testTickProfilerDisabledRecordsNothing() {
+		boolean wasEnabled = TickProfiler.isEnabled();
+		TickProfiler.setEnabled(false);
+		TickProfiler.reset();
+		RoomHandler roomHandler = new RoomHandler(new Random(1));
+		Blob blob = new Blob(GameCourt.BLOB_VELOCITY);
+		blob.moveToCenter();
+		roomHandler.advance(blob);
+		assertEquals(0, TickProfiler.getHistogram(TickProfiler.TICK).getCount());
+
+		TickProfiler.setEnabled(true);
+		roomHandler.advance(blob);
+		assertEquals(1, TickProfiler.getHistogram(TickProfiler.TICK).getCount());
+		assertEquals(1, TickProfiler.getHistogram(TickProfiler.PROJECTILES).getCount());
+		assertEquals(1, TickProfiler.getHistogram(TickProfiler.ENEMIES).getCount());
+		TickProfiler.setEnabled(wasEnabled);
+		TickProfiler.reset();
+	}
+	
+	@Test
+	public void testGameEventsDisabledByDefault() {
+		assertFalse(jdk.jfr.EventType.getEventType(GameEvents.Tick.class).isEnabled());
+		assertFalse(new GameEvents.EnemyDeath().shouldCommit());
+		assertFalse(new GameEvents.ProjectileSpawn().shouldCommit());
+	}
+
+	// PERFORMANCE HUD TESTS
+
+	@Test
+	public void testHudWriteDecimal() {
+		char[] buf = new char[16];
+		int end = PerformanceHud.writeDecimal(buf, 2, 5, 3);
+		assertEquals("0.005", new String(buf, 2, end - 2));
+		end = PerformanceHud.writeDecimal(buf, 0, 12345, 1);
+		assertEquals("1234.5", new String(buf, 0, end));
+		end = PerformanceHud.writeDecimal(buf, 0, 0, 0);
+		assertEquals("0", new String(buf, 0, end));
+	}
+
+	@Test
+	public void testHudUpdatesNumbers() {
+		Room room = new ScenarioGenerator(1).generate(1, 0, 12);
+		PerformanceHud hud = new PerformanceHud();
+		hud.recordAllocatedBytes(1000000);
+		hud.update(1, room);
+		for (int i = 0; i < 30; i++) {
+			hud.recordTick(2000000);
+			hud.recordPaint(1000000);
+		}
+		hud.recordAllocatedBytes(3000000);
+		hud.update(1 + 1000000000L, room);
+		assertEquals("fps      30.0", hud.getLine(0));
+		assertEquals("tick     2.000 ms", hud.getLine(1));
+		assertEquals("paint    1.000 ms", hud.getLine(2));
+		assertEquals("proj     12", hud.getLine(3));
+		assertEquals("enemies  " + ScenarioGenerator.ENEMY_KINDS, hud.getLine(4));
+		assertEquals("alloc    2.0 MB/s", hud.getLine(5));
+	}
+	
+	// SPRITE ATLAS TESTS
+
+	@Test
+	public void testSpriteAtlasRegionsDoNotOverlap() {
+		SpriteAtlas atlas = SpriteAtlas.get();
+		Sprite[] sprites = Sprite.values();
+		for (int a = 0; a < sprites.length; a++) {
+			assertTrue(atlas.isLoaded(sprites[a]));
+			java.awt.Rectangle boundsA = atlas.getBounds(sprites[a]);
+			java.awt.image.BufferedImage page = atlas.getPage(atlas.getPageIndex(sprites[a]));
+			assertTrue(boundsA.x >= 0 && boundsA.x + boundsA.width <= page.getWidth());
+			assertTrue(boundsA.y >= 0 && boundsA.y + boundsA.height <= page.getHeight());
+			for (int b = a + 1; b < sprites.length; b++) {
+				if (atlas.getPageIndex(sprites[a]) == atlas.getPageIndex(sprites[b])) {
+					assertFalse(boundsA.intersects(atlas.getBounds(sprites[b])));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSpriteAtlasStartsNewPageWhenFull() {
+		Sprite[] hearts = {Sprite.HEART_EMPTY, Sprite.HEART_HALF, Sprite.HEART_FULL};
+		// each padded heart is 32 pixels, so only one fits on a page of 48
+		SpriteAtlas atlas = new SpriteAtlas(hearts, 48);
+		assertEquals(3, atlas.getPageCount());
+		assertEquals(0, atlas.getPageIndex(Sprite.HEART_EMPTY));
+		assertEquals(-1, atlas.getPageIndex(Sprite.BOSS));
+		assertFalse(atlas.isLoaded(Sprite.BOSS));
+	}
+	
+	// ASSET MANAGER TESTS
+
+	@Test
+	public void testPreloadLoadsEveryImageOnce() {
+		AssetManager assets = AssetManager.get();
+		assets.preload().join();
+		assertTrue(assets.isReady());
+		assertEquals(AssetManager.getRequiredFiles().size() + 1, assets.getTotalCount());
+		assertEquals(assets.getTotalCount(), assets.getLoadedCount());
+		assertTrue(assets.getImage(Sprite.BOULDER.getFile())
+				   == assets.getImage(Sprite.BOULDER.getFile()));
+	}
+	
+	// BACKGROUND CACHE TESTS
+
+	@Test
+	public void testBackgroundCacheEvictsLeastRecentlyUsedOverBudget() {
+		String a = "files/Bkgrnd1Left.png";
+		String b = "files/Bkgrnd1Top.png";
+		String c = "files/Bkgrnd2LeftTop.png";
+		long size = BackgroundCache.sizeOf(AssetManager.decode(a));
+		// room for two of the three backgrounds, which all have the same size
+		BackgroundCache cache = new BackgroundCache(2 * size);
+		java.awt.image.BufferedImage imgA = cache.get(a);
+		assertEquals(1, cache.getMisses());
+		assertTrue(imgA == cache.get(a));
+		assertEquals(1, cache.getHits());
+		cache.get(b);
+		cache.get(a);
+		cache.get(c);
+		// b was used least recently
+		assertTrue(cache.contains(a));
+		assertFalse(cache.contains(b));
+		assertTrue(cache.contains(c));
+		assertEquals(2 * size, cache.getBytes());
+		// b is softly referenced until the garbage collector needs the memory
+		cache.get(b);
+		assertEquals(4, cache.getMisses() + cache.getSoftHits());
+		assertTrue(cache.contains(b));
+		assertFalse(cache.contains(a));
+		assertEquals(2 * size, cache.getBytes());
+	}
+	
+	@Test
+	public void testBackgroundCachePrefetchesRoomsNextToCurrentRoom() {
+		Room room = new RoomHandler(new Random(1)).getRoom();
+		BackgroundCache cache = BackgroundCache.get();
+		int misses = cache.getMisses();
+		assertTrue(cache.get(room.getBackgroundFile()) != null);
+		// loaded ahead of time, so get() waits for the prefetch rather than decoding
+		assertEquals(misses, cache.getMisses());
+	}
+	
+	@Test
+	public void testBackgroundCacheDoesNotWaitForeverWhenDecodingFails() throws Exception {
+		// a null file name makes the decoder throw a NullPointerException rather than an
+		// IOException, as a broken image can
+		BackgroundCache cache = new BackgroundCache(1 << 20);
+		try {
+			cache.get(null);
+			fail("decoder exception not thrown");
+		} catch (NullPointerException e) {
+			assertFalse(cache.isLoading(null));
+		}
+		cache.prefetch(null);
+		java.util.concurrent.Future<java.awt.image.BufferedImage> waiting =
+				java.util.concurrent.CompletableFuture.supplyAsync(() -> cache.get(null));
+		try {
+			waiting.get(10, java.util.concurrent.TimeUnit.SECONDS);
+			fail("decoder exception not thrown");
+		} catch (java.util.concurrent.ExecutionException e) {
+			assertFalse(cache.isLoading(null));
+		}
+	}
+	
+	// SCALED IMAGE CACHE TESTS
+
+	@Test
+	public void testScaledImageCacheReusesCopiesUntilConfigurationChanges() {
+		java.awt.image.BufferedImage rgb = new java.awt.image.BufferedImage(4, 4,
+				java.awt.image.BufferedImage.TYPE_INT_RGB);
+		java.awt.image.BufferedImage argb = new java.awt.image.BufferedImage(4, 4,
+				java.awt.image.BufferedImage.TYPE_INT_ARGB);
+		java.awt.GraphicsConfiguration gc1 = rgb.createGraphics().getDeviceConfiguration();
+		java.awt.GraphicsConfiguration gc2 = argb.createGraphics().getDeviceConfiguration();
+		
+		ScaledImageCache cache = ScaledImageCache.get();
+		cache.invalidate();
+		java.awt.image.BufferedImage opaque = new java.awt.image.BufferedImage(100, 60,
+				java.awt.image.BufferedImage.TYPE_INT_ARGB);
+		opaque.getGraphics().fillRect(0, 0, 100, 60);
+		java.awt.image.BufferedImage copy = cache.get(gc1, opaque, 25, 15);
+		assertEquals(25, copy.getWidth());
+		assertEquals(15, copy.getHeight());
+		assertEquals(java.awt.Transparency.OPAQUE, copy.getTransparency());
+		assertTrue(copy == cache.get(gc1, opaque, 25, 15));
+		cache.get(gc1, argb, 2, 2);
+		assertEquals(2, cache.size());
+		assertEquals(java.awt.Transparency.TRANSLUCENT, cache.get(gc1, argb, 2, 2).getTransparency());
+		
+		// drawing on another configuration throws the old copies away
+		assertFalse(copy == cache.get(gc2, opaque, 25, 15));
+		assertEquals(1, cache.size());
+	}
+	
+	// DIRTY REGION TESTS
+
+	@Test
+	public void testStaticVersionChangesWithStaticObjects() {
+		Room room = new Room("", "");
+		int version = room.getStaticVersion();
+		room.addBoulder(new Boulder(0, 0));
+		assertFalse(version == room.getStaticVersion());
+		version = room.getStaticVersion();
+		room.addEnemy(new PatrollingEnemy(0, 0, Direction.LEFT));
+		assertFalse(version == room.getStaticVersion()); // doors closed
+	}
+
+	@Test
+	public void testMovingBoundsCoverPreviousAndCurrentPosition() {
+		Boulder boulder = new Boulder(100, 100);
+		boulder.setVx(5);
+		boulder.move();
+		java.awt.Rectangle bounds = new java.awt.Rectangle(0, 0, -1, -1);
+		boulder.addMovingBounds(bounds, GameCourt.BORDER, GameCourt.BORDER);
+		assertEquals(new java.awt.Rectangle(100 + GameCourt.BORDER, 100 + GameCourt.BORDER,
+				Boulder.SIZE + 5, Boulder.SIZE), bounds);
+		
+		Room room = new Room("", "");
+		room.spawnProjectile(ProjectileStore.BLOB, 300, 200, Direction.LEFT, null);
+		room.addMovingBounds(bounds);
+		assertTrue(bounds.contains(300 + GameCourt.BORDER, 200 + GameCourt.BORDER));
+	}
+	
+	// SNAPSHOT TESTS
+
+	@Test
+	public void testTripleBufferHandsOverNewestValue() {
+		TripleBuffer<int[]> buffer = new TripleBuffer<>(new int[1], new int[1], new int[1]);
+		int[] first = buffer.acquire();
+		buffer.getBack()[0] = 1;
+		buffer.publish();
+		buffer.getBack()[0] = 2;
+		buffer.publish();
+		int[] newest = buffer.acquire();
+		assertEquals(2, newest[0]);
+		assertFalse(newest == first);
+		// nothing new was published, so the same value is read again and never written to
+		assertTrue(newest == buffer.acquire());
+		assertFalse(newest == buffer.getBack());
+	}
+
+	@Test
+	public void testSnapshotDrawsLikeGame() {
+		GameEngine engine = new GameEngine(3);
+		engine.pressMove(Direction.RIGHT);
+		for (int i = 0; i < 10; i++) {
+			engine.fire(Direction.DOWN);
+			engine.tick();
+		}
+		java.awt.image.BufferedImage direct = new java.awt.image.BufferedImage(GameCourt.ROOM_WIDTH,
+				GameCourt.ROOM_HEIGHT, java.awt.image.BufferedImage.TYPE_INT_RGB);
+		java.awt.image.BufferedImage fromSnapshot = new java.awt.image.BufferedImage(
+				GameCourt.ROOM_WIDTH, GameCourt.ROOM_HEIGHT,
+				java.awt.image.BufferedImage.TYPE_INT_RGB);
+		GameObj.setInterpolation(0.5);
+		try {
+			java.awt.Graphics2D g = direct.createGraphics();
+			engine.draw(g);
+			g.dispose();
+			WorldSnapshot snapshot = new WorldSnapshot();
+			snapshot.clear(1, 0);
+			engine.addTo(snapshot);
+			assertTrue(snapshot.getSpriteCount() > 1);
+			g = fromSnapshot.createGraphics();
+			snapshot.draw(g, 0.5, new StaticLayer());
+			g.dispose();
+		} finally {
+			GameObj.setInterpolation(1.0);
+		}
+		for (int y = 0; y < GameCourt.ROOM_HEIGHT; y++) {
+			for (int x = 0; x < GameCourt.ROOM_WIDTH; x++) {
+				assertEquals(direct.getRGB(x, y), fromSnapshot.getRGB(x, y));
+			}
+		}
+	}
+	
+}